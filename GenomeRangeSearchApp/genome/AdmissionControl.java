@@ -0,0 +1,84 @@
+package genome;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AdmissionControl wraps the server's request executor and sheds load once
+ * too many requests are queued or running.
+ *
+ * The executor side counts every exchange from the moment HttpServer hands it
+ * over until its handler returns. The filter side runs first on each exchange
+ * and answers 503 Service Unavailable straight away when that count is above
+ * the limit, so an overloaded server fails fast instead of letting queueing
+ * delay grow without bound.
+ *
+ * @author DSA-EL Project
+ */
+public class AdmissionControl implements Executor {
+
+    private final Executor delegate;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public AdmissionControl(Executor delegate, int maxInFlight) {
+        this.delegate = delegate;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public void execute(Runnable exchange) {
+        inFlight.incrementAndGet();
+        try {
+            delegate.execute(() -> {
+                try {
+                    exchange.run();
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.decrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * Filter to install on every context; rejects requests while overloaded.
+     */
+    public Filter filter() {
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                if (inFlight.get() > maxInFlight) {
+                    byte[] body = "Server overloaded, please retry".getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+                    exchange.getResponseHeaders().set("Retry-After", "1");
+                    exchange.sendResponseHeaders(503, body.length);
+                    OutputStream os = exchange.getResponseBody();
+                    os.write(body);
+                    os.close();
+                    return;
+                }
+                chain.doFilter(exchange);
+            }
+
+            @Override
+            public String description() {
+                return "Rejects requests with 503 when more than " + maxInFlight + " are in flight";
+            }
+        };
+    }
+
+    /**
+     * Requests currently queued or running.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
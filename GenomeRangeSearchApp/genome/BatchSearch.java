@@ -0,0 +1,125 @@
+package genome;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * BatchSearch answers many (chromosome, start, end) overlap queries at once.
+ *
+ * Queries are grouped by chromosome and sorted by start, then each group is
+ * matched against the chromosome's start-sorted partitions with IntervalSweep.
+ * Groups larger than LEAF_QUERIES are split in halves and swept in parallel
+ * on the common fork/join pool. Results come back in the original query order,
+ * and each query's genes in (start, id) order like /api/search.
+ *
+ * @author DSA-EL Project
+ */
+public class BatchSearch {
+
+    /** Queries per fork/join leaf task */
+    private static final int LEAF_QUERIES = 2048;
+
+    /** Result order within a query, the same as a single overlap search */
+    private static final Comparator<IntervalNode> START_ORDER = (a, b) -> a.start != b.start
+            ? Integer.compare(a.start, b.start) : Integer.compare(a.id, b.id);
+
+    private BatchSearch() {
+    }
+
+    /**
+     * Run every query against one version of the index. Element i of the
+     * result holds the genes overlapping query i.
+     */
+    public static List<List<IntervalNode>> search(GenomeIndex index, String[] chromosomes, int[] starts,
+            int[] ends) {
+        GenomeIndex snapshot = index.snapshot();
+        int count = starts.length;
+        List<List<IntervalNode>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new ArrayList<>());
+        }
+
+        Map<String, List<Integer>> byChromosome = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            byChromosome.computeIfAbsent(chromosomes[i], c -> new ArrayList<>()).add(i);
+        }
+
+        List<SweepTask> tasks = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> entry : byChromosome.entrySet()) {
+            List<ImplicitIntervalIndex> partitions = snapshot.sortedPartitions(entry.getKey());
+            if (partitions.isEmpty()) {
+                continue;
+            }
+            int[] order = entry.getValue().stream()
+                    .sorted((a, b) -> Integer.compare(starts[a], starts[b]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            tasks.add(new SweepTask(partitions, order, 0, order.length, starts, ends, results));
+        }
+        ForkJoinPool.commonPool().invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Sweeps a contiguous range of one chromosome's sorted queries. Every
+     * query belongs to exactly one leaf, so result lists are never shared
+     * between threads.
+     */
+    private static class SweepTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<ImplicitIntervalIndex> partitions;
+        private final int[] order;
+        private final int from;
+        private final int to;
+        private final int[] starts;
+        private final int[] ends;
+        private final List<List<IntervalNode>> results;
+
+        SweepTask(List<ImplicitIntervalIndex> partitions, int[] order, int from, int to, int[] starts, int[] ends,
+                List<List<IntervalNode>> results) {
+            this.partitions = partitions;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+            this.starts = starts;
+            this.ends = ends;
+            this.results = results;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_QUERIES) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new SweepTask(partitions, order, from, mid, starts, ends, results),
+                        new SweepTask(partitions, order, mid, to, starts, ends, results));
+                return;
+            }
+
+            for (ImplicitIntervalIndex partition : partitions) {
+                IntervalSweep sweep = new IntervalSweep(partition, starts[order[from]]);
+                for (int i = from; i < to; i++) {
+                    List<IntervalNode> result = results.get(order[i]);
+                    sweep.advance(starts[order[i]], ends[order[i]], row -> result.add(partition.node(row)));
+                }
+            }
+            if (partitions.size() > 1) {
+                // One ascending run per partition; TimSort merges the runs in linear time
+                for (int i = from; i < to; i++) {
+                    results.get(order[i]).sort(START_ORDER);
+                }
+            }
+        }
+    }
+}
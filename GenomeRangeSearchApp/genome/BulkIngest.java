@@ -0,0 +1,399 @@
+package genome;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * BulkIngest validates a stream of gene records and merges them into a
+ * GenomeIndex in large batches.
+ *
+ * Two line formats are accepted:
+ * - TSV: name, chromosome, start, end, then optional type, function, disease
+ *   and applications columns. Blank lines and lines starting with '#' are
+ *   skipped.
+ * - NDJSON: one flat object per line with the keys /api/search writes (name,
+ *   chromosome, start, end, type, function, disease, applications), so search
+ *   output can be fed back in. An "id" key is ignored; the index assigns ids.
+ *
+ * Rows are parsed in place (tab offsets, a single-pass JSON scanner) and
+ * buffered. Each full buffer goes to GenomeIndex.insertAll, which sorts the
+ * batch and merges it into each chromosome's tree with one rebuild, and is
+ * published (and logged) as one version. A merge copies the existing tree,
+ * so the buffer doubles after every merge: the copying stays proportional to
+ * the rows ingested while memory stays bounded by MAX_BATCH, but an ingest is
+ * not atomic: if it fails, the batches already flushed stay in the index and
+ * getInserted() counts them. Invalid rows are skipped and reported by line
+ * number instead of failing the whole request.
+ *
+ * @author DSA-EL Project
+ */
+public class BulkIngest {
+
+    /** Accepted body formats */
+    public enum Format {
+        TSV, NDJSON
+    }
+
+    /** Rows in the first merge; each later merge may hold twice as many */
+    private static final int FIRST_BATCH = 65_536;
+
+    /** Most rows buffered for one merge */
+    private static final int MAX_BATCH = 1 << 20;
+
+    /** Errors kept in the report; later ones are only counted */
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    /**
+     * A rejected input line.
+     */
+    public static final class RowError {
+        private final long line;
+        private final String message;
+
+        RowError(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        public long getLine() {
+            return line;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+    }
+
+    private final GenomeIndex index;
+    private final Format format;
+    private final List<IntervalNode> batch = new ArrayList<>();
+    private final List<RowError> errors = new ArrayList<>();
+    private final int[] tabs = new int[9];
+
+    private int batchSize = FIRST_BATCH;
+    private long inserted;
+    private long rejected;
+
+    public BulkIngest(GenomeIndex index, Format format) {
+        this.index = index;
+        this.format = format;
+    }
+
+    /**
+     * Read every line, inserting the valid rows. Returns the number inserted.
+     */
+    public long ingest(BufferedReader reader) throws IOException {
+        long before = inserted;
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty() || (format == Format.TSV && line.charAt(0) == '#')) {
+                continue;
+            }
+            IntervalNode gene;
+            try {
+                gene = format == Format.TSV ? parseTsv(line) : parseJson(line);
+                validate(gene);
+            } catch (IllegalArgumentException e) {
+                reject(lineNumber, e.getMessage());
+                continue;
+            }
+            batch.add(gene);
+            if (batch.size() == batchSize) {
+                flush();
+                batchSize = Math.min(batchSize * 2, MAX_BATCH);
+            }
+        }
+        flush();
+        return inserted - before;
+    }
+
+    private void flush() {
+        if (!batch.isEmpty()) {
+            index.insertAll(batch);
+            inserted += batch.size();
+            batch.clear();
+        }
+    }
+
+    private void reject(long line, String message) {
+        rejected++;
+        if (errors.size() < MAX_REPORTED_ERRORS) {
+            errors.add(new RowError(line, message));
+        }
+    }
+
+    private static void validate(IntervalNode gene) {
+        if (gene.geneName == null || gene.geneName.isEmpty()) {
+            throw new IllegalArgumentException("name is required");
+        }
+        if (gene.chromosome == null || gene.chromosome.isEmpty()) {
+            throw new IllegalArgumentException("chromosome is required");
+        }
+        if (gene.start < 0 || gene.start > gene.end) {
+            throw new IllegalArgumentException("start and end must satisfy 0 <= start <= end");
+        }
+    }
+
+    private IntervalNode parseTsv(String line) {
+        int columns = 1;
+        tabs[0] = -1;
+        for (int from = 0; columns < tabs.length; columns++) {
+            int tab = line.indexOf('\t', from);
+            if (tab < 0) {
+                break;
+            }
+            tabs[columns] = tab;
+            from = tab + 1;
+        }
+        if (columns < 4) {
+            throw new IllegalArgumentException("expected name, chromosome, start and end separated by tabs");
+        }
+        return new IntervalNode(number(line, 2, columns, "start"), number(line, 3, columns, "end"),
+                field(line, 0, columns), field(line, 1, columns), optional(line, 4, columns),
+                optional(line, 5, columns), optional(line, 6, columns), optional(line, 7, columns));
+    }
+
+    /** Column i of a line with the given tab offsets */
+    private String field(String line, int i, int columns) {
+        int end = i + 1 < columns ? tabs[i + 1] : line.length();
+        return line.substring(tabs[i] + 1, end).trim();
+    }
+
+    private String optional(String line, int i, int columns) {
+        return i < columns ? field(line, i, columns) : "";
+    }
+
+    private int number(String line, int i, int columns, String name) {
+        try {
+            return Integer.parseInt(field(line, i, columns));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(name + " is not an integer");
+        }
+    }
+
+    /**
+     * Parse one flat JSON object. Values may be strings, integers or null; a
+     * null type, function, disease or applications counts as missing, like
+     * an absent TSV column, and becomes "".
+     */
+    static IntervalNode parseJson(String line) {
+        IntervalNode gene = new IntervalNode(-1, -1, null, null, "", "", "", "");
+        JsonScanner scanner = new JsonScanner(line);
+        scanner.expect('{');
+        if (!scanner.consume('}')) {
+            do {
+                String key = scanner.string();
+                scanner.expect(':');
+                switch (key) {
+                    case "name":
+                        gene.geneName = scanner.stringOrNull();
+                        break;
+                    case "chromosome":
+                        gene.chromosome = scanner.stringOrNull();
+                        break;
+                    case "start":
+                        gene.start = scanner.integer(key);
+                        break;
+                    case "end":
+                        gene.end = scanner.integer(key);
+                        break;
+                    case "type":
+                        gene.type = orEmpty(scanner.stringOrNull());
+                        break;
+                    case "function":
+                        gene.function = orEmpty(scanner.stringOrNull());
+                        break;
+                    case "disease":
+                        gene.diseaseAssociation = orEmpty(scanner.stringOrNull());
+                        break;
+                    case "applications":
+                        gene.applications = orEmpty(scanner.stringOrNull());
+                        break;
+                    default:
+                        // Unknown keys such as "id" are skipped
+                        scanner.skipValue();
+                }
+            } while (scanner.consume(','));
+            scanner.expect('}');
+        }
+        scanner.expectEnd();
+        if (gene.start < 0 && gene.end < 0) {
+            throw new IllegalArgumentException("start and end are required");
+        }
+        gene.maxEnd = gene.end;
+        gene.minEnd = gene.end;
+        return gene;
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    public long getInserted() {
+        return inserted;
+    }
+
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * The first rejected rows, in input order.
+     */
+    public List<RowError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * Single-pass reader over one line of JSON. Errors surface as
+     * IllegalArgumentException with a short reason.
+     */
+    private static final class JsonScanner {
+        private final String text;
+        private int at;
+
+        JsonScanner(String text) {
+            this.text = text;
+        }
+
+        private void skipSpace() {
+            while (at < text.length() && Character.isWhitespace(text.charAt(at))) {
+                at++;
+            }
+        }
+
+        boolean consume(char c) {
+            skipSpace();
+            if (at < text.length() && text.charAt(at) == c) {
+                at++;
+                return true;
+            }
+            return false;
+        }
+
+        void expect(char c) {
+            if (!consume(c)) {
+                throw new IllegalArgumentException("invalid JSON: expected '" + c + "' at column " + (at + 1));
+            }
+        }
+
+        void expectEnd() {
+            skipSpace();
+            if (at != text.length()) {
+                throw new IllegalArgumentException("invalid JSON: unexpected text at column " + (at + 1));
+            }
+        }
+
+        String stringOrNull() {
+            skipSpace();
+            if (text.startsWith("null", at)) {
+                at += 4;
+                return null;
+            }
+            return string();
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder value = null;
+            int from = at;
+            while (at < text.length()) {
+                char c = text.charAt(at);
+                if (c == '"') {
+                    String result = value == null ? text.substring(from, at) : value.append(text, from, at).toString();
+                    at++;
+                    return result;
+                }
+                if (c != '\\') {
+                    at++;
+                    continue;
+                }
+                if (value == null) {
+                    value = new StringBuilder();
+                }
+                value.append(text, from, at);
+                if (at + 1 >= text.length()) {
+                    break;
+                }
+                char escape = text.charAt(at + 1);
+                at += 2;
+                switch (escape) {
+                    case '"':
+                    case '\\':
+                    case '/':
+                        value.append(escape);
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'u':
+                        if (at + 4 > text.length()) {
+                            throw new IllegalArgumentException("invalid JSON: bad \\u escape");
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("invalid JSON: bad \\u escape");
+                        }
+                        at += 4;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("invalid JSON: bad escape \\" + escape);
+                }
+                from = at;
+            }
+            throw new IllegalArgumentException("invalid JSON: unterminated string");
+        }
+
+        int integer(String key) {
+            skipSpace();
+            int from = at;
+            if (at < text.length() && text.charAt(at) == '-') {
+                at++;
+            }
+            while (at < text.length() && Character.isDigit(text.charAt(at))) {
+                at++;
+            }
+            try {
+                return Integer.parseInt(text, from, at, 10);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(key + " is not an integer");
+            }
+        }
+
+        void skipValue() {
+            skipSpace();
+            if (at < text.length() && text.charAt(at) == '"') {
+                string();
+                return;
+            }
+            int from = at;
+            while (at < text.length() && ",}".indexOf(text.charAt(at)) < 0) {
+                char c = text.charAt(at);
+                if (c == '{' || c == '[') {
+                    throw new IllegalArgumentException("invalid JSON: nested values are not supported");
+                }
+                at++;
+            }
+            if (from == at) {
+                throw new IllegalArgumentException("invalid JSON: missing value at column " + (at + 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package genome;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * FlatIntervalIndex is a read-optimized interval index for frozen datasets.
+ *
+ * Intervals are sorted by (start, id) and stored in parallel primitive arrays
+ * (starts, ends, maxEnd, ids) that ImplicitIntervalIndex walks as an implicit
+ * augmented tree. Gene metadata lives in a separate GeneTable indexed by row
+ * id, where the row id is the position in the sorted arrays.
+ *
+ * Time Complexity: O(n log n) to build, O(log n + k) for search
+ *
+ * @author DSA-EL Project
+ */
+public class FlatIntervalIndex extends ImplicitIntervalIndex {
+
+    private final int[] starts;
+    private final int[] ends;
+    private final int[] maxEnd;
+    private final int[] ids;
+    private final GeneTable genes;
+
+    private FlatIntervalIndex(int[] starts, int[] ends, int[] ids, GeneTable genes) {
+        this.starts = starts;
+        this.ends = ends;
+        this.ids = ids;
+        this.maxEnd = new int[starts.length];
+        this.genes = genes;
+        computeMaxEnd(ends, maxEnd);
+    }
+
+    /**
+     * Build an index over a batch of genes (sorted here by start, then id).
+     */
+    public static FlatIntervalIndex build(List<IntervalNode> nodes) {
+        IntervalNode[] sorted = nodes.toArray(new IntervalNode[0]);
+        Arrays.sort(sorted, Comparator.comparingInt((IntervalNode n) -> n.start).thenComparingInt(n -> n.id));
+
+        int n = sorted.length;
+        int[] starts = new int[n];
+        int[] ends = new int[n];
+        int[] ids = new int[n];
+        for (int i = 0; i < n; i++) {
+            starts[i] = sorted[i].start;
+            ends[i] = sorted[i].end;
+            ids[i] = sorted[i].id;
+        }
+        return new FlatIntervalIndex(starts, ends, ids, new GeneTable(Arrays.asList(sorted)));
+    }
+
+    /**
+     * Freeze the current contents of an IntervalTree into a flat index.
+     */
+    public static FlatIntervalIndex of(IntervalTree tree) {
+        return build(tree.inOrder());
+    }
+
+    @Override
+    public int size() {
+        return starts.length;
+    }
+
+    @Override
+    public int start(int row) {
+        return starts[row];
+    }
+
+    @Override
+    public int end(int row) {
+        return ends[row];
+    }
+
+    @Override
+    public int id(int row) {
+        return ids[row];
+    }
+
+    @Override
+    public String geneName(int row) {
+        return genes.geneName(row);
+    }
+
+    @Override
+    public int typeCode(int row) {
+        return genes.typeCode(row);
+    }
+
+    @Override
+    public int diseaseCode(int row) {
+        return genes.diseaseCode(row);
+    }
+
+    @Override
+    public TextDictionary texts() {
+        return genes.texts();
+    }
+
+    @Override
+    protected int maxEnd(int row) {
+        return maxEnd[row];
+    }
+
+    @Override
+    public IntervalNode node(int row) {
+        IntervalNode node = genes.toNode(row, starts[row], ends[row]);
+        node.id = ids[row];
+        return node;
+    }
+
+    public GeneTable getGenes() {
+        return genes;
+    }
+}
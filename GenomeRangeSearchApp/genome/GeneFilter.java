@@ -0,0 +1,245 @@
+package genome;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GeneFilter restricts a search to some chromosomes, gene types and disease
+ * associations, and is applied inside the index walk rather than to the
+ * returned hits.
+ *
+ * Type criteria are resolved against the SymbolTable once, when the filter
+ * is created, into a set of accepted codes; matching a gene is then a bit
+ * test. The accepted types are also folded into a 64-bit mask over (code
+ * mod 64). Indexes keep the same mask for every subtree (the types that
+ * occur below it), and a subtree whose mask shares no bit with the filter's
+ * cannot contain a match and is skipped. With more than 64 types two codes
+ * may share a bit, which only costs pruning power, never correctness.
+ *
+ * Disease associations are free text and stay out of the SymbolTable, so
+ * the disease fragment is resolved against each frozen partition's
+ * TextDictionary (once per partition, then a bit test per row) and compared
+ * with the string itself for genes still in a tree.
+ *
+ * The codes matching each type name are cached together with the
+ * SymbolTable size they were computed at. Codes never change, so when the
+ * table has grown only the new symbols are scanned; a repeated filter costs
+ * no scan at all.
+ *
+ * @author DSA-EL Project
+ */
+public final class GeneFilter {
+
+    /** Matches every gene */
+    public static final GeneFilter ALL = new GeneFilter(null, null, null);
+
+    /** Entries per match cache; a full cache is cleared rather than evicted */
+    private static final int MAX_CACHED_MATCHES = 1024;
+
+    /** Codes equal to a lower-cased type name */
+    private static final Map<String, Matches> TYPE_MATCHES = new ConcurrentHashMap<>();
+
+    /**
+     * The codes below scanned matching one type name. Never modified once
+     * cached.
+     */
+    private static final class Matches {
+        final int scanned;
+        final BitSet codes;
+
+        Matches(int scanned, BitSet codes) {
+            this.scanned = scanned;
+            this.codes = codes;
+        }
+    }
+
+    /** Sorted chromosome names, or null for all */
+    private final Set<String> chromosomes;
+    /** Accepted type codes, or null for any type */
+    private final BitSet types;
+    /** Lower-cased text the disease association must contain, or null for any disease */
+    private final String disease;
+    private final long typeMask;
+
+    /**
+     * Codes of the last partition dictionary matched against disease. Racy
+     * but safe: the holder's fields are final, and a stale one is recomputed.
+     */
+    private DiseaseCodes diseaseCodes;
+
+    private static final class DiseaseCodes {
+        final TextDictionary texts;
+        final BitSet codes;
+
+        DiseaseCodes(TextDictionary texts, BitSet codes) {
+            this.texts = texts;
+            this.codes = codes;
+        }
+    }
+
+    private GeneFilter(Set<String> chromosomes, BitSet types, String disease) {
+        this.chromosomes = chromosomes;
+        this.types = types;
+        this.disease = disease;
+        long mask = -1L;
+        if (types != null) {
+            mask = 0;
+            for (int code = types.nextSetBit(0); code >= 0; code = types.nextSetBit(code + 1)) {
+                mask |= typeBit(code);
+            }
+        }
+        this.typeMask = mask;
+    }
+
+    /**
+     * Build a filter from request parameters; null or empty means no
+     * restriction.
+     *
+     * @param chromosomes comma-separated chromosome names (exact)
+     * @param types comma-separated gene types (case-insensitive)
+     * @param disease text the disease association must contain (case-insensitive)
+     */
+    public static GeneFilter parse(String chromosomes, String types, String disease) {
+        Set<String> chromosomeSet = null;
+        if (chromosomes != null && !chromosomes.trim().isEmpty()) {
+            chromosomeSet = new TreeSet<>();
+            for (String name : chromosomes.split(",")) {
+                if (!name.trim().isEmpty()) {
+                    chromosomeSet.add(name.trim());
+                }
+            }
+        }
+
+        BitSet typeCodes = null;
+        if (types != null && !types.trim().isEmpty()) {
+            typeCodes = new BitSet();
+            for (String type : types.split(",")) {
+                if (!type.trim().isEmpty()) {
+                    typeCodes.or(matchingSymbols(TYPE_MATCHES, type.trim().toLowerCase(Locale.ROOT)));
+                }
+            }
+        }
+
+        String diseaseText = null;
+        if (disease != null && !disease.trim().isEmpty()) {
+            diseaseText = disease.trim().toLowerCase(Locale.ROOT);
+        }
+
+        if (chromosomeSet == null && typeCodes == null && diseaseText == null) {
+            return ALL;
+        }
+        return new GeneFilter(chromosomeSet == null ? null : Collections.unmodifiableSet(chromosomeSet),
+                typeCodes, diseaseText);
+    }
+
+    /**
+     * Codes of the symbols equal to text, which is lower case, ignoring case.
+     * The result is shared and must not be modified.
+     */
+    private static BitSet matchingSymbols(Map<String, Matches> cache, String text) {
+        SymbolTable symbols = SymbolTable.SHARED;
+        int size = symbols.size();
+        Matches cached = cache.get(text);
+        if (cached != null && cached.scanned == size) {
+            return cached.codes;
+        }
+
+        // Resume the scan where the cached entry stopped
+        BitSet codes = cached == null ? new BitSet() : (BitSet) cached.codes.clone();
+        for (int code = cached == null ? 1 : cached.scanned; code < size; code++) {
+            String value = symbols.symbol(code).toLowerCase(Locale.ROOT);
+            if (value.equals(text)) {
+                codes.set(code);
+            }
+        }
+        if (cache.size() >= MAX_CACHED_MATCHES) {
+            cache.clear();
+        }
+        cache.put(text, new Matches(size, codes));
+        return codes;
+    }
+
+    /**
+     * The mask bit of a type code.
+     */
+    public static long typeBit(int typeCode) {
+        return 1L << (typeCode & 63);
+    }
+
+    /**
+     * The mask bit of a type name.
+     */
+    public static long typeBit(String type) {
+        return typeBit(SymbolTable.SHARED.code(type));
+    }
+
+    public boolean isAll() {
+        return this == ALL;
+    }
+
+    /**
+     * Chromosomes to search in ascending order, or null for all.
+     */
+    public Set<String> getChromosomes() {
+        return chromosomes;
+    }
+
+    public boolean acceptsChromosome(String chromosome) {
+        return chromosomes == null || chromosomes.contains(chromosome);
+    }
+
+    /**
+     * Mask of the accepted types; a subtree whose mask shares no bit with it
+     * holds no match. -1 when types are not filtered.
+     */
+    public long typeMask() {
+        return typeMask;
+    }
+
+    /**
+     * True if type and disease filtering are both off, so every gene of a
+     * searched chromosome matches.
+     */
+    public boolean acceptsAllGenes() {
+        return types == null && disease == null;
+    }
+
+    /**
+     * Whether a gene passes the type and disease filters.
+     */
+    public boolean matches(IntervalNode gene) {
+        if (acceptsAllGenes()) {
+            return true;
+        }
+        if (types != null) {
+            int type = SymbolTable.SHARED.find(gene.type);
+            if (type < 0 || !types.get(type)) {
+                return false;
+            }
+        }
+        return disease == null || gene.diseaseAssociation != null
+                && gene.diseaseAssociation.toLowerCase(Locale.ROOT).contains(disease);
+    }
+
+    /**
+     * Whether a frozen row passes the type and disease filters.
+     */
+    public boolean matches(ImplicitIntervalIndex index, int row) {
+        return (types == null || types.get(index.typeCode(row)))
+                && (disease == null || diseaseCodes(index.texts()).get(index.diseaseCode(row)));
+    }
+
+    private BitSet diseaseCodes(TextDictionary texts) {
+        DiseaseCodes last = diseaseCodes;
+        if (last == null || last.texts != texts) {
+            last = new DiseaseCodes(texts, texts.containing(disease));
+            diseaseCodes = last;
+        }
+        return last.codes;
+    }
+}
@@ -0,0 +1,312 @@
+package genome;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * GeneLoader streams BED, GFF3 and GTF annotation files (optionally gzipped)
+ * into a GenomeIndex.
+ *
+ * Files are read line by line and fields are located by tab offsets rather
+ * than split into arrays. Repeated column values (chromosome, type, feature)
+ * share one String instance from the SymbolTable. Parsed genes are buffered
+ * in bounded batches that are sorted and merged into the index, so memory
+ * holds the index plus one batch, never the whole file.
+ *
+ * Coordinates are stored 1-based and inclusive like the rest of the index:
+ * BED's 0-based half-open starts are shifted by one.
+ *
+ * Usage: java genome.GeneLoader annotation.gtf.gz [index-file] [feature]
+ *
+ * @author DSA-EL Project
+ */
+public class GeneLoader {
+
+    /** Supported annotation formats */
+    public enum Format {
+        BED, GFF3, GTF;
+
+        /**
+         * Guess the format from a file name, ignoring a trailing .gz.
+         */
+        public static Format detect(String fileName) {
+            String name = fileName.toLowerCase();
+            if (name.endsWith(".gz")) {
+                name = name.substring(0, name.length() - 3);
+            }
+            if (name.endsWith(".bed")) {
+                return BED;
+            }
+            if (name.endsWith(".gff") || name.endsWith(".gff3")) {
+                return GFF3;
+            }
+            if (name.endsWith(".gtf")) {
+                return GTF;
+            }
+            throw new IllegalArgumentException("Unknown annotation format: " + fileName);
+        }
+    }
+
+    private static final int BATCH_SIZE = 100_000;
+    private static final int MAX_COLUMNS = 9;
+
+    private final GenomeIndex index;
+    private final String feature;
+    private final List<IntervalNode> batch = new ArrayList<>(BATCH_SIZE);
+    private final int[] tabs = new int[MAX_COLUMNS + 1];
+
+    private long loaded;
+    private long skipped;
+
+    /**
+     * Create a loader feeding the given index. If feature is not null, only
+     * GFF3/GTF records of that feature type (e.g. "gene") are loaded.
+     */
+    public GeneLoader(GenomeIndex index, String feature) {
+        this.index = index;
+        this.feature = feature;
+    }
+
+    /**
+     * Load a file, detecting its format and gzip compression from the name.
+     * Returns the number of genes added.
+     */
+    public long load(Path path) throws IOException {
+        Format format = Format.detect(path.getFileName().toString());
+        InputStream in = Files.newInputStream(path);
+        if (path.getFileName().toString().toLowerCase().endsWith(".gz")) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16)) {
+            return load(reader, format);
+        }
+    }
+
+    /**
+     * Load records from a reader. Returns the number of genes added.
+     */
+    public long load(BufferedReader reader, Format format) throws IOException {
+        long before = loaded;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            IntervalNode node = parse(line, format);
+            if (node == null) {
+                continue;
+            }
+            batch.add(node);
+            loaded++;
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+        flush();
+        return loaded - before;
+    }
+
+    private void flush() {
+        if (!batch.isEmpty()) {
+            index.insertAll(batch);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Parse one line, or return null for headers, comments, filtered features
+     * and malformed records. Records must have a chromosome and, after BED's
+     * shift, 0 <= start <= end, the rule BulkIngest applies.
+     */
+    IntervalNode parse(String line, Format format) {
+        if (line.isEmpty() || line.charAt(0) == '#' || line.startsWith("track") || line.startsWith("browser")) {
+            return null;
+        }
+
+        int columns = splitTabs(line);
+        try {
+            if (format == Format.BED) {
+                if (columns < 3) {
+                    skipped++;
+                    return null;
+                }
+                String chromosome = symbol(line, 0);
+                int start = parseInt(line, 1) + 1;
+                int end = parseInt(line, 2);
+                String name = columns > 3 ? field(line, 3) : "";
+                return gene(start, end, name, chromosome, symbol("Region"), "");
+            }
+
+            if (columns < MAX_COLUMNS) {
+                skipped++;
+                return null;
+            }
+            String featureType = symbol(line, 2);
+            if (feature != null && !feature.equals(featureType)) {
+                return null;
+            }
+            String chromosome = symbol(line, 0);
+            int start = parseInt(line, 3);
+            int end = parseInt(line, 4);
+            String attributes = field(line, 8);
+
+            String name;
+            String type;
+            if (format == Format.GTF) {
+                name = firstNonNull(gtfAttribute(attributes, "gene_name"), gtfAttribute(attributes, "gene_id"));
+                type = firstNonNull(gtfAttribute(attributes, "gene_type"), gtfAttribute(attributes, "gene_biotype"));
+            } else {
+                name = firstNonNull(gffAttribute(attributes, "Name"), gffAttribute(attributes, "gene_name"),
+                        gffAttribute(attributes, "ID"));
+                type = firstNonNull(gffAttribute(attributes, "gene_type"), gffAttribute(attributes, "biotype"),
+                        gffAttribute(attributes, "gene_biotype"));
+            }
+            type = type == null ? featureType : symbol(type);
+            return gene(start, end, name == null ? "" : name, chromosome, type, featureType);
+        } catch (NumberFormatException e) {
+            skipped++;
+            return null;
+        }
+    }
+
+    private IntervalNode gene(int start, int end, String name, String chromosome, String type, String function) {
+        if (chromosome.isEmpty() || start < 0 || start > end) {
+            skipped++;
+            return null;
+        }
+        if (name.isEmpty()) {
+            name = chromosome + ":" + start + "-" + end;
+        }
+        return new IntervalNode(start, end, name, chromosome, type, function, "", "");
+    }
+
+    /**
+     * Record the tab offsets of a line: field i spans (tabs[i], tabs[i + 1]).
+     * Returns the number of fields, capped at MAX_COLUMNS.
+     */
+    private int splitTabs(String line) {
+        tabs[0] = -1;
+        int columns = 1;
+        int from = 0;
+        while (columns < MAX_COLUMNS) {
+            int tab = line.indexOf('\t', from);
+            if (tab < 0) {
+                break;
+            }
+            tabs[columns++] = tab;
+            from = tab + 1;
+        }
+        tabs[columns] = columns == MAX_COLUMNS ? lastFieldEnd(line, tabs[columns - 1] + 1) : line.length();
+        return columns;
+    }
+
+    private static int lastFieldEnd(String line, int from) {
+        int tab = line.indexOf('\t', from);
+        return tab < 0 ? line.length() : tab;
+    }
+
+    private String field(String line, int column) {
+        return line.substring(tabs[column] + 1, tabs[column + 1]);
+    }
+
+    private int parseInt(String line, int column) {
+        return Integer.parseInt(line, tabs[column] + 1, tabs[column + 1], 10);
+    }
+
+    private String symbol(String line, int column) {
+        return symbol(field(line, column));
+    }
+
+    private static String symbol(String value) {
+        return SymbolTable.SHARED.intern(value);
+    }
+
+    private static String gtfAttribute(String attributes, String key) {
+        int from = 0;
+        while (true) {
+            int at = attributes.indexOf(key, from);
+            if (at < 0) {
+                return null;
+            }
+            int after = at + key.length();
+            boolean keyStart = at == 0 || attributes.charAt(at - 1) == ' ' || attributes.charAt(at - 1) == ';';
+            if (keyStart && after < attributes.length() && attributes.charAt(after) == ' ') {
+                int open = attributes.indexOf('"', after);
+                int semicolon = attributes.indexOf(';', after);
+                if (open >= 0 && (semicolon < 0 || open < semicolon)) {
+                    int close = attributes.indexOf('"', open + 1);
+                    return close < 0 ? null : attributes.substring(open + 1, close);
+                }
+                return attributes.substring(after + 1, semicolon < 0 ? attributes.length() : semicolon).trim();
+            }
+            from = after;
+        }
+    }
+
+    private static String gffAttribute(String attributes, String key) {
+        int from = 0;
+        while (true) {
+            int at = attributes.indexOf(key, from);
+            if (at < 0) {
+                return null;
+            }
+            int after = at + key.length();
+            boolean keyStart = at == 0 || attributes.charAt(at - 1) == ';';
+            if (keyStart && after < attributes.length() && attributes.charAt(after) == '=') {
+                int semicolon = attributes.indexOf(';', after);
+                String value = attributes.substring(after + 1, semicolon < 0 ? attributes.length() : semicolon);
+                return value.indexOf('%') >= 0 ? URLDecoder.decode(value, StandardCharsets.UTF_8) : value;
+            }
+            from = after;
+        }
+    }
+
+    private static String firstNonNull(String... values) {
+        for (String value : values) {
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    public long getLoaded() {
+        return loaded;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Load an annotation file and optionally write it out as an index file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: java genome.GeneLoader <annotation.{bed,gff3,gtf}[.gz]> [index-file] [feature]");
+            return;
+        }
+
+        GenomeIndex index = new GenomeIndex();
+        GeneLoader loader = new GeneLoader(index, args.length > 2 ? args[2] : null);
+        long begin = System.nanoTime();
+        loader.load(Paths.get(args[0]));
+        long loadMillis = (System.nanoTime() - begin) / 1_000_000;
+        System.out.println("Loaded " + loader.getLoaded() + " records (" + loader.getSkipped()
+                + " skipped) in " + loadMillis + " ms");
+
+        if (args.length > 1) {
+            begin = System.nanoTime();
+            IndexFile.write(index, Paths.get(args[1]));
+            System.out.println("Wrote index file " + args[1] + " in "
+                    + (System.nanoTime() - begin) / 1_000_000 + " ms");
+        }
+    }
+}
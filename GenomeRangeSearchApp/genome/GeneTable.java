@@ -0,0 +1,197 @@
+package genome;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * GeneTable is a columnar store for gene metadata, addressed by row id.
+ *
+ * Each metadata field lives in its own array so that read-optimized indexes
+ * can keep only primitive coordinates in their hot arrays and look metadata
+ * up by row id for the (few) hits they actually return.
+ *
+ * Gene names are nearly unique, so they are packed back to back as UTF-8 in
+ * one byte[] with an offsets column instead of one String object per row.
+ * The filter fields (chromosome, type) are stored as SymbolTable codes.
+ * Function, disease and applications are free text, so they are encoded
+ * against a TextDictionary private to the table, which goes away with it
+ * instead of growing the process-wide SymbolTable. Every code column uses the
+ * narrowest array (byte, char or int) that holds its largest code, so a row
+ * of metadata costs a few bytes plus its name.
+ *
+ * @author DSA-EL Project
+ */
+public class GeneTable {
+
+    private final byte[] nameBytes;
+    private final int[] nameOffsets;
+    private final Codes chromosomes;
+    private final Codes types;
+    private final Codes functions;
+    private final Codes diseaseAssociations;
+    private final Codes applications;
+    /** Function, disease and applications values by local code; 0 is null */
+    private final TextDictionary texts;
+
+    /**
+     * Copy the metadata of the given genes into columns; row i describes nodes.get(i).
+     */
+    public GeneTable(List<IntervalNode> nodes) {
+        int n = nodes.size();
+        SymbolTable symbols = SymbolTable.SHARED;
+        byte[] packed = new byte[(int) Math.min(Math.max(16L, n * 12L), Integer.MAX_VALUE - 8)];
+        nameOffsets = new int[n + 1];
+        int[] chromosomeCodes = new int[n];
+        int[] typeCodes = new int[n];
+        int[] functionCodes = new int[n];
+        int[] diseaseCodes = new int[n];
+        int[] applicationCodes = new int[n];
+
+        Map<String, Integer> textCodes = new HashMap<>();
+        List<String> textValues = new ArrayList<>();
+        textValues.add(null);
+
+        int length = 0;
+        for (int row = 0; row < n; row++) {
+            IntervalNode node = nodes.get(row);
+            byte[] name = node.geneName == null ? new byte[0] : node.geneName.getBytes(StandardCharsets.UTF_8);
+            if (name.length > packed.length - length) {
+                long grown = Math.max((long) packed.length * 2, (long) length + name.length);
+                if (grown > Integer.MAX_VALUE - 8) {
+                    throw new IllegalArgumentException("Gene names exceed 2 GB in one table");
+                }
+                packed = Arrays.copyOf(packed, (int) grown);
+            }
+            System.arraycopy(name, 0, packed, length, name.length);
+            length += name.length;
+            nameOffsets[row + 1] = length;
+            chromosomeCodes[row] = symbols.code(node.chromosome);
+            typeCodes[row] = symbols.code(node.type);
+            functionCodes[row] = textCode(node.function, textCodes, textValues);
+            diseaseCodes[row] = textCode(node.diseaseAssociation, textCodes, textValues);
+            applicationCodes[row] = textCode(node.applications, textCodes, textValues);
+        }
+        nameBytes = Arrays.copyOf(packed, length);
+        chromosomes = Codes.of(chromosomeCodes);
+        types = Codes.of(typeCodes);
+        functions = Codes.of(functionCodes);
+        diseaseAssociations = Codes.of(diseaseCodes);
+        applications = Codes.of(applicationCodes);
+        texts = new TextDictionary(textValues.toArray(new String[0]));
+    }
+
+    private static int textCode(String value, Map<String, Integer> codes, List<String> values) {
+        if (value == null) {
+            return 0;
+        }
+        return codes.computeIfAbsent(value, v -> {
+            values.add(v);
+            return values.size() - 1;
+        });
+    }
+
+    public int size() {
+        return nameOffsets.length - 1;
+    }
+
+    public String geneName(int row) {
+        int from = nameOffsets[row];
+        return new String(nameBytes, from, nameOffsets[row + 1] - from, StandardCharsets.UTF_8);
+    }
+
+    public String chromosome(int row) {
+        return SymbolTable.SHARED.symbol(chromosomes.get(row));
+    }
+
+    public String type(int row) {
+        return SymbolTable.SHARED.symbol(types.get(row));
+    }
+
+    public String function(int row) {
+        return texts.value(functions.get(row));
+    }
+
+    public String diseaseAssociation(int row) {
+        return texts.value(diseaseAssociations.get(row));
+    }
+
+    public String applications(int row) {
+        return texts.value(applications.get(row));
+    }
+
+    /** SymbolTable code of a row's chromosome */
+    public int chromosomeCode(int row) {
+        return chromosomes.get(row);
+    }
+
+    /** SymbolTable code of a row's gene type */
+    public int typeCode(int row) {
+        return types.get(row);
+    }
+
+    /** Code of a row's disease association in texts() */
+    public int diseaseCode(int row) {
+        return diseaseAssociations.get(row);
+    }
+
+    /** The table's dictionary of free-text values */
+    public TextDictionary texts() {
+        return texts;
+    }
+
+    /**
+     * Materialize a row as a detached IntervalNode for rendering.
+     */
+    public IntervalNode toNode(int row, int start, int end) {
+        return new IntervalNode(start, end, geneName(row), chromosome(row), type(row),
+                function(row), diseaseAssociation(row), applications(row));
+    }
+
+    /**
+     * A column of symbol codes in the narrowest array that fits them.
+     */
+    private static final class Codes {
+        private final byte[] bytes;
+        private final char[] chars;
+        private final int[] ints;
+
+        private Codes(byte[] bytes, char[] chars, int[] ints) {
+            this.bytes = bytes;
+            this.chars = chars;
+            this.ints = ints;
+        }
+
+        static Codes of(int[] codes) {
+            int max = 0;
+            for (int code : codes) {
+                max = Math.max(max, code);
+            }
+            if (max <= 0xFF) {
+                byte[] bytes = new byte[codes.length];
+                for (int i = 0; i < codes.length; i++) {
+                    bytes[i] = (byte) codes[i];
+                }
+                return new Codes(bytes, null, null);
+            }
+            if (max <= Character.MAX_VALUE) {
+                char[] chars = new char[codes.length];
+                for (int i = 0; i < codes.length; i++) {
+                    chars[i] = (char) codes[i];
+                }
+                return new Codes(null, chars, null);
+            }
+            return new Codes(null, null, codes);
+        }
+
+        int get(int row) {
+            if (bytes != null) {
+                return bytes[row] & 0xFF;
+            }
+            return chars != null ? chars[row] : ints[row];
+        }
+    }
+}
@@ -0,0 +1,953 @@
+package genome;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * GenomeIndex partitions genes by chromosome, keeping one IntervalTree per contig.
+ *
+ * Intervals on different chromosomes never overlap, so a query restricted to
+ * one chromosome only walks that chromosome's tree. Queries without a
+ * chromosome fall back to searching every partition.
+ *
+ * Each chromosome may also have a frozen, read-optimized ImplicitIntervalIndex
+ * (flat arrays on the heap, or a memory-mapped index file). Inserts always go
+ * into the chromosome's tree, and searches combine the frozen rows with the
+ * tree. freeze() folds the trees into fresh flat indexes.
+ *
+ * Every gene gets an id when it enters the index, from a counter that only
+ * grows, so ids never repeat and equal starts are ordered by id in every
+ * partition.
+ *
+ * Concurrency: the whole index state is an immutable Version published through
+ * a volatile field. Readers take the current version once per call and never
+ * lock. Writers are serialized; each one copies the partition map, updates a
+ * snapshot of the affected tree (IntervalTree is path-copying) and publishes
+ * the result as the next version, so a search never sees a half-applied write.
+ *
+ * Genes can be removed or moved with remove() and update(), which take the
+ * same write path: a path-copying tree delete (or a tombstone over a frozen
+ * row) published as one version. A moved gene goes into the tree.
+ *
+ * Durability: with a WriteAheadLog attached, every insert, remove and update
+ * is logged under the write lock and returns once the log record is on disk.
+ * Writers then build on the newest version (head), but a version is only
+ * published to readers after its log records are synced, so readers never
+ * see a write that a crash could lose. Syncs still batch the records of
+ * concurrent writers. writeSnapshot() checkpoints the index so the log can
+ * be truncated. If an append or sync fails, the log no longer says which
+ * unpublished writes are durable, so they are dropped (head falls back to
+ * current), every write in flight fails, and the index rejects writes from
+ * then on. Reads keep serving the last published version.
+ *
+ * Time Complexity: O(log n_c + k) for a chromosome search, where n_c is the
+ * number of genes on that chromosome
+ *
+ * @author DSA-EL Project
+ */
+public class GenomeIndex {
+
+    /**
+     * An immutable state of the index. Neither the maps nor the trees in them
+     * are modified after the version is published.
+     */
+    private static final class Version {
+        final long number;
+        final Map<String, IntervalTree> trees;
+        final Map<String, ImplicitIntervalIndex> frozen;
+        final int nextId;
+        /** Gene names, or null until the first name query builds them */
+        final NameIndex names;
+
+        Version(long number, Map<String, IntervalTree> trees, Map<String, ImplicitIntervalIndex> frozen,
+                int nextId) {
+            this(number, trees, frozen, nextId, null);
+        }
+
+        Version(long number, Map<String, IntervalTree> trees, Map<String, ImplicitIntervalIndex> frozen,
+                int nextId, NameIndex names) {
+            this.number = number;
+            this.trees = trees;
+            this.frozen = frozen;
+            this.nextId = nextId;
+            this.names = names;
+        }
+    }
+
+    private volatile Version current;
+
+    /**
+     * Newest version, which writers build on. Ahead of current only while
+     * logged writes wait for their sync. Guarded by this.
+     */
+    private Version head;
+
+    /** Log of inserts, or null when runtime inserts are not persisted */
+    private volatile WriteAheadLog log;
+
+    /** Threads in drain(); new writes wait for them. Guarded by this. */
+    private int draining;
+
+    /** First log failure, after which writes are rejected. Guarded by this. */
+    private IOException logFailure;
+
+    public GenomeIndex() {
+        this.current = new Version(0, new HashMap<>(), new HashMap<>(), 1);
+        this.head = current;
+    }
+
+    private GenomeIndex(Version version) {
+        this.current = version;
+        this.head = version;
+    }
+
+    /**
+     * Build the index from a batch of genes, bulk-loading one balanced tree per
+     * chromosome. Genes get ids in list order.
+     */
+    public static GenomeIndex bulkLoad(List<IntervalNode> nodes) {
+        int nextId = assignIds(nodes, 1);
+        Map<String, IntervalTree> trees = new HashMap<>();
+        for (Map.Entry<String, List<IntervalNode>> entry : byChromosome(nodes).entrySet()) {
+            trees.put(entry.getKey(), IntervalTree.bulkLoad(entry.getValue()));
+        }
+        return new GenomeIndex(new Version(0, trees, new HashMap<>(), nextId));
+    }
+
+    /**
+     * Build an index whose chromosomes are served by already-frozen indexes,
+     * e.g. the partitions of a memory-mapped index file. nextId must exceed
+     * every id in the partitions.
+     */
+    public static GenomeIndex ofFrozen(Map<String, ? extends ImplicitIntervalIndex> partitions, int nextId) {
+        return new GenomeIndex(new Version(0, new HashMap<>(), new HashMap<>(partitions), nextId));
+    }
+
+    /**
+     * Give every node without an id the next one; returns the new counter.
+     * Chromosome and type are swapped for their SymbolTable instances on the
+     * way in, so indexed genes never hold private copies of repeated values.
+     * Missing metadata becomes "", as an index file stores it, so a gene
+     * reads the same before and after a snapshot or reload.
+     */
+    private static int assignIds(List<IntervalNode> nodes, int nextId) {
+        SymbolTable symbols = SymbolTable.SHARED;
+        for (IntervalNode node : nodes) {
+            node.chromosome = symbols.intern(node.chromosome);
+            node.type = symbols.intern(orEmpty(node.type));
+            node.function = orEmpty(node.function);
+            node.diseaseAssociation = orEmpty(node.diseaseAssociation);
+            node.applications = orEmpty(node.applications);
+            if (node.id == 0) {
+                node.id = nextId++;
+            } else {
+                nextId = Math.max(nextId, node.id + 1);
+            }
+        }
+        return nextId;
+    }
+
+    private static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static Map<String, List<IntervalNode>> byChromosome(List<IntervalNode> nodes) {
+        Map<String, List<IntervalNode>> byChromosome = new HashMap<>();
+        for (IntervalNode node : nodes) {
+            byChromosome.computeIfAbsent(node.chromosome, c -> new ArrayList<>()).add(node);
+        }
+        return byChromosome;
+    }
+
+    /**
+     * A read-only view pinned to the current version. Later writes to this
+     * index are not visible through it.
+     */
+    public GenomeIndex snapshot() {
+        return new GenomeIndex(current);
+    }
+
+    /**
+     * Version number, incremented by every write.
+     */
+    public long version() {
+        return current.number;
+    }
+
+    /**
+     * Id the next inserted gene will get.
+     */
+    public int nextId() {
+        return current.nextId;
+    }
+
+    /**
+     * Insert a gene into its chromosome's tree. Returns the indexed gene,
+     * which carries its new id.
+     *
+     * @throws IllegalArgumentException if the chromosome is blank or not 0 <= start <= end
+     */
+    public IntervalNode insert(int start, int end, String geneName, String chromosome,
+            String type, String function, String diseaseAssociation, String applications) {
+        if (chromosome == null || chromosome.isBlank()) {
+            throw new IllegalArgumentException("chromosome is required");
+        }
+        if (start < 0 || start > end) {
+            throw new IllegalArgumentException("start and end must satisfy 0 <= start <= end");
+        }
+        IntervalNode gene = new IntervalNode(start, end, geneName, chromosome, type, function,
+                diseaseAssociation, applications);
+        insertAll(Collections.singletonList(gene));
+        return gene;
+    }
+
+    /**
+     * Add a batch of genes, merging each chromosome's share into its tree in
+     * one pass. The whole batch becomes visible to readers at once. With a
+     * log attached, returns once the batch is durable.
+     *
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    public void insertAll(List<IntervalNode> nodes) {
+        WriteAheadLog wal = log;
+        Change change = apply(nodes, wal);
+        if (wal != null) {
+            sync(wal, change);
+        }
+    }
+
+    private synchronized Change apply(List<IntervalNode> nodes, WriteAheadLog wal) {
+        awaitDrained();
+        checkWritable();
+        Version base = head;
+        int nextId = assignIds(nodes, base.nextId);
+        Change change = new Change();
+        if (wal != null) {
+            try {
+                change.sequence = wal.append(nodes);
+            } catch (IOException e) {
+                throw fail(e);
+            }
+        }
+        Map<String, IntervalTree> trees = new HashMap<>(base.trees);
+        for (Map.Entry<String, List<IntervalNode>> entry : byChromosome(nodes).entrySet()) {
+            IntervalTree tree = trees.get(entry.getKey());
+            tree = tree == null ? new IntervalTree() : tree.snapshot();
+            tree.insertAll(entry.getValue());
+            trees.put(entry.getKey(), tree);
+        }
+        NameIndex names = base.names == null ? null : base.names.withAdded(nodes);
+        change.version = advance(new Version(base.number + 1, trees, base.frozen, nextId, names), wal);
+        return change;
+    }
+
+    /**
+     * Make version the head, and publish it right away unless it has log
+     * records to sync first.
+     */
+    private Version advance(Version version, WriteAheadLog wal) {
+        head = version;
+        if (wal == null) {
+            current = version;
+        }
+        return version;
+    }
+
+    /**
+     * Wait until a logged write is on disk, then publish its version. A sync
+     * covers every earlier append, so versions are published in order; an
+     * older one arriving late is skipped. A failed sync publishes nothing.
+     */
+    private void sync(WriteAheadLog wal, Change change) {
+        try {
+            wal.sync(change.sequence);
+        } catch (IOException e) {
+            throw fail(e);
+        }
+        publish(change.version);
+    }
+
+    private synchronized void publish(Version version) {
+        if (version.number <= current.number) {
+            // Published by a later sync that covered this write
+            return;
+        }
+        // Synced, but built on a write whose log record failed and was dropped
+        checkWritable();
+        current = version;
+        if (current == head) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Stop accepting writes after a log failure: drop the versions still
+     * waiting for their sync and wake drain() and awaitDrained() waiters.
+     * Returns the exception for the failing writer to throw.
+     */
+    private synchronized UncheckedIOException fail(IOException e) {
+        if (logFailure == null) {
+            logFailure = e;
+        }
+        head = current;
+        notifyAll();
+        return new UncheckedIOException(e);
+    }
+
+    /** Reject a write once the log has failed */
+    private void checkWritable() {
+        if (logFailure != null) {
+            throw new UncheckedIOException("Write-ahead log failed; the index is read-only", logFailure);
+        }
+    }
+
+    /**
+     * Wait until the logged writes in flight are published, holding new
+     * writes back meanwhile. Returns with head == current; the caller still
+     * holds the lock, so it can replace both.
+     */
+    private void drain() {
+        draining++;
+        boolean interrupted = false;
+        try {
+            while (head != current) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (--draining == 0) {
+                notifyAll();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Wait while a drain() is in progress */
+    private void awaitDrained() {
+        boolean interrupted = false;
+        while (draining > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Remove the gene with this id at (chromosome, start), the key every
+     * search result carries. Returns the removed gene, or null if there is
+     * none. A gene in a tree is removed in O(log n); a frozen row cannot be
+     * dropped from its arrays, so it is tombstoned in a MaskedIntervalIndex
+     * over the partition, also in O(log n), until the next freeze().
+     *
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    public IntervalNode remove(String chromosome, int start, int id) {
+        return change(chromosome, start, id, null).removed;
+    }
+
+    /**
+     * Move the gene with this id at (chromosome, start) to [newStart, newEnd],
+     * keeping its metadata. The moved gene gets a new id, like an insert, so
+     * equal starts stay ordered by id and log replay stays idempotent. Both
+     * halves are published as one version. Returns the moved gene, or null if
+     * there is no such gene.
+     *
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    public IntervalNode update(String chromosome, int start, int id, int newStart, int newEnd) {
+        return change(chromosome, start, id, gene -> new IntervalNode(newStart, newEnd, gene.geneName,
+                gene.chromosome, gene.type, gene.function, gene.diseaseAssociation, gene.applications)).added;
+    }
+
+    /**
+     * Replace a gene with one that already carries its id, as an update
+     * record does during log replay.
+     */
+    IntervalNode replace(String chromosome, int start, int id, IntervalNode replacement) {
+        return change(chromosome, start, id, gene -> replacement).added;
+    }
+
+    /** Outcome of a write */
+    private static final class Change {
+        IntervalNode removed;
+        IntervalNode added;
+        long sequence;
+        /** The version the write produced, or null if it changed nothing */
+        Version version;
+    }
+
+    private Change change(String chromosome, int start, int id, UnaryOperator<IntervalNode> replacement) {
+        WriteAheadLog wal = log;
+        Change change = applyChange(chromosome, start, id, replacement, wal);
+        if (wal != null && change.version != null) {
+            sync(wal, change);
+        }
+        return change;
+    }
+
+    private synchronized Change applyChange(String chromosome, int start, int id,
+            UnaryOperator<IntervalNode> replacement, WriteAheadLog wal) {
+        awaitDrained();
+        checkWritable();
+        Version base = head;
+        Map<String, IntervalTree> trees = base.trees;
+        Map<String, ImplicitIntervalIndex> frozen = base.frozen;
+        Change change = new Change();
+
+        IntervalTree tree = trees.get(chromosome);
+        if (tree != null) {
+            tree = tree.snapshot();
+            change.removed = tree.delete(start, id);
+            if (change.removed != null) {
+                trees = new HashMap<>(trees);
+                trees.put(chromosome, tree);
+            }
+        }
+        ImplicitIntervalIndex flat = frozen.get(chromosome);
+        int row = change.removed == null && flat != null ? flat.rowOf(start, id) : -1;
+        if (row >= 0) {
+            change.removed = flat.node(row);
+            // Tombstone the row; freeze() compacts the partition
+            MaskedIntervalIndex masked = MaskedIntervalIndex.without(flat, row);
+            frozen = new HashMap<>(frozen);
+            if (masked.deletedCount() == masked.size()) {
+                frozen.remove(chromosome);
+            } else {
+                frozen.put(chromosome, masked);
+            }
+        }
+        if (change.removed == null) {
+            return change;
+        }
+
+        int nextId = base.nextId;
+        if (replacement != null) {
+            change.added = replacement.apply(change.removed);
+            nextId = assignIds(Collections.singletonList(change.added), nextId);
+            if (trees == base.trees) {
+                trees = new HashMap<>(trees);
+            }
+            IntervalTree target = trees.get(change.added.chromosome);
+            target = target == null ? new IntervalTree() : target.snapshot();
+            target.insert(change.added);
+            trees.put(change.added.chromosome, target);
+        }
+        if (wal != null) {
+            try {
+                change.sequence = change.added == null ? wal.appendDelete(change.removed)
+                        : wal.appendUpdate(change.removed, change.added);
+            } catch (IOException e) {
+                throw fail(e);
+            }
+        }
+        NameIndex names = base.names == null ? null : base.names.withRemoved(1);
+        if (names != null && change.added != null) {
+            names = names.withAdded(Collections.singletonList(change.added));
+        }
+        Version next = new Version(base.number + 1, trees, frozen, nextId, names);
+        if (names != null && names.needsRebuild()) {
+            next = new Version(base.number + 1, trees, frozen, nextId, buildNames(next));
+        }
+        change.version = advance(next, wal);
+        return change;
+    }
+
+    /**
+     * The gene with this id, or null. Scans every partition, O(n); callers
+     * that know the gene's chromosome and start should pass them to remove()
+     * or update() directly.
+     */
+    public IntervalNode find(int id) {
+        Version version = current;
+        for (ImplicitIntervalIndex flat : version.frozen.values()) {
+            for (int row = 0, n = flat.size(); row < n; row++) {
+                if (flat.id(row) == id && !flat.isDeleted(row)) {
+                    return flat.node(row);
+                }
+            }
+        }
+        for (IntervalTree tree : version.trees.values()) {
+            for (IntervalNode gene : tree.inOrder()) {
+                if (gene.id == id) {
+                    return gene;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The gene with this id at (chromosome, start), or null. O(log n_c).
+     */
+    public IntervalNode find(String chromosome, int start, int id) {
+        return find(current, chromosome, start, id);
+    }
+
+    private static IntervalNode find(Version version, String chromosome, int start, int id) {
+        IntervalTree tree = version.trees.get(chromosome);
+        IntervalNode gene = tree == null ? null : tree.find(start, id);
+        if (gene == null) {
+            ImplicitIntervalIndex flat = version.frozen.get(chromosome);
+            int row = flat == null ? -1 : flat.rowOf(start, id);
+            gene = row < 0 ? null : flat.node(row);
+        }
+        return gene;
+    }
+
+    /**
+     * Every gene named name, ignoring case, ordered by chromosome and start.
+     * The first name query of an index builds its NameIndex in O(n log n);
+     * later inserts, removes and updates keep it current, so lookups after
+     * that are O(log n + k).
+     */
+    public List<IntervalNode> findByName(String name) {
+        Version version = named();
+        List<IntervalNode> genes = version.names.lookup(name,
+                (chromosome, start, id) -> find(version, chromosome, start, id));
+        genes.sort((a, b) -> !a.chromosome.equals(b.chromosome) ? a.chromosome.compareTo(b.chromosome)
+                : a.start != b.start ? Integer.compare(a.start, b.start) : Integer.compare(a.id, b.id));
+        return genes;
+    }
+
+    /**
+     * One gene for each of the first limit distinct names starting with
+     * prefix, ignoring case, in name order. O(limit log n) once the
+     * NameIndex is built (see findByName).
+     */
+    public List<IntervalNode> suggest(String prefix, int limit) {
+        Version version = named();
+        return version.names.suggest(prefix, limit, (chromosome, start, id) -> find(version, chromosome, start, id));
+    }
+
+    /**
+     * Build the NameIndex now rather than on the first name query. Writers
+     * wait while it is built.
+     */
+    public void buildNameIndex() {
+        named();
+    }
+
+    /** The current version, with its NameIndex built */
+    private Version named() {
+        Version version = current;
+        return version.names != null ? version : publishNames();
+    }
+
+    private synchronized Version publishNames() {
+        // Built for a version that is both published and the head, so later writes carry the names on
+        drain();
+        Version base = current;
+        if (base.names == null) {
+            // Same number: the genes did not change, so caches keyed by version stay valid
+            current = new Version(base.number, base.trees, base.frozen, base.nextId, buildNames(base));
+            head = current;
+        }
+        return current;
+    }
+
+    private static NameIndex buildNames(Version version) {
+        List<IntervalNode> treeGenes = new ArrayList<>();
+        for (IntervalTree tree : version.trees.values()) {
+            treeGenes.addAll(tree.inOrder());
+        }
+        return NameIndex.build(version.frozen, treeGenes);
+    }
+
+    /**
+     * Log every later change to wal (null to stop logging). Attach it after
+     * loading and replaying, so neither is logged again.
+     */
+    public synchronized void attachLog(WriteAheadLog wal) {
+        this.log = wal;
+    }
+
+    /**
+     * Write the current contents to an IndexFile at path and drop the log
+     * segments it makes obsolete. Inserts are paused only while the log
+     * switches segments, not while the file is written.
+     */
+    public void writeSnapshot(Path path) throws IOException {
+        GenomeIndex pinned;
+        List<Path> obsolete;
+        synchronized (this) {
+            // The head holds every record in the rotated segments, synced or not
+            pinned = new GenomeIndex(head);
+            obsolete = log == null ? Collections.emptyList() : log.rotate();
+        }
+        IndexFile.write(pinned, path);
+        WriteAheadLog.delete(obsolete);
+    }
+
+    /**
+     * Fold every chromosome (frozen rows plus tree) into a new FlatIntervalIndex
+     * and empty the trees. Removed frozen rows are dropped for good.
+     */
+    public synchronized void freeze() {
+        drain();
+        Version base = head;
+        Map<String, ImplicitIntervalIndex> frozen = new HashMap<>();
+        for (String chromosome : chromosomes(base)) {
+            frozen.put(chromosome, FlatIntervalIndex.build(genes(base, chromosome)));
+        }
+        current = new Version(base.number + 1, new HashMap<>(), frozen, base.nextId, base.names);
+        head = current;
+    }
+
+    /**
+     * Build a StabIndex for every frozen partition whose hit lists stay within
+     * maxEntriesPerGene entries per gene; point searches then skip the tree
+     * walk. Partitions created by a later freeze() start without one.
+     *
+     * @return the number of partitions indexed
+     */
+    public int buildStabIndexes(int maxEntriesPerGene) {
+        int built = 0;
+        for (ImplicitIntervalIndex flat : current.frozen.values()) {
+            if (flat.buildStabIndex(maxEntriesPerGene)) {
+                built++;
+            }
+        }
+        return built;
+    }
+
+    /**
+     * Find all genes on the given chromosome overlapping [queryStart, queryEnd].
+     * A null or empty chromosome searches every chromosome.
+     */
+    public List<IntervalNode> overlapSearch(String chromosome, int queryStart, int queryEnd) {
+        List<IntervalNode> result = new ArrayList<>();
+        overlapSearch(chromosome, queryStart, queryEnd, result::add);
+        return result;
+    }
+
+    /**
+     * Hand every overlapping gene to the visitor as it is found, so a wide query
+     * can be streamed without collecting its hits. Frozen rows are
+     * materialized one at a time.
+     */
+    public void overlapSearch(String chromosome, int queryStart, int queryEnd, Consumer<IntervalNode> visitor) {
+        overlapSearch(GeneFilter.parse(chromosome, null, null), queryStart, queryEnd, visitor);
+    }
+
+    /**
+     * Hand every gene overlapping [queryStart, queryEnd] that passes the
+     * filter to the visitor. Only the filter's chromosomes are searched, and
+     * type and disease criteria are checked inside the index walk.
+     */
+    public void overlapSearch(GeneFilter filter, int queryStart, int queryEnd, Consumer<IntervalNode> visitor) {
+        Version version = current;
+        for (String name : partitionNames(version, filter)) {
+            searchPartition(version, name, queryStart, queryEnd, filter, visitor);
+        }
+    }
+
+    /**
+     * Search one chromosome's partitions. Each walk is reported to Metrics
+     * with the hits handed to the visitor, so tombstoned rows never count.
+     */
+    private static void searchPartition(Version version, String chromosome, int queryStart, int queryEnd,
+            GeneFilter filter, Consumer<IntervalNode> visitor) {
+        ImplicitIntervalIndex flat = version.frozen.get(chromosome);
+        if (flat != null) {
+            if (queryStart == queryEnd && filter.acceptsAllGenes()) {
+                // Point query: precomputed hit list when the partition has one
+                flat.stab(queryStart, row -> visitor.accept(flat.node(row)));
+            } else {
+                SearchStats stats = new SearchStats();
+                flat.overlapSearch(queryStart, queryEnd, 0, filter, row -> {
+                    stats.hits++;
+                    visitor.accept(flat.node(row));
+                    return true;
+                }, stats);
+                Metrics.recordSearch(stats, flat.size());
+            }
+        }
+        IntervalTree tree = version.trees.get(chromosome);
+        if (tree != null) {
+            SearchStats stats = new SearchStats();
+            tree.overlapSearch(queryStart, queryEnd, filter, gene -> {
+                stats.hits++;
+                visitor.accept(gene);
+            }, stats);
+            Metrics.recordSearch(stats, tree.size());
+        }
+    }
+
+    /**
+     * Number of genes on the chromosome (all chromosomes if null or empty)
+     * overlapping [queryStart, queryEnd]. Frozen partitions answer from
+     * sorted columns and the tree from subtree sizes, so the hits themselves
+     * are never visited.
+     */
+    public long countOverlaps(String chromosome, int queryStart, int queryEnd) {
+        Version version = current;
+        long count = 0;
+        for (String name : partitionNames(version, chromosome)) {
+            ImplicitIntervalIndex flat = version.frozen.get(name);
+            if (flat != null) {
+                count += flat.countOverlaps(queryStart, queryEnd);
+            }
+            IntervalTree tree = version.trees.get(name);
+            if (tree != null) {
+                count += tree.countOverlaps(queryStart, queryEnd);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Count and overlap bases, per gene type, of the genes overlapping
+     * [queryStart, queryEnd]. Frozen partitions are summarized from sorted
+     * columns; genes still in the tree (inserted since the last freeze) are
+     * visited.
+     */
+    public OverlapSummary summarize(String chromosome, int queryStart, int queryEnd) {
+        Version version = current;
+        OverlapSummary summary = new OverlapSummary();
+        for (String name : partitionNames(version, chromosome)) {
+            ImplicitIntervalIndex flat = version.frozen.get(name);
+            if (flat != null) {
+                flat.summarize(queryStart, queryEnd, summary);
+            }
+            IntervalTree tree = version.trees.get(name);
+            if (tree != null) {
+                tree.overlapSearch(queryStart, queryEnd, gene -> summary.add(gene.type, 1,
+                        Math.min(queryEnd, gene.end) - Math.max(queryStart, gene.start) + 1));
+            }
+        }
+        return summary;
+    }
+
+    private static Set<String> partitionNames(Version version, String chromosome) {
+        return chromosome == null || chromosome.isEmpty() ? chromosomes(version) : Collections.singleton(chromosome);
+    }
+
+    private static Set<String> partitionNames(Version version, GeneFilter filter) {
+        return filter.getChromosomes() == null ? chromosomes(version) : filter.getChromosomes();
+    }
+
+    /**
+     * One page of the genes overlapping [queryStart, queryEnd], in (chromosome,
+     * start, id) order, resuming after the given cursor (null for the first
+     * page). Each partition stops as soon as the page is full, so a wide query
+     * costs O(log n + limit) per page instead of materializing every hit.
+     *
+     * @throws IllegalArgumentException if the cursor belongs to another chromosome
+     */
+    public SearchPage searchPage(String chromosome, int queryStart, int queryEnd, SearchPage.Cursor after,
+            int limit) {
+        return searchPage(GeneFilter.parse(chromosome, null, null), queryStart, queryEnd, after, limit);
+    }
+
+    /**
+     * One page of the genes overlapping [queryStart, queryEnd] that pass the
+     * filter, in (chromosome, start, id) order. Filtered-out genes are skipped
+     * inside the walk and never count towards the page.
+     *
+     * @throws IllegalArgumentException if the cursor belongs to a chromosome the filter excludes
+     */
+    public SearchPage searchPage(GeneFilter filter, int queryStart, int queryEnd, SearchPage.Cursor after,
+            int limit) {
+        Version version = current;
+        if (after != null && !filter.acceptsChromosome(after.chromosome)) {
+            throw new IllegalArgumentException("Cursor does not belong to the searched chromosomes");
+        }
+        Set<String> names = partitionNames(version, filter);
+
+        // One extra gene tells whether there is a next page
+        List<IntervalNode> genes = new ArrayList<>();
+        for (String name : names) {
+            int order = after == null ? 1 : name.compareTo(after.chromosome);
+            if (order < 0) {
+                continue;
+            }
+            int afterStart = order == 0 ? after.start : Integer.MIN_VALUE;
+            int afterId = order == 0 ? after.id : Integer.MIN_VALUE;
+            pagePartition(version, name, queryStart, queryEnd, afterStart, afterId, filter,
+                    limit + 1 - genes.size(), genes);
+            if (genes.size() > limit) {
+                break;
+            }
+        }
+
+        if (genes.size() <= limit) {
+            return new SearchPage(genes, null);
+        }
+        genes = new ArrayList<>(genes.subList(0, limit));
+        IntervalNode last = genes.get(limit - 1);
+        return new SearchPage(genes, new SearchPage.Cursor(last.chromosome, last.start, last.id));
+    }
+
+    /**
+     * Append up to want genes of one chromosome after (afterStart, afterId),
+     * merging the frozen rows and the tree in (start, id) order.
+     */
+    private static void pagePartition(Version version, String chromosome, int queryStart, int queryEnd,
+            int afterStart, int afterId, GeneFilter filter, int want, List<IntervalNode> page) {
+        List<IntervalNode> frozenHits = new ArrayList<>();
+        ImplicitIntervalIndex flat = version.frozen.get(chromosome);
+        if (flat != null) {
+            SearchStats stats = new SearchStats();
+            flat.overlapSearch(queryStart, queryEnd, flat.upperBound(afterStart, afterId), filter, row -> {
+                frozenHits.add(flat.node(row));
+                return frozenHits.size() < want;
+            }, stats);
+            stats.hits = frozenHits.size();
+            Metrics.recordSearch(stats, flat.size());
+        }
+        List<IntervalNode> treeHits = new ArrayList<>();
+        IntervalTree tree = version.trees.get(chromosome);
+        if (tree != null) {
+            SearchStats stats = new SearchStats();
+            tree.overlapSearchAfter(queryStart, queryEnd, afterStart, afterId, filter, node -> {
+                treeHits.add(node);
+                return treeHits.size() < want;
+            }, stats);
+            stats.hits = treeHits.size();
+            Metrics.recordSearch(stats, tree.size());
+        }
+
+        int i = 0, j = 0;
+        for (int taken = 0; taken < want && (i < frozenHits.size() || j < treeHits.size()); taken++) {
+            if (j == treeHits.size() || (i < frozenHits.size() && precedes(frozenHits.get(i), treeHits.get(j)))) {
+                page.add(frozenHits.get(i++));
+            } else {
+                page.add(treeHits.get(j++));
+            }
+        }
+    }
+
+    private static boolean precedes(IntervalNode a, IntervalNode b) {
+        return a.start < b.start || (a.start == b.start && a.id < b.id);
+    }
+
+    /**
+     * The k genes closest to position, nearest first. See NearestSearch.
+     */
+    public List<NearestSearch.Neighbor> nearest(String chromosome, int position, int k,
+            NearestSearch.Direction direction) {
+        return NearestSearch.nearest(this, chromosome, position, k, direction);
+    }
+
+    /**
+     * The k genes closest to position on any of the given chromosomes (every
+     * chromosome if null), nearest first. See NearestSearch.
+     */
+    public List<NearestSearch.Neighbor> nearest(Set<String> chromosomes, int position, int k,
+            NearestSearch.Direction direction) {
+        return NearestSearch.nearest(this, chromosomes, position, k, direction);
+    }
+
+    /**
+     * Report every (region, gene) pair overlapping between the given regions and
+     * this index, with the overlap length. See IntervalJoin.
+     */
+    public void join(String[] chromosomes, int[] starts, int[] ends, IntervalJoin.JoinVisitor visitor)
+            throws IOException {
+        IntervalJoin.join(this, chromosomes, starts, ends, visitor);
+    }
+
+    /**
+     * Every gene on a chromosome, frozen rows and tree combined, in ascending
+     * start order.
+     */
+    public List<IntervalNode> genes(String chromosome) {
+        return genes(current, chromosome);
+    }
+
+    private static List<IntervalNode> genes(Version version, String chromosome) {
+        List<IntervalNode> result = new ArrayList<>();
+        ImplicitIntervalIndex flat = version.frozen.get(chromosome);
+        if (flat != null) {
+            result.addAll(flat.rows());
+        }
+        IntervalTree tree = version.trees.get(chromosome);
+        if (tree != null) {
+            result.addAll(tree.inOrder());
+        }
+        result.sort((a, b) -> a.start != b.start ? Integer.compare(a.start, b.start) : Integer.compare(a.id, b.id));
+        return result;
+    }
+
+    /**
+     * The chromosome's genes as start-sorted partitions for sweep-style
+     * algorithms: the frozen index, if any, plus a flat copy of the tree. Take
+     * a snapshot() first to keep several calls on the same version.
+     */
+    public List<ImplicitIntervalIndex> sortedPartitions(String chromosome) {
+        Version version = current;
+        List<ImplicitIntervalIndex> partitions = new ArrayList<>(2);
+        ImplicitIntervalIndex flat = version.frozen.get(chromosome);
+        if (flat != null) {
+            partitions.add(flat);
+        }
+        IntervalTree tree = version.trees.get(chromosome);
+        if (tree != null && !tree.isEmpty()) {
+            partitions.add(FlatIntervalIndex.of(tree));
+        }
+        return partitions;
+    }
+
+    /**
+     * Frozen index of the given chromosome, or null if it has none.
+     */
+    public ImplicitIntervalIndex getFrozen(String chromosome) {
+        return current.frozen.get(chromosome);
+    }
+
+    /**
+     * Tree holding genes inserted on the given chromosome, or null if there are
+     * none. The returned tree is never modified; later inserts replace it.
+     */
+    public IntervalTree getTree(String chromosome) {
+        return current.trees.get(chromosome);
+    }
+
+    /**
+     * Chromosome names in sorted order.
+     */
+    public Set<String> chromosomes() {
+        return chromosomes(current);
+    }
+
+    private static Set<String> chromosomes(Version version) {
+        Set<String> names = new TreeSet<>(version.trees.keySet());
+        names.addAll(version.frozen.keySet());
+        return names;
+    }
+
+    public boolean isEmpty() {
+        Version version = current;
+        for (IntervalTree tree : version.trees.values()) {
+            if (!tree.isEmpty()) {
+                return false;
+            }
+        }
+        for (ImplicitIntervalIndex flat : version.frozen.values()) {
+            if (flat.size() > flat.deletedCount()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
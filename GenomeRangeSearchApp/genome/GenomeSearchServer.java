@@ -1,5 +1,6 @@
 package genome;
 
+import com.sun.net.httpserver.HttpContext;
 import com.sun.net.httpserver.HttpServer;
 import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpExchange;
@@ -7,10 +8,17 @@ import java.io.*;
 import java.net.InetSocketAddress;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
  * GenomeSearchServer - Standalone HTTP Server for Genome Range Search
@@ -28,150 +36,528 @@ import java.util.HashMap;
  */
 public class GenomeSearchServer {
 
-        private static IntervalTree intervalTree;
+        /** Genes per /search page unless the request asks for another limit */
+        private static final int DEFAULT_PAGE_SIZE = 500;
+
+        /** Largest page a client may request */
+        private static final int MAX_PAGE_SIZE = 10000;
+
+        /** Most neighbours a /nearest request may ask for */
+        private static final int MAX_NEAREST = 1000;
+
+        /** Suggestions per /suggest request unless it asks for another limit */
+        private static final int DEFAULT_SUGGESTIONS = 10;
+
+        /** Most suggestions a /suggest request may ask for */
+        private static final int MAX_SUGGESTIONS = 100;
+
+        private static GenomeIndex genomeIndex;
         private static String basePath;
+        private static AdmissionControl admissionControl;
+        private static ResponseCache responseCache;
+        private static StaticAssets staticAssets;
+
+        /** Parameters that shape a /search or /api/search response besides its format */
+        private static final String[] CACHE_KEY_PARAMETERS = { "chromosome", "queryStart", "queryEnd", "type",
+                        "disease", "limit", "cursor" };
 
         public static void main(String[] args) throws IOException {
                 // Get the directory where server is running
                 basePath = System.getProperty("user.dir");
 
-                // Initialize Interval Tree with sample genome data
-                initializeIntervalTree();
+                // Map a prebuilt index file if one is configured, otherwise load an annotation
+                // file or fall back to the sample data
+                String indexFile = System.getenv("GENOME_INDEX");
+                String dataFile = System.getenv("GENOME_DATA");
+                String walDir = System.getenv("GENOME_WAL_DIR");
+                Path snapshotFile = walDir == null ? null : Paths.get(walDir, "snapshot.idx");
+                if (snapshotFile != null && Files.exists(snapshotFile)) {
+                        // The latest snapshot already holds the base data plus earlier inserts
+                        genomeIndex = IndexFile.open(snapshotFile);
+                        System.out.println("Mapped snapshot: " + snapshotFile);
+                } else if (indexFile != null && Files.exists(Paths.get(indexFile))) {
+                        genomeIndex = IndexFile.open(Paths.get(indexFile));
+                        System.out.println("Mapped index file: " + indexFile);
+                } else {
+                        if (dataFile != null) {
+                                loadAnnotationFile(dataFile);
+                        } else {
+                                initializeIntervalTree();
+                        }
+                        if (indexFile != null) {
+                                IndexFile.write(genomeIndex, Paths.get(indexFile));
+                                System.out.println("Wrote index file: " + indexFile);
+                        }
+                }
+
+                if (walDir != null) {
+                        startWriteAheadLog(Paths.get(walDir), snapshotFile);
+                }
+
+                // Precomputed point-query hit lists, capped at this many entries per gene (0 = off)
+                int stabBudget = Integer.parseInt(System.getenv().getOrDefault("GENOME_STAB_INDEX", "16"));
+                if (stabBudget > 0) {
+                        System.out.println("Stab index built for " + genomeIndex.buildStabIndexes(stabBudget)
+                                        + " of " + genomeIndex.chromosomes().size() + " chromosomes");
+                }
+
+                // Encoded /search and /api/search responses, dropped whenever the index changes (0 = off)
+                long cacheMegabytes = Long.parseLong(System.getenv().getOrDefault("GENOME_CACHE_MB", "64"));
+                responseCache = new ResponseCache(cacheMegabytes << 20);
+
+                // Dashboard files are read and compressed once; non-HTML assets may be cached this many seconds
+                long assetMaxAge = Long.parseLong(System.getenv().getOrDefault("GENOME_ASSET_MAX_AGE", "86400"));
+                staticAssets = StaticAssets.load(Paths.get(basePath), assetMaxAge);
+
+                // Gene names for /gene and /suggest, built before requests (and writes) arrive
+                long namesStarted = System.nanoTime();
+                genomeIndex.buildNameIndex();
+                System.out.printf("Name index built in %.1f ms%n", (System.nanoTime() - namesStarted) / 1e6);
 
                 // Get port from environment variable (for Railway/Heroku) or default to 8080
                 int port = Integer.parseInt(System.getenv().getOrDefault("PORT", "8080"));
 
+                // Request executor, accept backlog and overload limit are configurable
+                String executorMode = System.getenv().getOrDefault("GENOME_EXECUTOR", "fixed");
+                int threads = Integer.parseInt(System.getenv().getOrDefault("GENOME_THREADS",
+                                String.valueOf(Runtime.getRuntime().availableProcessors())));
+                int backlog = Integer.parseInt(System.getenv().getOrDefault("GENOME_BACKLOG", "1024"));
+                int maxInFlight = Integer.parseInt(System.getenv().getOrDefault("GENOME_MAX_INFLIGHT",
+                                String.valueOf(threads * 64)));
+                admissionControl = new AdmissionControl(createExecutor(executorMode, threads), maxInFlight);
+
                 // Create HTTP server on dynamic port
-                HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+                HttpServer server = HttpServer.create(new InetSocketAddress(port), backlog);
 
                 // Route handlers
-                server.createContext("/", new StaticFileHandler()); // Serve HTML/CSS
-                server.createContext("/search", new SearchHandler()); // Handle search
-                server.createContext("/addGene", new AddGeneHandler()); // Handle add gene
+                route(server, "/", new StaticFileHandler()); // Serve HTML/CSS
+                route(server, "/search", new SearchHandler()); // Handle search
+                route(server, "/api/search", new ApiSearchHandler()); // Streaming JSON search
+                route(server, "/search/batch", new BatchSearchHandler()); // Many regions per request
+                route(server, "/search/count", new CountHandler()); // Overlap count only
+                route(server, "/search/summary", new SummaryHandler()); // Count and bases by gene type
+                route(server, "/nearest", new NearestHandler()); // Closest genes to a position
+                route(server, "/join", new JoinHandler()); // Intersect a region set with all genes
+                route(server, "/gene/", new GeneHandler()); // Genes by exact name
+                route(server, "/suggest", new SuggestHandler()); // Gene name autocomplete
+                route(server, "/addGene", new AddGeneHandler()); // Handle add gene
+                route(server, "/addGene/bulk", new BulkAddGeneHandler()); // Stream many genes in one request
+                route(server, "/removeGene", new RemoveGeneHandler()); // Delete a gene by id
+                route(server, "/updateGene", new UpdateGeneHandler()); // Move a gene to new coordinates
+                route(server, "/metrics", new MetricsHandler()); // Prometheus metrics
 
-                server.setExecutor(null); // Use default executor
+                server.setExecutor(admissionControl);
                 server.start();
 
                 System.out.println("========================================");
                 System.out.println("  Genome Range Search Engine Started!");
                 System.out.println("========================================");
                 System.out.println("  Server running on port: " + port);
+                System.out.println("  Executor: " + executorMode + " (" + threads + " threads, max "
+                                + maxInFlight + " in flight)");
                 System.out.println("  Press Ctrl+C to stop");
                 System.out.println("========================================");
         }
 
+        /**
+         * Replay the log written since the last snapshot, then log every new
+         * insert and snapshot the index every GENOME_SNAPSHOT_SECONDS (default
+         * 300) when genes were added.
+         */
+        private static void startWriteAheadLog(Path directory, Path snapshotFile) throws IOException {
+                long started = System.nanoTime();
+                long replayed = WriteAheadLog.replay(directory, genomeIndex);
+                System.out.printf("Replayed %d logged genes in %.1f ms%n", replayed,
+                                (System.nanoTime() - started) / 1e6);
+                WriteAheadLog log = WriteAheadLog.open(directory);
+                genomeIndex.attachLog(log);
+
+                long period = Long.parseLong(System.getenv().getOrDefault("GENOME_SNAPSHOT_SECONDS", "300"));
+                ScheduledExecutorService snapshots = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "genome-snapshot");
+                        thread.setDaemon(true);
+                        return thread;
+                });
+                long[] snapshotVersion = { genomeIndex.version() };
+                snapshots.scheduleWithFixedDelay(() -> {
+                        long version = genomeIndex.version();
+                        if (version == snapshotVersion[0]) {
+                                return;
+                        }
+                        try {
+                                genomeIndex.writeSnapshot(snapshotFile);
+                                snapshotVersion[0] = version;
+                                System.out.println("Wrote snapshot at version " + version);
+                        } catch (IOException e) {
+                                System.err.println("Snapshot failed: " + e.getMessage());
+                        }
+                }, period, period, TimeUnit.SECONDS);
+
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                        try {
+                                log.close();
+                        } catch (IOException e) {
+                                System.err.println("Closing the write-ahead log failed: " + e.getMessage());
+                        }
+                }));
+        }
+
+        /**
+         * Register a handler behind the overload filter.
+         */
+        private static void route(HttpServer server, String path, HttpHandler handler) {
+                HttpContext context = server.createContext(path, handler);
+                // Timed first, so requests shed with 503 still show up in the latency and status metrics
+                context.getFilters().add(Metrics.timer(path));
+                context.getFilters().add(admissionControl.filter());
+        }
+
+        /**
+         * Create the request executor.
+         * 
+         * Modes: fixed (thread pool, default), workstealing (fork/join pool),
+         * virtual (one virtual thread per request, Java 21+) and single (the old
+         * one-thread behaviour).
+         */
+        private static ExecutorService createExecutor(String mode, int threads) {
+                switch (mode) {
+                        case "single":
+                                return Executors.newSingleThreadExecutor();
+                        case "workstealing":
+                                return Executors.newWorkStealingPool(threads);
+                        case "virtual":
+                                try {
+                                        // Looked up reflectively so the server still builds and runs on Java 17
+                                        return (ExecutorService) Executors.class
+                                                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                                } catch (ReflectiveOperationException e) {
+                                        System.out.println("Virtual threads need Java 21+, using a fixed pool");
+                                        return Executors.newFixedThreadPool(threads);
+                                }
+                        case "fixed":
+                                return Executors.newFixedThreadPool(threads);
+                        default:
+                                throw new IllegalArgumentException("Unknown GENOME_EXECUTOR mode: " + mode);
+                }
+        }
+
+        /**
+         * Write a gene as a JSON object, using the same field names as /addGene.
+         */
+        static void writeGene(JsonWriter json, IntervalNode node) throws IOException {
+                json.beginObject()
+                                .name("id").value(node.id)
+                                .name("name").value(node.geneName)
+                                .name("start").value(node.start)
+                                .name("end").value(node.end)
+                                .name("chromosome").value(node.chromosome)
+                                .name("type").value(node.type)
+                                .name("function").value(node.function)
+                                .name("disease").value(node.diseaseAssociation)
+                                .name("applications").value(node.applications)
+                                .endObject();
+        }
+
+        /**
+         * Send {"success":false,"message":...} with the given status code.
+         */
+        static void sendJsonError(HttpExchange exchange, int status, String message) throws IOException {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                JsonWriter json = new JsonWriter(body);
+                json.beginObject().name("success").value(false).name("message").value(message).endObject();
+                json.close();
+                sendJson(exchange, status, body);
+        }
+
+        /**
+         * Send an encoded JSON body with status 200.
+         */
+        static void sendJson(HttpExchange exchange, ByteArrayOutputStream body) throws IOException {
+                sendJson(exchange, 200, body);
+        }
+
+        private static void sendJson(HttpExchange exchange, int status, ByteArrayOutputStream body)
+                        throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, body.size());
+                OutputStream os = exchange.getResponseBody();
+                body.writeTo(os);
+                os.close();
+        }
+
+        /**
+         * Cache key of a search response: the format plus every parameter in
+         * CACHE_KEY_PARAMETERS, length-prefixed so no two requests share a key.
+         */
+        static String cacheKey(String format, Map<String, String> params) {
+                StringBuilder key = new StringBuilder(format);
+                for (String name : CACHE_KEY_PARAMETERS) {
+                        String value = params.get(name);
+                        key.append('|');
+                        if (value != null) {
+                                key.append(value.length()).append(':').append(value);
+                        }
+                }
+                return key.toString();
+        }
+
+        /**
+         * Replay a cached response with status 200.
+         */
+        static void sendCached(HttpExchange exchange, ResponseCache.Response cached) throws IOException {
+                exchange.getResponseHeaders().set("Content-Type", cached.getContentType());
+                if (cached.getNextCursor() != null) {
+                        exchange.getResponseHeaders().set("X-Next-Cursor", cached.getNextCursor());
+                }
+                exchange.getResponseHeaders().set("X-Cache", "HIT");
+                exchange.sendResponseHeaders(200, cached.getBody().length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(cached.getBody());
+                os.close();
+        }
+
+        /**
+         * URL-decoded query string parameters; values are trimmed.
+         */
+        static Map<String, String> queryParameters(HttpExchange exchange) {
+                Map<String, String> params = new HashMap<>();
+                String query = exchange.getRequestURI().getRawQuery();
+                if (query != null) {
+                        for (String param : query.split("&")) {
+                                String[] pair = param.split("=", 2);
+                                if (pair.length == 2) {
+                                        params.put(java.net.URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+                                                        java.net.URLDecoder.decode(pair[1], StandardCharsets.UTF_8).trim());
+                                }
+                        }
+                }
+                return params;
+        }
+
+        /**
+         * Query string parameters plus URL-encoded form fields from the body;
+         * form fields win.
+         */
+        static Map<String, String> formParameters(HttpExchange exchange) throws IOException {
+                Map<String, String> params = queryParameters(exchange);
+                String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+                for (String param : body.split("&")) {
+                        String[] pair = param.split("=", 2);
+                        if (pair.length == 2) {
+                                params.put(java.net.URLDecoder.decode(pair[0], StandardCharsets.UTF_8),
+                                                java.net.URLDecoder.decode(pair[1], StandardCharsets.UTF_8).trim());
+                        }
+                }
+                return params;
+        }
+
+        /**
+         * Escape request text or stored gene fields for HTML; null becomes "".
+         */
+        static String escapeHtml(String text) {
+                if (text == null) {
+                        return "";
+                }
+                return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;")
+                                .replace("'", "&#39;");
+        }
+
+        /**
+         * Search filter from the chromosome (comma-separated), type
+         * (comma-separated) and disease (substring) parameters.
+         */
+        static GeneFilter geneFilter(Map<String, String> params) {
+                return GeneFilter.parse(params.get("chromosome"), params.get("type"), params.get("disease"));
+        }
+
+        /**
+         * Integer parameter, or defaultValue when missing or not a number.
+         */
+        static int intParameter(Map<String, String> params, String name, int defaultValue) {
+                String value = params.get(name);
+                if (value == null) {
+                        return defaultValue;
+                }
+                try {
+                        return Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                        return defaultValue;
+                }
+        }
+
+        /**
+         * Regions posted as one "chromosome start end [name]" line each (BED-like;
+         * whitespace or comma separated, '#' lines ignored).
+         */
+        static class Regions {
+                List<String> chromosomes = new ArrayList<>();
+                List<String> names = new ArrayList<>();
+                int[] starts = new int[1024];
+                int[] ends = new int[1024];
+                int count;
+
+                /**
+                 * Read the request body, or send a 400 error and return null if a line
+                 * is malformed.
+                 */
+                static Regions read(HttpExchange exchange) throws IOException {
+                        Regions regions = new Regions();
+                        BufferedReader reader = new BufferedReader(
+                                        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+                        String line;
+                        int lineNumber = 0;
+                        while ((line = reader.readLine()) != null) {
+                                lineNumber++;
+                                line = line.trim();
+                                if (line.isEmpty() || line.startsWith("#")) {
+                                        continue;
+                                }
+
+                                String[] fields = line.split("[\\s,]+");
+                                int start, end;
+                                try {
+                                        start = fields.length >= 3 ? Integer.parseInt(fields[1]) : -1;
+                                        end = fields.length >= 3 ? Integer.parseInt(fields[2]) : -1;
+                                } catch (NumberFormatException e) {
+                                        start = end = -1;
+                                }
+                                if (start < 0 || end < 0 || start > end) {
+                                        sendJsonError(exchange, 400, "Line " + lineNumber
+                                                        + ": expected 'chromosome start end [name]' with 0 <= start <= end");
+                                        return null;
+                                }
+
+                                int count = regions.count;
+                                if (count == regions.starts.length) {
+                                        regions.starts = Arrays.copyOf(regions.starts, count * 2);
+                                        regions.ends = Arrays.copyOf(regions.ends, count * 2);
+                                }
+                                regions.chromosomes.add(fields[0]);
+                                regions.names.add(fields.length > 3 ? fields[3] : ".");
+                                regions.starts[count] = start;
+                                regions.ends[count] = end;
+                                regions.count++;
+                        }
+                        regions.starts = Arrays.copyOf(regions.starts, regions.count);
+                        regions.ends = Arrays.copyOf(regions.ends, regions.count);
+                        return regions;
+                }
+        }
+
+        /**
+         * Stream a BED/GFF3/GTF annotation file (optionally gzipped) into the index.
+         */
+        private static void loadAnnotationFile(String dataFile) throws IOException {
+                genomeIndex = new GenomeIndex();
+                GeneLoader loader = new GeneLoader(genomeIndex, System.getenv("GENOME_FEATURE"));
+                loader.load(Paths.get(dataFile));
+                genomeIndex.freeze();
+                System.out.println("Loaded " + loader.getLoaded() + " genes from " + dataFile + " ("
+                                + loader.getSkipped() + " malformed lines skipped).");
+        }
+
         /**
          * Initialize the Interval Tree with 37-gene dataset.
          * Includes diverse gene types: Protein Coding, miRNA, lncRNA, Regulatory,
          * Pseudogene, snoRNA
          */
         private static void initializeIntervalTree() {
-                intervalTree = new IntervalTree();
+                List<IntervalNode> genes = new ArrayList<>();
 
                 // Protein Coding genes (Cancer-related)
-                intervalTree.insert(100, 300, "BRCA1", "Chr17", "Protein Coding", "DNA repair", "Breast cancer", "");
-                intervalTree.insert(250, 420, "TP53", "Chr17", "Protein Coding", "Tumor suppressor", "Multiple cancers",
-                                "");
-                intervalTree.insert(500, 680, "MYC", "Chr8", "Protein Coding", "Cell cycle regulation", "Leukemia", "");
-                intervalTree.insert(700, 920, "EGFR", "Chr7", "Protein Coding", "Cell signaling", "Lung cancer", "");
-                intervalTree.insert(850, 1020, "KRAS", "Chr12", "Protein Coding", "Signal transduction",
-                                "Pancreatic cancer", "");
-                intervalTree.insert(1050, 1220, "PTEN", "Chr10", "Protein Coding", "Tumor suppression", "Glioblastoma",
-                                "");
-                intervalTree.insert(1250, 1430, "ALK", "Chr2", "Protein Coding", "Kinase signaling", "Lung cancer", "");
-                intervalTree.insert(1450, 1630, "BRAF", "Chr7", "Protein Coding", "MAPK pathway", "Melanoma", "");
-                intervalTree.insert(1650, 1820, "CDKN2A", "Chr9", "Protein Coding", "Cell cycle inhibition",
-                                "Skin cancer", "");
-                intervalTree.insert(1850, 2030, "RB1", "Chr13", "Protein Coding", "Cell cycle control",
-                                "Retinoblastoma", "");
-                intervalTree.insert(2050, 2290, "NF1", "Chr17", "Protein Coding", "Signal regulation",
-                                "Neurofibromatosis", "");
-                intervalTree.insert(2300, 2550, "APC", "Chr5", "Protein Coding", "Tumor suppression", "Colon cancer",
-                                "");
-                intervalTree.insert(2580, 2760, "SMAD4", "Chr18", "Protein Coding", "TGF-beta signaling",
-                                "Pancreatic cancer", "");
-                intervalTree.insert(2780, 2990, "PIK3CA", "Chr3", "Protein Coding", "Cell growth regulation",
-                                "Breast cancer", "");
-                intervalTree.insert(3020, 3190, "VHL", "Chr3", "Protein Coding", "Hypoxia response", "Kidney cancer",
-                                "");
+                genes.add(new IntervalNode(100, 300, "BRCA1", "Chr17", "Protein Coding", "DNA repair", "Breast cancer", ""));
+                genes.add(new IntervalNode(250, 420, "TP53", "Chr17", "Protein Coding", "Tumor suppressor", "Multiple cancers",
+                                ""));
+                genes.add(new IntervalNode(500, 680, "MYC", "Chr8", "Protein Coding", "Cell cycle regulation", "Leukemia", ""));
+                genes.add(new IntervalNode(700, 920, "EGFR", "Chr7", "Protein Coding", "Cell signaling", "Lung cancer", ""));
+                genes.add(new IntervalNode(850, 1020, "KRAS", "Chr12", "Protein Coding", "Signal transduction",
+                                "Pancreatic cancer", ""));
+                genes.add(new IntervalNode(1050, 1220, "PTEN", "Chr10", "Protein Coding", "Tumor suppression", "Glioblastoma",
+                                ""));
+                genes.add(new IntervalNode(1250, 1430, "ALK", "Chr2", "Protein Coding", "Kinase signaling", "Lung cancer", ""));
+                genes.add(new IntervalNode(1450, 1630, "BRAF", "Chr7", "Protein Coding", "MAPK pathway", "Melanoma", ""));
+                genes.add(new IntervalNode(1650, 1820, "CDKN2A", "Chr9", "Protein Coding", "Cell cycle inhibition",
+                                "Skin cancer", ""));
+                genes.add(new IntervalNode(1850, 2030, "RB1", "Chr13", "Protein Coding", "Cell cycle control",
+                                "Retinoblastoma", ""));
+                genes.add(new IntervalNode(2050, 2290, "NF1", "Chr17", "Protein Coding", "Signal regulation",
+                                "Neurofibromatosis", ""));
+                genes.add(new IntervalNode(2300, 2550, "APC", "Chr5", "Protein Coding", "Tumor suppression", "Colon cancer",
+                                ""));
+                genes.add(new IntervalNode(2580, 2760, "SMAD4", "Chr18", "Protein Coding", "TGF-beta signaling",
+                                "Pancreatic cancer", ""));
+                genes.add(new IntervalNode(2780, 2990, "PIK3CA", "Chr3", "Protein Coding", "Cell growth regulation",
+                                "Breast cancer", ""));
+                genes.add(new IntervalNode(3020, 3190, "VHL", "Chr3", "Protein Coding", "Hypoxia response", "Kidney cancer",
+                                ""));
 
                 // miRNA genes
-                intervalTree.insert(3200, 3250, "MIR21", "Chr17", "miRNA", "Post-transcriptional regulation", "Cancer",
-                                "");
-                intervalTree.insert(3270, 3320, "MIR155", "Chr21", "miRNA", "Immune regulation", "Lymphoma", "");
-                intervalTree.insert(3340, 3390, "MIR34A", "Chr1", "miRNA", "Tumor suppression", "Cancer", "");
-                intervalTree.insert(3410, 3460, "MIR10B", "Chr2", "miRNA", "Cell migration", "Breast cancer", "");
-                intervalTree.insert(3480, 3530, "MIR122", "Chr18", "miRNA", "Liver metabolism", "Liver disease", "");
+                genes.add(new IntervalNode(3200, 3250, "MIR21", "Chr17", "miRNA", "Post-transcriptional regulation", "Cancer",
+                                ""));
+                genes.add(new IntervalNode(3270, 3320, "MIR155", "Chr21", "miRNA", "Immune regulation", "Lymphoma", ""));
+                genes.add(new IntervalNode(3340, 3390, "MIR34A", "Chr1", "miRNA", "Tumor suppression", "Cancer", ""));
+                genes.add(new IntervalNode(3410, 3460, "MIR10B", "Chr2", "miRNA", "Cell migration", "Breast cancer", ""));
+                genes.add(new IntervalNode(3480, 3530, "MIR122", "Chr18", "miRNA", "Liver metabolism", "Liver disease", ""));
 
                 // lncRNA genes
-                intervalTree.insert(3550, 3750, "LINC00152", "Chr2", "lncRNA", "Gene regulation", "Gastric cancer", "");
-                intervalTree.insert(3780, 3980, "HOTAIR", "Chr12", "lncRNA", "Chromatin remodeling", "Breast cancer",
-                                "");
-                intervalTree.insert(4000, 4200, "MALAT1", "Chr11", "lncRNA", "RNA splicing", "Metastasis", "");
-                intervalTree.insert(4230, 4450, "XIST", "ChrX", "lncRNA", "X-chromosome inactivation",
-                                "Epigenetic disorders", "");
-                intervalTree.insert(4480, 4680, "NEAT1", "Chr11", "lncRNA", "Nuclear structure", "Cancer", "");
+                genes.add(new IntervalNode(3550, 3750, "LINC00152", "Chr2", "lncRNA", "Gene regulation", "Gastric cancer", ""));
+                genes.add(new IntervalNode(3780, 3980, "HOTAIR", "Chr12", "lncRNA", "Chromatin remodeling", "Breast cancer",
+                                ""));
+                genes.add(new IntervalNode(4000, 4200, "MALAT1", "Chr11", "lncRNA", "RNA splicing", "Metastasis", ""));
+                genes.add(new IntervalNode(4230, 4450, "XIST", "ChrX", "lncRNA", "X-chromosome inactivation",
+                                "Epigenetic disorders", ""));
+                genes.add(new IntervalNode(4480, 4680, "NEAT1", "Chr11", "lncRNA", "Nuclear structure", "Cancer", ""));
 
                 // Regulatory elements
-                intervalTree.insert(4700, 4850, "REG1", "Chr6", "Regulatory", "Transcription regulation",
-                                "Metabolic disorder", "");
-                intervalTree.insert(4870, 5020, "REG2", "Chr8", "Regulatory", "Enhancer activity", "None", "");
-                intervalTree.insert(5050, 5200, "REG3", "Chr4", "Regulatory", "Gene expression control",
-                                "Immune disorder", "");
-                intervalTree.insert(5220, 5370, "REG4", "Chr10", "Regulatory", "Promoter regulation", "Cancer", "");
-                intervalTree.insert(5400, 5550, "REG5", "Chr14", "Regulatory", "Chromatin accessibility", "None", "");
+                genes.add(new IntervalNode(4700, 4850, "REG1", "Chr6", "Regulatory", "Transcription regulation",
+                                "Metabolic disorder", ""));
+                genes.add(new IntervalNode(4870, 5020, "REG2", "Chr8", "Regulatory", "Enhancer activity", "None", ""));
+                genes.add(new IntervalNode(5050, 5200, "REG3", "Chr4", "Regulatory", "Gene expression control",
+                                "Immune disorder", ""));
+                genes.add(new IntervalNode(5220, 5370, "REG4", "Chr10", "Regulatory", "Promoter regulation", "Cancer", ""));
+                genes.add(new IntervalNode(5400, 5550, "REG5", "Chr14", "Regulatory", "Chromatin accessibility", "None", ""));
 
                 // Pseudogenes
-                intervalTree.insert(5580, 5700, "PSEUD1", "Chr1", "Pseudogene", "Inactive gene copy", "None", "");
-                intervalTree.insert(5720, 5850, "PSEUD2", "Chr5", "Pseudogene", "Gene relic", "None", "");
-                intervalTree.insert(5870, 6000, "PSEUD3", "Chr9", "Pseudogene", "Nonfunctional duplication", "None",
-                                "");
+                genes.add(new IntervalNode(5580, 5700, "PSEUD1", "Chr1", "Pseudogene", "Inactive gene copy", "None", ""));
+                genes.add(new IntervalNode(5720, 5850, "PSEUD2", "Chr5", "Pseudogene", "Gene relic", "None", ""));
+                genes.add(new IntervalNode(5870, 6000, "PSEUD3", "Chr9", "Pseudogene", "Nonfunctional duplication", "None",
+                                ""));
 
                 // snoRNA genes
-                intervalTree.insert(6020, 6100, "SNORD1", "Chr15", "snoRNA", "rRNA modification", "None", "");
-                intervalTree.insert(6120, 6200, "SNORD2", "Chr16", "snoRNA", "RNA processing", "None", "");
-                intervalTree.insert(6220, 6300, "SNORD3", "Chr17", "snoRNA", "Ribosome biogenesis", "None", "");
+                genes.add(new IntervalNode(6020, 6100, "SNORD1", "Chr15", "snoRNA", "rRNA modification", "None", ""));
+                genes.add(new IntervalNode(6120, 6200, "SNORD2", "Chr16", "snoRNA", "RNA processing", "None", ""));
+                genes.add(new IntervalNode(6220, 6300, "SNORD3", "Chr17", "snoRNA", "Ribosome biogenesis", "None", ""));
+
+                // Build one balanced tree per chromosome in one pass instead of 37 inserts
+                genomeIndex = GenomeIndex.bulkLoad(genes);
+                // The seed data is read-mostly: serve it from flat arrays, new genes go to the trees
+                genomeIndex.freeze();
 
                 System.out.println("Interval Tree initialized with 37 genes.");
         }
 
         /**
-         * Handler for static files (index.html, styles.css)
+         * Handler for static files (index.html, styles.css), served from
+         * memory by StaticAssets with ETag revalidation and gzip
          */
         static class StaticFileHandler implements HttpHandler {
                 @Override
                 public void handle(HttpExchange exchange) throws IOException {
                         String path = exchange.getRequestURI().getPath();
+                        String method = exchange.getRequestMethod();
 
-                        // Default to index.html
-                        if (path.equals("/")) {
-                                path = "/index.html";
+                        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                                exchange.sendResponseHeaders(405, -1); // Method not allowed
+                                return;
                         }
-
-                        // Determine file to serve
-                        String filePath = basePath + path.replace("/", File.separator);
-                        File file = new File(filePath);
-
-                        if (file.exists() && file.isFile()) {
-                                // Determine content type
-                                String contentType = "text/html";
-                                if (path.endsWith(".css")) {
-                                        contentType = "text/css";
-                                }
-
-                                // Read and send file
-                                byte[] fileBytes = Files.readAllBytes(Paths.get(filePath));
-                                exchange.getResponseHeaders().set("Content-Type", contentType);
-                                exchange.sendResponseHeaders(200, fileBytes.length);
-                                OutputStream os = exchange.getResponseBody();
-                                os.write(fileBytes);
-                                os.close();
+                        if (staticAssets.contains(path)) {
+                                staticAssets.send(exchange, path);
                         } else {
                                 // 404 Not Found
-                                String response = "File not found: " + path;
-                                exchange.sendResponseHeaders(404, response.length());
+                                byte[] response = ("File not found: " + path).getBytes(StandardCharsets.UTF_8);
+                                exchange.sendResponseHeaders(404, response.length);
                                 OutputStream os = exchange.getResponseBody();
-                                os.write(response.getBytes());
+                                os.write(response);
                                 os.close();
                         }
                 }
@@ -180,55 +566,75 @@ public class GenomeSearchServer {
         /**
          * Handler for /search endpoint
          * 
-         * Accepts: queryStart and queryEnd parameters
-         * Returns: HTML page with overlapping genes
+         * Accepts: queryStart and queryEnd parameters, optional chromosome
+         * (comma-separated), type (comma-separated), disease (substring), limit
+         * (page size, default DEFAULT_PAGE_SIZE) and cursor (from the previous page)
+         * Returns: HTML page with one page of overlapping genes and a link to the next
          * 
-         * Time Complexity: O(log n + k)
+         * Time Complexity: O(log n + limit) per page, where n is the size of the
+         * searched chromosome when one is given. Type and disease filters are
+         * applied during the walk, and subtrees without a requested type are skipped.
+         * Rendered pages are cached per index version (see ResponseCache).
          */
         static class SearchHandler implements HttpHandler {
                 @Override
                 public void handle(HttpExchange exchange) throws IOException {
                         // Parse query parameters
-                        String query = exchange.getRequestURI().getQuery();
-                        int queryStart = -1, queryEnd = -1;
-
-                        if (query != null) {
-                                for (String param : query.split("&")) {
-                                        String[] pair = param.split("=");
-                                        if (pair.length == 2) {
-                                                if (pair[0].equals("queryStart")) {
-                                                        try {
-                                                                queryStart = Integer.parseInt(pair[1]);
-                                                        } catch (NumberFormatException e) {
-                                                        }
-                                                } else if (pair[0].equals("queryEnd")) {
-                                                        try {
-                                                                queryEnd = Integer.parseInt(pair[1]);
-                                                        } catch (NumberFormatException e) {
-                                                        }
-                                                }
-                                        }
-                                }
-                        }
+                        Map<String, String> params = queryParameters(exchange);
+                        int queryStart = intParameter(params, "queryStart", -1);
+                        int queryEnd = intParameter(params, "queryEnd", -1);
+                        String chromosome = params.get("chromosome");
+                        GeneFilter filter = geneFilter(params);
+                        int limit = intParameter(params, "limit", DEFAULT_PAGE_SIZE);
 
                         String response;
+                        // Set once the response is a result page that may be cached
+                        String cacheKey = null;
+                        GenomeIndex index = genomeIndex.snapshot();
                         if (queryStart < 0 || queryEnd < 0 || queryStart > queryEnd) {
                                 response = generateErrorPage(
                                                 "Invalid input. Please enter valid start and end positions.");
+                        } else if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                                response = generateErrorPage("Invalid limit. Please request 1 to " + MAX_PAGE_SIZE
+                                                + " genes per page.");
                         } else {
-                                // Perform Interval Tree search - O(log n + k)
-                                List<IntervalNode> results = intervalTree.overlapSearch(queryStart, queryEnd);
-                                response = generateResultPage(queryStart, queryEnd, results);
+                                // Hot windows are answered from the cache while the index is unchanged
+                                ResponseCache.Response cached = responseCache.get(cacheKey("html", params),
+                                                index.version());
+                                if (cached != null) {
+                                        sendCached(exchange, cached);
+                                        return;
+                                }
+                                try {
+                                        // Search the chromosome's partition, stopping once the page is full - O(log n + limit)
+                                        SearchPage.Cursor cursor = params.containsKey("cursor")
+                                                        ? SearchPage.Cursor.parse(params.get("cursor"))
+                                                        : null;
+                                        SearchPage page = index.searchPage(filter, queryStart, queryEnd, cursor, limit);
+                                        response = generateResultPage(index, params, queryStart, queryEnd,
+                                                        page.getGenes(), page.getNext(), limit);
+                                        cacheKey = cacheKey("html", params);
+                                } catch (IllegalArgumentException e) {
+                                        response = generateErrorPage("Invalid cursor. Please start a new search.");
+                                }
                         }
 
+                        byte[] body = response.getBytes(StandardCharsets.UTF_8);
+                        if (cacheKey != null) {
+                                responseCache.put(cacheKey, index.version(),
+                                                new ResponseCache.Response("text/html; charset=UTF-8", null, body));
+                        }
                         exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
-                        exchange.sendResponseHeaders(200, response.getBytes("UTF-8").length);
+                        exchange.sendResponseHeaders(200, body.length);
                         OutputStream os = exchange.getResponseBody();
-                        os.write(response.getBytes("UTF-8"));
+                        os.write(body);
                         os.close();
                 }
 
-                private String generateResultPage(int queryStart, int queryEnd, List<IntervalNode> results) {
+                private String generateResultPage(GenomeIndex index, Map<String, String> params, int queryStart,
+                                int queryEnd,
+                                List<IntervalNode> results, SearchPage.Cursor next, int limit) {
+                        String chromosome = params.get("chromosome");
                         StringBuilder html = new StringBuilder();
                         html.append("<!DOCTYPE html><html lang=\"en\"><head>");
                         html.append("<meta charset=\"UTF-8\">");
@@ -258,10 +664,22 @@ public class GenomeSearchServer {
 
                         // Query info card
                         html.append("<div class=\"search-card\" style=\"margin-bottom: 2rem;\">");
-                        html.append("<h2 style=\"color: #667eea; margin-bottom: 1rem;\">Query Interval: [")
-                                        .append(queryStart).append(", ").append(queryEnd).append("]</h2>");
-                        html.append("<p style=\"color: #666; font-size: 1.1rem;\">Found <strong>")
-                                        .append(results.size()).append(" overlapping gene(s)</strong></p>");
+                        html.append("<h2 style=\"color: #667eea; margin-bottom: 1rem;\">Query Interval: ");
+                        if (chromosome != null && !chromosome.isEmpty()) {
+                                html.append(escapeHtml(chromosome)).append(" ");
+                        }
+                        html.append("[").append(queryStart).append(", ").append(queryEnd).append("]</h2>");
+                        for (String filter : new String[] { "type", "disease" }) {
+                                String value = params.get(filter);
+                                if (value != null && !value.isEmpty()) {
+                                        html.append("<p style=\"color: #666;\">Filtered by ").append(filter).append(": <strong>")
+                                                        .append(escapeHtml(value)).append("</strong></p>");
+                                }
+                        }
+                        html.append("<p style=\"color: #666; font-size: 1.1rem;\">")
+                                        .append(next != null ? "Showing <strong>" : "Found <strong>")
+                                        .append(results.size()).append(" overlapping gene(s)</strong>")
+                                        .append(next != null ? " on this page" : "").append("</p>");
                         html.append("<p style=\"color: #888; margin-top: 0.5rem; font-size: 0.9rem;\">Time Complexity: O(log n + k) where k = ")
                                         .append(results.size()).append("</p>");
                         html.append("</div>");
@@ -269,6 +687,27 @@ public class GenomeSearchServer {
                         if (results.isEmpty()) {
                                 html.append("<div class=\"search-card\">");
                                 html.append("<p style=\"text-align: center; color: #999; font-size: 1.2rem; padding: 2rem;\">No overlapping genes found</p>");
+
+                                // Point at the closest genes on either side instead of leaving the user to widen the window.
+                                // Nearest search cannot apply type or disease criteria, so the hint is left out when they
+                                // are set rather than naming a gene the filter excludes.
+                                GeneFilter filter = geneFilter(params);
+                                List<NearestSearch.Neighbor> nearby = new ArrayList<>();
+                                if (filter.acceptsAllGenes()) {
+                                        nearby.addAll(index.nearest(filter.getChromosomes(), queryStart, 1,
+                                                        NearestSearch.Direction.UPSTREAM));
+                                        nearby.addAll(index.nearest(filter.getChromosomes(), queryEnd, 1,
+                                                        NearestSearch.Direction.DOWNSTREAM));
+                                }
+                                for (NearestSearch.Neighbor neighbor : nearby) {
+                                        IntervalNode node = neighbor.getGene();
+                                        html.append("<p style=\"text-align: center; color: #666;\">Nearest ")
+                                                        .append(neighbor.getDistance() < 0 ? "upstream" : "downstream")
+                                                        .append(": <strong>").append(escapeHtml(String.valueOf(node.geneName)))
+                                                        .append("</strong> ").append(escapeHtml(node.chromosome)).append(" [").append(node.start).append(", ")
+                                                        .append(node.end).append("], ")
+                                                        .append(Math.abs(neighbor.getDistance())).append(" bp away</p>");
+                                }
                                 html.append("</div>");
                         } else {
                                 // Results grid
@@ -280,33 +719,33 @@ public class GenomeSearchServer {
 
                                         // Determine gene type class
                                         String typeClass = "protein-coding";
-                                        if (node.type.equals("miRNA"))
+                                        if ("miRNA".equals(node.type))
                                                 typeClass = "mirna";
-                                        else if (node.type.equals("lncRNA"))
+                                        else if ("lncRNA".equals(node.type))
                                                 typeClass = "lncrna";
-                                        else if (node.type.equals("Regulatory"))
+                                        else if ("Regulatory".equals(node.type))
                                                 typeClass = "regulatory";
-                                        else if (node.type.equals("Pseudogene"))
+                                        else if ("Pseudogene".equals(node.type))
                                                 typeClass = "pseudogene";
-                                        else if (node.type.equals("snoRNA"))
+                                        else if ("snoRNA".equals(node.type))
                                                 typeClass = "snorna";
 
                                         html.append("<div class=\"gene-card\">");
 
                                         // Gene header
                                         html.append("<div class=\"gene-header\">");
-                                        html.append("<h3>").append(node.geneName).append("</h3>");
+                                        html.append("<h3>").append(escapeHtml(node.geneName)).append("</h3>");
                                         html.append("<span class=\"gene-type ").append(typeClass).append("\">")
-                                                        .append(node.type).append("</span>");
+                                                        .append(escapeHtml(node.type)).append("</span>");
                                         html.append("</div>");
 
                                         // Gene info (basic)
                                         html.append("<div class=\"gene-info\">");
                                         html.append("<p class=\"interval\">[").append(node.start).append(", ")
                                                         .append(node.end).append("]</p>");
-                                        html.append("<p class=\"chromosome\">").append(node.chromosome).append("</p>");
-                                        html.append("<p class=\"function\">").append(node.function).append("</p>");
-                                        html.append("<p class=\"disease\">").append(node.diseaseAssociation)
+                                        html.append("<p class=\"chromosome\">").append(escapeHtml(node.chromosome)).append("</p>");
+                                        html.append("<p class=\"function\">").append(escapeHtml(node.function)).append("</p>");
+                                        html.append("<p class=\"disease\">").append(escapeHtml(node.diseaseAssociation))
                                                         .append("</p>");
                                         html.append("</div>");
 
@@ -321,17 +760,17 @@ public class GenomeSearchServer {
                                                         .append(node.start).append(", ").append(node.end)
                                                         .append("]</span></div>");
                                         html.append("<div class=\"detail-row\"><span class=\"detail-label\">Chromosome:</span><span class=\"detail-value\">")
-                                                        .append(node.chromosome).append("</span></div>");
+                                                        .append(escapeHtml(node.chromosome)).append("</span></div>");
                                         html.append("<div class=\"detail-row\"><span class=\"detail-label\">Gene Type:</span><span class=\"detail-value\">")
-                                                        .append(node.type).append("</span></div>");
+                                                        .append(escapeHtml(node.type)).append("</span></div>");
                                         html.append("<div class=\"detail-row\"><span class=\"detail-label\">Function:</span><span class=\"detail-value\">")
-                                                        .append(node.function).append("</span></div>");
+                                                        .append(escapeHtml(node.function)).append("</span></div>");
                                         html.append("<div class=\"detail-row\"><span class=\"detail-label\">Disease Association:</span><span class=\"detail-value\">")
-                                                        .append(node.diseaseAssociation).append("</span></div>");
+                                                        .append(escapeHtml(node.diseaseAssociation)).append("</span></div>");
 
                                         if (node.applications != null && !node.applications.isEmpty()) {
                                                 html.append("<div class=\"detail-row\"><span class=\"detail-label\">Applications:</span><span class=\"detail-value\">")
-                                                                .append(node.applications).append("</span></div>");
+                                                                .append(escapeHtml(node.applications)).append("</span></div>");
                                         }
 
                                         html.append("<div class=\"detail-row\"><span class=\"detail-label\">Overlap Length:</span><span class=\"detail-value\">")
@@ -349,6 +788,19 @@ public class GenomeSearchServer {
                         // Back button
                         html.append("<div style=\"text-align: center; margin-top: 2rem;\">");
                         html.append("<a href=\"index.html\" style=\"display: inline-block; padding: 0.75rem 2rem; background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); color: white; text-decoration: none; border-radius: 8px; font-weight: 600; transition: all 0.3s;\">← New Search</a>");
+                        if (next != null) {
+                                html.append(" <a href=\"search?queryStart=").append(queryStart)
+                                                .append("&amp;queryEnd=").append(queryEnd);
+                                for (String filter : new String[] { "chromosome", "type", "disease" }) {
+                                        String value = params.get(filter);
+                                        if (value != null && !value.isEmpty()) {
+                                                html.append("&amp;").append(filter).append("=")
+                                                                .append(java.net.URLEncoder.encode(value, StandardCharsets.UTF_8));
+                                        }
+                                }
+                                html.append("&amp;limit=").append(limit).append("&amp;cursor=").append(next.encode())
+                                                .append("\" style=\"display: inline-block; padding: 0.75rem 2rem; background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); color: white; text-decoration: none; border-radius: 8px; font-weight: 600; transition: all 0.3s;\">Next Page →</a>");
+                        }
                         html.append("</div>");
 
                         html.append("</div>"); // Close dashboard-container
@@ -390,88 +842,700 @@ public class GenomeSearchServer {
         }
 
         /**
-         * Handler for /addGene endpoint - Adds new gene to interval tree
+         * Handler for GET /api/search
+         *
+         * Accepts: queryStart, queryEnd, optional chromosome, type and disease
+         * filters (as for /search) and format=ndjson (or Accept:
+         * application/x-ndjson); limit and cursor select paged mode
+         * Returns: {"chromosome","queryStart","queryEnd","genes":[...],"count"}, or
+         * one gene object per line for NDJSON. Paged responses add "next" (and an
+         * X-Next-Cursor header), null on the last page.
+         *
+         * Genes are serialized while the index is walked and sent with chunked
+         * transfer encoding, so memory stays constant however many genes match
+         * and the first bytes go out before the search has finished. A copy of
+         * bodies up to the cache's entry limit is kept, so repeated queries are
+         * answered from ResponseCache until the index changes.
          */
-        static class AddGeneHandler implements HttpHandler {
+        static class ApiSearchHandler implements HttpHandler {
                 @Override
                 public void handle(HttpExchange exchange) throws IOException {
-                        if ("POST".equals(exchange.getRequestMethod())) {
-                                // Read POST data
-                                InputStream is = exchange.getRequestBody();
-                                String postData = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-
-                                // Parse form data
-                                Map<String, String> params = new HashMap<>();
-                                String[] pairs = postData.split("&");
-                                for (String pair : pairs) {
-                                        String[] keyValue = pair.split("=");
-                                        if (keyValue.length == 2) {
-                                                params.put(
-                                                                java.net.URLDecoder.decode(keyValue[0],
-                                                                                StandardCharsets.UTF_8),
-                                                                java.net.URLDecoder.decode(keyValue[1],
-                                                                                StandardCharsets.UTF_8));
-                                        }
-                                }
+                        Map<String, String> params = queryParameters(exchange);
+                        int queryStart = intParameter(params, "queryStart", -1);
+                        int queryEnd = intParameter(params, "queryEnd", -1);
+                        String chromosome = params.get("chromosome");
+                        GeneFilter filter = geneFilter(params);
+                        String accept = exchange.getRequestHeaders().getFirst("Accept");
+                        boolean ndjson = "ndjson".equals(params.get("format"))
+                                        || (accept != null && accept.contains("application/x-ndjson"));
 
+                        if (queryStart < 0 || queryEnd < 0 || queryStart > queryEnd) {
+                                sendJsonError(exchange, 400, "queryStart and queryEnd must satisfy 0 <= queryStart <= queryEnd");
+                                return;
+                        }
+
+                        GenomeIndex index = genomeIndex.snapshot();
+                        String cacheKey = cacheKey(ndjson ? "ndjson" : "json", params);
+                        ResponseCache.Response cached = responseCache.get(cacheKey, index.version());
+                        if (cached != null) {
+                                sendCached(exchange, cached);
+                                return;
+                        }
+
+                        SearchPage page = null;
+                        if (params.containsKey("limit") || params.containsKey("cursor")) {
+                                int limit = intParameter(params, "limit", DEFAULT_PAGE_SIZE);
+                                if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                                        sendJsonError(exchange, 400, "limit must be between 1 and " + MAX_PAGE_SIZE);
+                                        return;
+                                }
                                 try {
-                                        // Extract and validate parameters
-                                        String geneName = params.get("geneName");
-                                        int startPos = Integer.parseInt(params.get("startPos"));
-                                        int endPos = Integer.parseInt(params.get("endPos"));
-                                        String chromosome = params.get("chromosome");
-                                        String geneType = params.get("geneType");
-                                        String function = params.get("function");
-                                        String disease = params.get("disease");
-                                        String applications = params.getOrDefault("applications", "");
-
-                                        // Validate
-                                        if (startPos >= endPos) {
-                                                sendJsonResponse(exchange, false,
-                                                                "Start position must be less than end position", null);
-                                                return;
+                                        SearchPage.Cursor cursor = params.containsKey("cursor")
+                                                        ? SearchPage.Cursor.parse(params.get("cursor"))
+                                                        : null;
+                                        page = index.searchPage(filter, queryStart, queryEnd, cursor, limit);
+                                } catch (IllegalArgumentException e) {
+                                        sendJsonError(exchange, 400, e.getMessage());
+                                        return;
+                                }
+                                if (page.getNext() != null) {
+                                        exchange.getResponseHeaders().set("X-Next-Cursor", page.getNext().encode());
+                                }
+                        }
+
+                        String contentType = ndjson ? "application/x-ndjson" : "application/json";
+                        exchange.getResponseHeaders().set("Content-Type", contentType);
+                        exchange.sendResponseHeaders(200, 0);
+                        // Keep a copy of the streamed body for the cache unless it grows too large
+                        ResponseCache.Capture capture = new ResponseCache.Capture(exchange.getResponseBody(),
+                                        responseCache.maxEntryBytes());
+                        JsonWriter json = new JsonWriter(capture);
+                        int[] count = new int[1];
+                        try {
+                                if (!ndjson) {
+                                        json.beginObject()
+                                                        .name("chromosome").value(chromosome)
+                                                        .name("queryStart").value(queryStart)
+                                                        .name("queryEnd").value(queryEnd)
+                                                        .name("genes").beginArray();
+                                }
+                                java.util.function.Consumer<IntervalNode> write = gene -> {
+                                        try {
+                                                writeGene(json, gene);
+                                                if (ndjson) {
+                                                        json.newline();
+                                                }
+                                        } catch (IOException e) {
+                                                throw new UncheckedIOException(e);
                                         }
+                                        count[0]++;
+                                };
+                                if (page != null) {
+                                        page.getGenes().forEach(write);
+                                } else {
+                                        index.overlapSearch(filter, queryStart, queryEnd, write);
+                                }
+                                if (!ndjson) {
+                                        json.endArray().name("count").value(count[0]);
+                                        if (page != null) {
+                                                json.name("next").value(page.getNext() == null ? null : page.getNext().encode());
+                                        }
+                                        json.endObject();
+                                }
+                        } catch (UncheckedIOException e) {
+                                // The client went away mid-stream
+                                throw e.getCause();
+                        }
+                        json.close();
+
+                        byte[] body = capture.toByteArray();
+                        if (body != null) {
+                                String next = page == null || page.getNext() == null ? null : page.getNext().encode();
+                                responseCache.put(cacheKey, index.version(),
+                                                new ResponseCache.Response(contentType, next, body));
+                        }
+                }
+        }
 
-                                        // Add to interval tree
-                                        intervalTree.insert(startPos, endPos, geneName, chromosome, geneType, function,
-                                                        disease, applications);
+        /**
+         * Handler for GET /search/count
+         *
+         * Accepts: queryStart, queryEnd, optional chromosome
+         * Returns: {"chromosome","queryStart","queryEnd","count"}
+         *
+         * Answered from subtree aggregates without materializing any gene.
+         */
+        static class CountHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        Map<String, String> params = queryParameters(exchange);
+                        int queryStart = intParameter(params, "queryStart", -1);
+                        int queryEnd = intParameter(params, "queryEnd", -1);
+                        String chromosome = params.get("chromosome");
+                        if (queryStart < 0 || queryEnd < 0 || queryStart > queryEnd) {
+                                sendJsonError(exchange, 400, "queryStart and queryEnd must satisfy 0 <= queryStart <= queryEnd");
+                                return;
+                        }
 
-                                        // Create response JSON with gene data
-                                        String geneJson = String.format(
-                                                        "{\"name\":\"%s\",\"start\":%d,\"end\":%d,\"chromosome\":\"%s\",\"type\":\"%s\",\"function\":\"%s\",\"disease\":\"%s\",\"applications\":\"%s\"}",
-                                                        geneName, startPos, endPos, chromosome, geneType, function,
-                                                        disease, applications);
+                        long count = genomeIndex.countOverlaps(chromosome, queryStart, queryEnd);
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        JsonWriter json = new JsonWriter(body);
+                        json.beginObject()
+                                        .name("chromosome").value(chromosome)
+                                        .name("queryStart").value(queryStart)
+                                        .name("queryEnd").value(queryEnd)
+                                        .name("count").value(count)
+                                        .endObject();
+                        json.close();
+                        sendJson(exchange, body);
+                }
+        }
 
-                                        sendJsonResponse(exchange, true, "Gene added successfully!", geneJson);
+        /**
+         * Handler for GET /search/summary
+         *
+         * Accepts: queryStart, queryEnd, optional chromosome
+         * Returns: {"chromosome","queryStart","queryEnd","count","overlapBases",
+         * "types":{type:{"count","overlapBases"}}}, where overlapBases sums the
+         * overlap length of every gene with the window. Genes without a type
+         * are counted under "".
+         */
+        static class SummaryHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        Map<String, String> params = queryParameters(exchange);
+                        int queryStart = intParameter(params, "queryStart", -1);
+                        int queryEnd = intParameter(params, "queryEnd", -1);
+                        String chromosome = params.get("chromosome");
+                        if (queryStart < 0 || queryEnd < 0 || queryStart > queryEnd) {
+                                sendJsonError(exchange, 400, "queryStart and queryEnd must satisfy 0 <= queryStart <= queryEnd");
+                                return;
+                        }
 
-                                        System.out.println("Added new gene: " + geneName + " [" + startPos + ", "
-                                                        + endPos + "]");
+                        OverlapSummary summary = genomeIndex.summarize(chromosome, queryStart, queryEnd);
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        JsonWriter json = new JsonWriter(body);
+                        json.beginObject()
+                                        .name("chromosome").value(chromosome)
+                                        .name("queryStart").value(queryStart)
+                                        .name("queryEnd").value(queryEnd)
+                                        .name("count").value(summary.getCount())
+                                        .name("overlapBases").value(summary.getBases())
+                                        .name("types").beginObject();
+                        for (Map.Entry<String, OverlapSummary.Totals> entry : summary.getTypes().entrySet()) {
+                                json.name(entry.getKey()).beginObject()
+                                                .name("count").value(entry.getValue().getCount())
+                                                .name("overlapBases").value(entry.getValue().getBases())
+                                                .endObject();
+                        }
+                        json.endObject().endObject();
+                        json.close();
+                        sendJson(exchange, body);
+                }
+        }
 
-                                } catch (NumberFormatException e) {
-                                        sendJsonResponse(exchange, false, "Invalid number format for positions", null);
-                                } catch (Exception e) {
-                                        sendJsonResponse(exchange, false, "Error adding gene: " + e.getMessage(), null);
+        /**
+         * Handler for GET /nearest
+         *
+         * Accepts: position, optional chromosome, k (default 1, max MAX_NEAREST)
+         * and direction (any, upstream or downstream; default any)
+         * Returns: {"chromosome","position","direction","genes":[...]}, nearest
+         * first; each gene carries a signed "distance" (0 overlapping, negative
+         * upstream, positive downstream)
+         */
+        static class NearestHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        Map<String, String> params = queryParameters(exchange);
+                        int position = intParameter(params, "position", -1);
+                        int k = intParameter(params, "k", 1);
+                        String chromosome = params.get("chromosome");
+                        if (position < 0) {
+                                sendJsonError(exchange, 400, "position must be a non-negative integer");
+                                return;
+                        }
+                        if (k < 1 || k > MAX_NEAREST) {
+                                sendJsonError(exchange, 400, "k must be between 1 and " + MAX_NEAREST);
+                                return;
+                        }
+                        NearestSearch.Direction direction;
+                        try {
+                                direction = NearestSearch.Direction.parse(params.getOrDefault("direction", "any"));
+                        } catch (IllegalArgumentException e) {
+                                sendJsonError(exchange, 400, "direction must be any, upstream or downstream");
+                                return;
+                        }
+
+                        List<NearestSearch.Neighbor> neighbors = genomeIndex.nearest(chromosome, position, k, direction);
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        JsonWriter json = new JsonWriter(body);
+                        json.beginObject()
+                                        .name("chromosome").value(chromosome)
+                                        .name("position").value(position)
+                                        .name("direction").value(direction.name().toLowerCase(java.util.Locale.ROOT))
+                                        .name("genes").beginArray();
+                        for (NearestSearch.Neighbor neighbor : neighbors) {
+                                IntervalNode node = neighbor.getGene();
+                                json.beginObject()
+                                                .name("id").value(node.id)
+                                                .name("name").value(node.geneName)
+                                                .name("start").value(node.start)
+                                                .name("end").value(node.end)
+                                                .name("chromosome").value(node.chromosome)
+                                                .name("type").value(node.type)
+                                                .name("distance").value(neighbor.getDistance())
+                                                .endObject();
+                        }
+                        json.endArray().endObject();
+                        json.close();
+                        sendJson(exchange, body);
+                }
+        }
+
+        /**
+         * Handler for POST /search/batch
+         * 
+         * Accepts: one query per line, "chromosome start end [name]" separated by tabs,
+         * spaces or commas (lines starting with # are ignored)
+         * Returns: NDJSON, one result object per query in request order
+         * 
+         * The queries are sorted and answered with one sweep per chromosome over
+         * the sorted index instead of one tree descent each.
+         */
+        static class BatchSearchHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        if (!"POST".equals(exchange.getRequestMethod())) {
+                                exchange.sendResponseHeaders(405, -1); // Method not allowed
+                                return;
+                        }
+
+                        Regions regions = Regions.read(exchange);
+                        if (regions == null) {
+                                return;
+                        }
+
+                        List<List<IntervalNode>> results = BatchSearch.search(genomeIndex,
+                                        regions.chromosomes.toArray(new String[0]), regions.starts, regions.ends);
+
+                        // Stream one line per query; length 0 selects chunked transfer encoding
+                        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+                        exchange.sendResponseHeaders(200, 0);
+                        JsonWriter json = new JsonWriter(exchange.getResponseBody());
+                        for (int i = 0; i < regions.count; i++) {
+                                List<IntervalNode> genes = results.get(i);
+                                json.beginObject()
+                                                .name("chromosome").value(regions.chromosomes.get(i))
+                                                .name("start").value(regions.starts[i])
+                                                .name("end").value(regions.ends[i])
+                                                .name("count").value(genes.size())
+                                                .name("genes").beginArray();
+                                for (IntervalNode gene : genes) {
+                                        writeGene(json, gene);
                                 }
-                        } else {
+                                json.endArray().endObject().newline();
+                        }
+                        json.close();
+                }
+        }
+
+        /**
+         * Handler for /join endpoint - Intersects posted regions with all genes
+         *
+         * Body: one "chromosome start end [name]" line per region. Response: one
+         * tab-separated line per overlapping (region, gene) pair, like bedtools
+         * intersect -wo: region fields, gene fields, then the overlap in bp.
+         * Lines are streamed while the sweep runs.
+         */
+        static class JoinHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        if (!"POST".equals(exchange.getRequestMethod())) {
                                 exchange.sendResponseHeaders(405, -1); // Method not allowed
+                                return;
+                        }
+
+                        Regions regions = Regions.read(exchange);
+                        if (regions == null) {
+                                return;
+                        }
+
+                        exchange.getResponseHeaders().set("Content-Type", "text/tab-separated-values; charset=utf-8");
+                        exchange.sendResponseHeaders(200, 0);
+                        Writer out = new BufferedWriter(
+                                        new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8), 16 * 1024);
+                        genomeIndex.join(regions.chromosomes.toArray(new String[0]), regions.starts, regions.ends,
+                                        (region, gene, overlap) -> {
+                                                out.write(regions.chromosomes.get(region));
+                                                out.write('\t');
+                                                out.write(Integer.toString(regions.starts[region]));
+                                                out.write('\t');
+                                                out.write(Integer.toString(regions.ends[region]));
+                                                out.write('\t');
+                                                out.write(regions.names.get(region));
+                                                out.write('\t');
+                                                out.write(String.valueOf(gene.chromosome));
+                                                out.write('\t');
+                                                out.write(Integer.toString(gene.start));
+                                                out.write('\t');
+                                                out.write(Integer.toString(gene.end));
+                                                out.write('\t');
+                                                // A TSV cell has no null; a missing value is empty
+                                                out.write(gene.geneName == null ? "" : gene.geneName);
+                                                out.write('\t');
+                                                out.write(gene.type == null ? "" : gene.type);
+                                                out.write('\t');
+                                                out.write(Integer.toString(overlap));
+                                                out.write('\n');
+                                        });
+                        out.close();
+                }
+        }
+
+        /**
+         * Handler for GET /gene/{name}
+         *
+         * Returns: {"name","genes":[...],"count"} with every gene of that name,
+         * ignoring case, ordered by chromosome and start; 404 if there is none.
+         *
+         * Answered from the index's NameIndex in O(log n + k).
+         */
+        static class GeneHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        String name = exchange.getRequestURI().getPath().substring("/gene/".length()).trim();
+                        if (name.isEmpty()) {
+                                sendJsonError(exchange, 400, "Gene name is required: /gene/{name}");
+                                return;
+                        }
+
+                        List<IntervalNode> genes = genomeIndex.findByName(name);
+                        if (genes.isEmpty()) {
+                                sendJsonError(exchange, 404, "No gene named " + name);
+                                return;
+                        }
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        JsonWriter json = new JsonWriter(body);
+                        json.beginObject().name("name").value(name).name("genes").beginArray();
+                        for (IntervalNode gene : genes) {
+                                writeGene(json, gene);
+                        }
+                        json.endArray().name("count").value(genes.size()).endObject();
+                        json.close();
+                        sendJson(exchange, body);
+                }
+        }
+
+        /**
+         * Handler for GET /suggest
+         *
+         * Accepts: q (name prefix, case-insensitive), optional limit (default
+         * DEFAULT_SUGGESTIONS)
+         * Returns: {"query","suggestions":["name",...]}, distinct gene names in
+         * alphabetical order
+         */
+        static class SuggestHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        Map<String, String> params = queryParameters(exchange);
+                        String query = params.get("q");
+                        int limit = intParameter(params, "limit", DEFAULT_SUGGESTIONS);
+                        if (query == null || query.isEmpty()) {
+                                sendJsonError(exchange, 400, "q (a gene name prefix) is required");
+                                return;
+                        }
+                        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+                                sendJsonError(exchange, 400, "limit must be between 1 and " + MAX_SUGGESTIONS);
+                                return;
                         }
+
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        JsonWriter json = new JsonWriter(body);
+                        json.beginObject().name("query").value(query).name("suggestions").beginArray();
+                        for (IntervalNode gene : genomeIndex.suggest(query, limit)) {
+                                json.value(gene.geneName);
+                        }
+                        json.endArray().endObject();
+                        json.close();
+                        sendJson(exchange, body);
                 }
+        }
 
-                private void sendJsonResponse(HttpExchange exchange, boolean success, String message, String geneData)
-                                throws IOException {
-                        String json;
-                        if (success && geneData != null) {
-                                json = String.format("{\"success\":true,\"message\":\"%s\",\"gene\":%s}", message,
-                                                geneData);
+        /**
+         * Handler for POST /addGene/bulk - streams TSV (default) or NDJSON gene
+         * rows into the index in large sorted batches.
+         *
+         * The format is taken from the format parameter (tsv or ndjson), else
+         * from a JSON Content-Type. Invalid rows are skipped; the response
+         * reports how many rows were inserted and rejected, with the line
+         * number and reason of the first rejections.
+         *
+         * A request is not atomic: each batch is published as it is merged.
+         * If the body cannot be read or a merge fails, the response is a 500
+         * with "success":false, and "inserted" counts the rows of the batches
+         * already published, which stay in the index.
+         */
+        static class BulkAddGeneHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        if (!"POST".equals(exchange.getRequestMethod())) {
+                                exchange.sendResponseHeaders(405, -1); // Method not allowed
+                                return;
+                        }
+
+                        String format = queryParameters(exchange).get("format");
+                        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                        BulkIngest.Format bodyFormat;
+                        if (format == null) {
+                                bodyFormat = contentType != null && contentType.contains("json") ? BulkIngest.Format.NDJSON
+                                                : BulkIngest.Format.TSV;
+                        } else if ("tsv".equalsIgnoreCase(format)) {
+                                bodyFormat = BulkIngest.Format.TSV;
+                        } else if ("ndjson".equalsIgnoreCase(format)) {
+                                bodyFormat = BulkIngest.Format.NDJSON;
                         } else {
-                                json = String.format("{\"success\":false,\"message\":\"%s\"}", message);
+                                sendJsonError(exchange, 400, "format must be tsv or ndjson");
+                                return;
+                        }
+
+                        BulkIngest ingest = new BulkIngest(genomeIndex, bodyFormat);
+                        long started = System.nanoTime();
+                        String failure = null;
+                        try (BufferedReader reader = new BufferedReader(
+                                        new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), 1 << 16)) {
+                                ingest.ingest(reader);
+                        } catch (IOException | RuntimeException e) {
+                                // Batches merged before the failure stay in the index and are counted as inserted
+                                failure = "Bulk insert failed after " + ingest.getInserted() + " genes: " + e.getMessage();
+                        }
+                        double millis = (System.nanoTime() - started) / 1e6;
+
+                        ByteArrayOutputStream body = new ByteArrayOutputStream();
+                        JsonWriter json = new JsonWriter(body);
+                        json.beginObject().name("success").value(failure == null);
+                        if (failure != null) {
+                                json.name("message").value(failure);
+                        }
+                        json.name("inserted").value(ingest.getInserted())
+                                        .name("rejected").value(ingest.getRejected())
+                                        .name("millis").value(Math.round(millis * 10) / 10.0)
+                                        .name("errors").beginArray();
+                        for (BulkIngest.RowError error : ingest.getErrors()) {
+                                json.beginObject().name("line").value(error.getLine()).name("message")
+                                                .value(error.getMessage()).endObject();
+                        }
+                        json.endArray().endObject();
+                        json.close();
+                        sendJson(exchange, failure == null ? 200 : 500, body);
+
+                        System.out.printf("Bulk added %d genes (%d rejected) in %.1f ms%n", ingest.getInserted(),
+                                        ingest.getRejected(), millis);
+                }
+        }
+
+        /**
+         * The gene a /removeGene or /updateGene request names: id plus the
+         * chromosome and start every search result carries, or the id alone
+         * (found by a full scan). Sends a 400 or 404 and returns null if the
+         * gene cannot be identified.
+         */
+        private static IntervalNode targetGene(HttpExchange exchange, Map<String, String> params) throws IOException {
+                String chromosome = params.get("chromosome");
+                String start = params.get("start");
+                try {
+                        int id = Integer.parseInt(params.getOrDefault("id", ""));
+                        if (chromosome == null || chromosome.isEmpty() || start == null) {
+                                IntervalNode gene = genomeIndex.find(id);
+                                if (gene == null) {
+                                        sendJsonError(exchange, 404, "No gene with id " + id);
+                                }
+                                return gene;
+                        }
+                        IntervalNode key = new IntervalNode(Integer.parseInt(start), Integer.parseInt(start), null);
+                        key.chromosome = chromosome;
+                        key.id = id;
+                        return key;
+                } catch (NumberFormatException e) {
+                        sendJsonError(exchange, 400, "id and start must be integers");
+                        return null;
+                }
+        }
+
+        /**
+         * Send {"success":true,"message":...,"gene":{...}}.
+         */
+        private static void sendGene(HttpExchange exchange, String message, IntervalNode gene) throws IOException {
+                ByteArrayOutputStream body = new ByteArrayOutputStream();
+                JsonWriter json = new JsonWriter(body);
+                json.beginObject().name("success").value(true).name("message").value(message).name("gene");
+                writeGene(json, gene);
+                json.endObject();
+                json.close();
+                sendJson(exchange, body);
+        }
+
+        /**
+         * Handler for POST /removeGene - deletes a gene by id.
+         *
+         * Parameters (query string or form body): id, plus chromosome and start
+         * for an O(log n) lookup. Returns the removed gene, or 404.
+         */
+        static class RemoveGeneHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        if (!"POST".equals(exchange.getRequestMethod())) {
+                                exchange.sendResponseHeaders(405, -1); // Method not allowed
+                                return;
+                        }
+
+                        IntervalNode target = targetGene(exchange, formParameters(exchange));
+                        if (target == null) {
+                                return;
                         }
+                        IntervalNode removed = genomeIndex.remove(target.chromosome, target.start, target.id);
+                        if (removed == null) {
+                                sendJsonError(exchange, 404, "No gene with id " + target.id + " at " + target.chromosome
+                                                + ":" + target.start);
+                                return;
+                        }
+                        sendGene(exchange, "Gene removed", removed);
+                        System.out.println("Removed gene: " + removed.geneName + " (id " + removed.id + ")");
+                }
+        }
 
-                        exchange.getResponseHeaders().set("Content-Type", "application/json");
-                        exchange.sendResponseHeaders(200, json.getBytes().length);
+        /**
+         * Handler for POST /updateGene - moves a gene to new coordinates.
+         *
+         * Parameters: the /removeGene ones plus newStart and newEnd. Metadata
+         * is kept; the gene comes back under a new id.
+         */
+        static class UpdateGeneHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        if (!"POST".equals(exchange.getRequestMethod())) {
+                                exchange.sendResponseHeaders(405, -1); // Method not allowed
+                                return;
+                        }
+
+                        Map<String, String> params = formParameters(exchange);
+                        int newStart;
+                        int newEnd;
+                        try {
+                                newStart = Integer.parseInt(params.getOrDefault("newStart", ""));
+                                newEnd = Integer.parseInt(params.getOrDefault("newEnd", ""));
+                        } catch (NumberFormatException e) {
+                                sendJsonError(exchange, 400, "newStart and newEnd must be integers");
+                                return;
+                        }
+                        if (newStart < 0 || newStart > newEnd) {
+                                sendJsonError(exchange, 400, "newStart and newEnd must satisfy 0 <= newStart <= newEnd");
+                                return;
+                        }
+
+                        IntervalNode target = targetGene(exchange, params);
+                        if (target == null) {
+                                return;
+                        }
+                        IntervalNode moved = genomeIndex.update(target.chromosome, target.start, target.id, newStart,
+                                        newEnd);
+                        if (moved == null) {
+                                sendJsonError(exchange, 404, "No gene with id " + target.id + " at " + target.chromosome
+                                                + ":" + target.start);
+                                return;
+                        }
+                        sendGene(exchange, "Gene updated", moved);
+                        System.out.println("Updated gene: " + moved.geneName + " (id " + target.id + " -> " + moved.id
+                                        + ") [" + newStart + ", " + newEnd + "]");
+                }
+        }
+
+        /**
+         * Handler for GET /metrics - request latency, search work and index
+         * shape in the Prometheus text format (see Metrics).
+         */
+        static class MetricsHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        if (!"GET".equals(exchange.getRequestMethod())) {
+                                exchange.sendResponseHeaders(405, -1); // Method not allowed
+                                return;
+                        }
+
+                        ByteArrayOutputStream body = new ByteArrayOutputStream(16 * 1024);
+                        Writer out = new OutputStreamWriter(body, StandardCharsets.UTF_8);
+                        Metrics.write(out, genomeIndex, admissionControl.getInFlight(), responseCache);
+                        out.close();
+                        exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                        exchange.sendResponseHeaders(200, body.size());
                         OutputStream os = exchange.getResponseBody();
-                        os.write(json.getBytes());
+                        body.writeTo(os);
                         os.close();
                 }
         }
+
+        /**
+         * Handler for /addGene endpoint - Adds new gene to interval tree
+         *
+         * Requires geneName, chromosome, startPos and endPos; geneType,
+         * function, disease and applications default to "".
+         * Returns {"success":true,"message":...,"gene":{...}} with the gene's
+         * new id, which /removeGene and /updateGene take.
+         */
+        static class AddGeneHandler implements HttpHandler {
+                @Override
+                public void handle(HttpExchange exchange) throws IOException {
+                        if (!"POST".equals(exchange.getRequestMethod())) {
+                                exchange.sendResponseHeaders(405, -1); // Method not allowed
+                                return;
+                        }
+
+                        Map<String, String> params = formParameters(exchange);
+                        int startPos;
+                        int endPos;
+                        try {
+                                startPos = Integer.parseInt(params.getOrDefault("startPos", ""));
+                                endPos = Integer.parseInt(params.getOrDefault("endPos", ""));
+                        } catch (NumberFormatException e) {
+                                sendJsonError(exchange, 400, "Invalid number format for positions");
+                                return;
+                        }
+                        String geneName = params.get("geneName");
+                        String chromosome = params.get("chromosome");
+
+                        // Validate
+                        if (geneName == null || geneName.isEmpty()) {
+                                sendJsonError(exchange, 400, "geneName is required");
+                                return;
+                        }
+                        if (chromosome == null || chromosome.isBlank()) {
+                                sendJsonError(exchange, 400, "chromosome is required");
+                                return;
+                        }
+                        if (startPos < 0) {
+                                sendJsonError(exchange, 400, "Start position must not be negative");
+                                return;
+                        }
+                        // Intervals are closed, so start == end is a single base, as /addGene/bulk accepts
+                        if (startPos > endPos) {
+                                sendJsonError(exchange, 400, "Start position must not exceed end position");
+                                return;
+                        }
+
+                        // Add to the chromosome's interval tree
+                        IntervalNode gene;
+                        try {
+                                // Metadata is optional; missing fields are stored as "" like a short bulk row
+                                gene = genomeIndex.insert(startPos, endPos, geneName, chromosome,
+                                                params.getOrDefault("geneType", ""), params.getOrDefault("function", ""),
+                                                params.getOrDefault("disease", ""), params.getOrDefault("applications", ""));
+                        } catch (RuntimeException e) {
+                                sendJsonError(exchange, 500, "Error adding gene: " + e.getMessage());
+                                return;
+                        }
+                        sendGene(exchange, "Gene added successfully!", gene);
+
+                        System.out.println("Added new gene: " + geneName + " [" + startPos + ", " + endPos + "] (id "
+                                        + gene.id + ")");
+                }
+        }
 }
@@ -0,0 +1,453 @@
+package genome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * ImplicitIntervalIndex is the shared read path of the frozen interval indexes.
+ *
+ * Rows are sorted by (start, id) and the sorted array doubles as an implicit
+ * in-order augmented binary tree: the row at index i sits on level k, where k
+ * is the number of trailing 1-bits of i, and its children are i - 2^(k-1) and
+ * i + 2^(k-1). maxEnd(i) holds the largest end in that implicit subtree, so
+ * queries prune exactly like IntervalTree but without chasing object
+ * references. Subclasses decide where the columns live (heap arrays or a
+ * memory-mapped file).
+ *
+ * Time Complexity: O(log n + k) for search
+ *
+ * @author DSA-EL Project
+ */
+public abstract class ImplicitIntervalIndex {
+
+    /** Below this level a subtree is scanned linearly instead of descended */
+    private static final int SCAN_LEVEL = 3;
+
+    /** Built on the first count or summary query */
+    private volatile OverlapCounter counter;
+
+    /** Optional point-query index, see buildStabIndex */
+    private volatile StabIndex stabIndex;
+
+    /** Per-row subtree type masks, built on the first type-filtered search */
+    private volatile long[] typeMasks;
+
+    public abstract int size();
+
+    public abstract int start(int row);
+
+    public abstract int end(int row);
+
+    /** Gene id of a row */
+    public abstract int id(int row);
+
+    /** Gene name of a row */
+    public abstract String geneName(int row);
+
+    /** SymbolTable code of a row's gene type */
+    public abstract int typeCode(int row);
+
+    /** Gene type of a row */
+    public String type(int row) {
+        return SymbolTable.SHARED.symbol(typeCode(row));
+    }
+
+    /** Code of a row's disease association in texts() */
+    public abstract int diseaseCode(int row);
+
+    /** Dictionary of the partition's free-text values, which diseaseCode indexes */
+    public abstract TextDictionary texts();
+
+    /** Largest end in the implicit subtree rooted at this row */
+    protected abstract int maxEnd(int row);
+
+    /**
+     * Whether a row has been removed since the partition was frozen (see
+     * MaskedIntervalIndex). Searches skip removed rows; code that walks row
+     * numbers directly must check.
+     */
+    public boolean isDeleted(int row) {
+        return false;
+    }
+
+    /**
+     * Number of removed rows, which size() still counts.
+     */
+    public int deletedCount() {
+        return 0;
+    }
+
+    /**
+     * Materialize a row as a detached IntervalNode for rendering.
+     */
+    public abstract IntervalNode node(int row);
+
+    /**
+     * Level of the implicit root, or -1 when the index is empty.
+     */
+    protected static int rootLevel(int size) {
+        return size == 0 ? -1 : 31 - Integer.numberOfLeadingZeros(size);
+    }
+
+    /**
+     * Fill maxEnd bottom-up, level by level, for rows sorted by start.
+     */
+    static void computeMaxEnd(int[] ends, int[] maxEnd) {
+        int n = ends.length;
+        if (n == 0) {
+            return;
+        }
+
+        // Level 0: leaves sit on even indices
+        int lastIndex = 0;
+        int last = 0;
+        for (int i = 0; i < n; i += 2) {
+            lastIndex = i;
+            last = maxEnd[i] = ends[i];
+        }
+
+        for (int k = 1; 1 << k <= n; k++) {
+            int half = 1 << (k - 1);
+            int step = half << 2;
+            for (int i = (half << 1) - 1; i < n; i += step) {
+                int leftMax = maxEnd[i - half];
+                // A right child past the end of the array is represented by the last real subtree
+                int rightMax = i + half < n ? maxEnd[i + half] : last;
+                maxEnd[i] = Math.max(ends[i], Math.max(leftMax, rightMax));
+            }
+            // Track the rightmost node of this level so incomplete subtrees stay correct
+            lastIndex = ((lastIndex >> k) & 1) != 0 ? lastIndex - half : lastIndex + half;
+            if (lastIndex < n && maxEnd[lastIndex] > last) {
+                last = maxEnd[lastIndex];
+            }
+        }
+    }
+
+    /**
+     * Report the row id of every interval overlapping [queryStart, queryEnd].
+     * Rows are reported in ascending start order.
+     */
+    public void overlapSearch(int queryStart, int queryEnd, IntConsumer visitor) {
+        overlapSearch(queryStart, queryEnd, 0, row -> {
+            visitor.accept(row);
+            return true;
+        });
+    }
+
+    /**
+     * Report overlapping rows from fromRow on, in ascending row order, until
+     * the visitor returns false. Subtrees that lie entirely before fromRow are
+     * skipped without being walked, so resuming a paged search costs
+     * O(log n) rather than the rows already returned.
+     *
+     * @return false if the visitor stopped the search
+     */
+    public boolean overlapSearch(int queryStart, int queryEnd, int fromRow, IntPredicate visitor) {
+        return overlapSearch(queryStart, queryEnd, fromRow, GeneFilter.ALL, visitor);
+    }
+
+    /**
+     * overlapSearch restricted to the rows passing the filter's type and
+     * disease criteria. When types are filtered, implicit subtrees whose type
+     * mask shares no bit with the filter's are skipped without being walked.
+     *
+     * @return false if the visitor stopped the search
+     */
+    public boolean overlapSearch(int queryStart, int queryEnd, int fromRow, GeneFilter filter,
+            IntPredicate visitor) {
+        return overlapSearch(queryStart, queryEnd, fromRow, filter, visitor, null);
+    }
+
+    /**
+     * The filtered overlapSearch, adding the rows it examines to stats unless
+     * stats is null.
+     *
+     * @return false if the visitor stopped the search
+     */
+    public boolean overlapSearch(int queryStart, int queryEnd, int fromRow, GeneFilter filter,
+            IntPredicate visitor, SearchStats stats) {
+        int n = size();
+        int maxLevel = rootLevel(n);
+        if (maxLevel < 0) {
+            return true;
+        }
+        long typeMask = filter.typeMask();
+        long[] masks = typeMask == -1L ? null : typeMasks();
+        boolean allGenes = filter.acceptsAllGenes();
+        // Rows examined, for stats
+        int visited = 0;
+
+        // Explicit stack of (index, level, leftDone) frames; depth is bounded by the level count
+        int[] stackIndex = new int[(maxLevel + 1) * 2];
+        int[] stackLevel = new int[stackIndex.length];
+        boolean[] stackLeftDone = new boolean[stackIndex.length];
+        int top = 0;
+        stackIndex[top] = (1 << maxLevel) - 1;
+        stackLevel[top] = maxLevel;
+        stackLeftDone[top++] = false;
+
+        boolean completed = true;
+        walk: while (top > 0) {
+            top--;
+            int x = stackIndex[top];
+            int k = stackLevel[top];
+
+            if (masks != null && x < n && (masks[x] & typeMask) == 0) {
+                // No accepted type anywhere below x
+                continue;
+            }
+            if (k <= SCAN_LEVEL) {
+                // Small subtree: a linear scan over contiguous memory beats descending
+                int from = Math.max(x >> k << k, fromRow);
+                int to = Math.min((x >> k << k) + (1 << (k + 1)) - 1, n);
+                for (int i = from; i < to && start(i) <= queryEnd; i++) {
+                    visited++;
+                    if (end(i) >= queryStart && (allGenes || filter.matches(this, i))) {
+                        if (!visitor.test(i)) {
+                            completed = false;
+                            break walk;
+                        }
+                    }
+                }
+            } else if (!stackLeftDone[top]) {
+                int left = x - (1 << (k - 1));
+                stackLeftDone[top++] = true;
+                // The left subtree covers rows up to x - 1
+                if (x > fromRow && (left >= n || maxEnd(left) >= queryStart)) {
+                    stackIndex[top] = left;
+                    stackLevel[top] = k - 1;
+                    stackLeftDone[top++] = false;
+                }
+            } else if (x < n && start(x) <= queryEnd) {
+                visited++;
+                if (x >= fromRow && end(x) >= queryStart && (allGenes || filter.matches(this, x))) {
+                    if (!visitor.test(x)) {
+                        completed = false;
+                        break;
+                    }
+                }
+                stackIndex[top] = x + (1 << (k - 1));
+                stackLevel[top] = k - 1;
+                stackLeftDone[top++] = false;
+            }
+        }
+        if (stats != null) {
+            stats.visited += visited;
+        }
+        return completed;
+    }
+
+    private long[] typeMasks() {
+        long[] masks = typeMasks;
+        if (masks == null) {
+            masks = new long[size()];
+            int maxLevel = rootLevel(size());
+            if (maxLevel >= 0) {
+                fillTypeMasks(masks, (1 << maxLevel) - 1, maxLevel);
+            }
+            typeMasks = masks;
+        }
+        return masks;
+    }
+
+    /** Fill the masks of the implicit subtree at x, level k, and return its mask */
+    private long fillTypeMasks(long[] masks, int x, int k) {
+        int n = masks.length;
+        if (k == 0) {
+            return x < n ? (masks[x] = GeneFilter.typeBit(typeCode(x))) : 0;
+        }
+        long mask = fillTypeMasks(masks, x - (1 << (k - 1)), k - 1);
+        if (x < n) {
+            // A virtual node past the end has only a left subtree of real rows
+            mask |= GeneFilter.typeBit(typeCode(x)) | fillTypeMasks(masks, x + (1 << (k - 1)), k - 1);
+            masks[x] = mask;
+        }
+        return mask;
+    }
+
+    /**
+     * Report the rows covering position, in ascending start order. Served from
+     * the StabIndex when one has been built, otherwise by overlapSearch.
+     */
+    public void stab(int position, IntConsumer visitor) {
+        StabIndex index = stabIndex;
+        if (index != null) {
+            index.stab(position, visitor);
+        } else {
+            overlapSearch(position, position, visitor);
+        }
+    }
+
+    /**
+     * Precompute the StabIndex for point queries unless it would hold more
+     * than maxEntriesPerRow hit entries per row on average.
+     *
+     * @return true if the index was built
+     */
+    public boolean buildStabIndex(int maxEntriesPerRow) {
+        StabIndex index = StabIndex.build(this, (long) maxEntriesPerRow * size());
+        stabIndex = index;
+        return index != null;
+    }
+
+    /**
+     * First row whose start is greater than position (size() if none), found
+     * by binary search over the sorted starts.
+     */
+    public int upperBound(int position) {
+        int lo = 0;
+        int hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (start(mid) <= position) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * First row ordered after (start, id), for resuming a paged search.
+     */
+    public int upperBound(int start, int id) {
+        int lo = 0;
+        int hi = size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int s = start(mid);
+            if (s < start || (s == start && id(mid) <= id)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * Row of the gene with this start and id, or -1 if there is none.
+     */
+    public int rowOf(int start, int id) {
+        int row = upperBound(start, id) - 1;
+        return row >= 0 && start(row) == start && id(row) == id ? row : -1;
+    }
+
+    /**
+     * The k rows ending closest before position (end < position), nearest
+     * first. Best-first search over the implicit tree, queuing subtrees by
+     * position - maxEnd like IntervalTree.nearestUpstream.
+     */
+    public List<IntervalNode> nearestUpstream(int position, int k) {
+        List<IntervalNode> result = new ArrayList<>(Math.min(k, 64));
+        int n = size();
+        int maxLevel = rootLevel(n);
+        if (maxLevel < 0 || k <= 0) {
+            return result;
+        }
+
+        // Entries are (distance, row, level); level -1 marks a row at its exact distance
+        PriorityQueue<int[]> queue = new PriorityQueue<>((a, b) -> a[0] != b[0]
+                ? Integer.compare(a[0], b[0])
+                : Integer.compare(a[2], b[2]));
+        queue.add(new int[] { 1, (1 << maxLevel) - 1, maxLevel });
+        while (!queue.isEmpty() && result.size() < k) {
+            int[] entry = queue.poll();
+            int x = entry[1];
+            int level = entry[2];
+            if (level < 0) {
+                result.add(node(x));
+                continue;
+            }
+            if (x < n && end(x) < position) {
+                queue.add(new int[] { position - end(x), x, -1 });
+            }
+            if (level > 0) {
+                int half = 1 << (level - 1);
+                offerUpstream(queue, x - half, level - 1, position);
+                // Rows right of x start at or after start(x); past the end there are none
+                if (x < n && start(x) < position) {
+                    offerUpstream(queue, x + half, level - 1, position);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void offerUpstream(PriorityQueue<int[]> queue, int x, int level, int position) {
+        if (x >= size()) {
+            // Virtual node past the end: only its left part holds rows, with no maxEnd to bound it
+            if (level > 0) {
+                offerUpstream(queue, x - (1 << (level - 1)), level - 1, position);
+            }
+            return;
+        }
+        int subtreeMax = maxEnd(x);
+        queue.add(new int[] { subtreeMax >= position ? 1 : position - subtreeMax, x, level });
+    }
+
+    /**
+     * The k rows starting closest after position (start > position), in
+     * ascending start order.
+     */
+    public List<IntervalNode> nearestDownstream(int position, int k) {
+        int from = upperBound(position);
+        int to = (int) Math.min((long) from + Math.max(k, 0), size());
+        List<IntervalNode> result = new ArrayList<>(to - from);
+        for (int row = from; row < to; row++) {
+            result.add(node(row));
+        }
+        return result;
+    }
+
+    /**
+     * Number of rows overlapping [queryStart, queryEnd], in O(t log n) for t
+     * gene types. The first call builds the OverlapCounter.
+     */
+    public long countOverlaps(int queryStart, int queryEnd) {
+        return counter().count(queryStart, queryEnd);
+    }
+
+    /**
+     * Add per-type counts and overlap bases for [queryStart, queryEnd] to the
+     * summary without visiting the overlapping rows.
+     */
+    public void summarize(int queryStart, int queryEnd, OverlapSummary summary) {
+        counter().summarize(queryStart, queryEnd, summary);
+    }
+
+    private OverlapCounter counter() {
+        OverlapCounter built = counter;
+        if (built == null) {
+            // Concurrent first calls may both build; either result is valid
+            built = OverlapCounter.build(this);
+            counter = built;
+        }
+        return built;
+    }
+
+    /**
+     * Drop-in replacement for IntervalTree.overlapSearch: materializes the hits.
+     */
+    public List<IntervalNode> overlapSearch(int queryStart, int queryEnd) {
+        List<IntervalNode> result = new ArrayList<>();
+        overlapSearch(queryStart, queryEnd, row -> result.add(node(row)));
+        return result;
+    }
+
+    /**
+     * Every row, materialized in ascending start order.
+     */
+    public List<IntervalNode> rows() {
+        int n = size();
+        List<IntervalNode> result = new ArrayList<>(n);
+        for (int row = 0; row < n; row++) {
+            result.add(node(row));
+        }
+        return result;
+    }
+}
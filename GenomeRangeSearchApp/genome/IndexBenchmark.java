@@ -0,0 +1,94 @@
+package genome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * IndexBenchmark compares the read path of the interval index engines on a
+ * synthetic chromosome: window queries on IntervalTree and FlatIntervalIndex,
+ * then point queries on both plus the StabIndex.
+ *
+ * Usage: java genome.IndexBenchmark [genes] [queries]
+ *
+ * @author DSA-EL Project
+ */
+public class IndexBenchmark {
+
+    public static void main(String[] args) {
+        int geneCount = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        int chromosomeLength = 250_000_000;
+
+        Random random = new Random(42);
+        List<IntervalNode> genes = new ArrayList<>(geneCount);
+        for (int i = 0; i < geneCount; i++) {
+            int start = random.nextInt(chromosomeLength);
+            int length = 100 + random.nextInt(50_000);
+            genes.add(new IntervalNode(start, start + length, "GENE" + i, "Chr1", "Protein Coding", "", "", ""));
+        }
+
+        int[] queryStarts = new int[queryCount];
+        int[] queryEnds = new int[queryCount];
+        for (int i = 0; i < queryCount; i++) {
+            queryStarts[i] = random.nextInt(chromosomeLength);
+            queryEnds[i] = queryStarts[i] + random.nextInt(10_000);
+        }
+
+        IntervalTree tree = IntervalTree.bulkLoad(genes);
+        FlatIntervalIndex flat = FlatIntervalIndex.of(tree);
+
+        System.out.println("Genes: " + geneCount + ", queries: " + queryCount);
+        for (int round = 0; round < 3; round++) {
+            long treeHits = 0;
+            long begin = System.nanoTime();
+            for (int i = 0; i < queryCount; i++) {
+                treeHits += tree.overlapSearch(queryStarts[i], queryEnds[i]).size();
+            }
+            long treeNanos = System.nanoTime() - begin;
+
+            long[] flatHits = new long[1];
+            begin = System.nanoTime();
+            for (int i = 0; i < queryCount; i++) {
+                flat.overlapSearch(queryStarts[i], queryEnds[i], row -> flatHits[0]++);
+            }
+            long flatNanos = System.nanoTime() - begin;
+
+            System.out.printf("Round %d: IntervalTree %.1f ns/query (%d hits), FlatIntervalIndex %.1f ns/query (%d hits)%n",
+                    round + 1, (double) treeNanos / queryCount, treeHits,
+                    (double) flatNanos / queryCount, flatHits[0]);
+        }
+
+        long begin = System.nanoTime();
+        StabIndex stab = StabIndex.build(flat, Long.MAX_VALUE);
+        System.out.printf("StabIndex: %d hit entries (%.1f per gene), built in %d ms%n", stab.entries(),
+                (double) stab.entries() / geneCount, (System.nanoTime() - begin) / 1_000_000);
+        for (int round = 0; round < 3; round++) {
+            long treeHits = 0;
+            begin = System.nanoTime();
+            for (int i = 0; i < queryCount; i++) {
+                treeHits += tree.overlapSearch(queryStarts[i], queryStarts[i]).size();
+            }
+            long treeNanos = System.nanoTime() - begin;
+
+            long[] flatHits = new long[1];
+            begin = System.nanoTime();
+            for (int i = 0; i < queryCount; i++) {
+                flat.overlapSearch(queryStarts[i], queryStarts[i], row -> flatHits[0]++);
+            }
+            long flatNanos = System.nanoTime() - begin;
+
+            long stabHits = 0;
+            begin = System.nanoTime();
+            for (int i = 0; i < queryCount; i++) {
+                stabHits += stab.stab(queryStarts[i]).length;
+            }
+            long stabNanos = System.nanoTime() - begin;
+
+            System.out.printf("Point round %d: IntervalTree %.1f ns/query (%d hits), FlatIntervalIndex %.1f ns/query (%d hits), StabIndex %.1f ns/query (%d hits)%n",
+                    round + 1, (double) treeNanos / queryCount, treeHits,
+                    (double) flatNanos / queryCount, flatHits[0],
+                    (double) stabNanos / queryCount, stabHits);
+        }
+    }
+}
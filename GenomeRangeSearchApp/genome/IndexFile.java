@@ -0,0 +1,237 @@
+package genome;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IndexFile reads and writes the compact binary on-disk index.
+ *
+ * Layout (big-endian, every section 4-byte aligned):
+ * - Header: magic, version, chromosome count, next gene id, string pool offset (long)
+ * - Directory: per chromosome its name id, row count and block offset (long)
+ * - Blocks: per chromosome, COLUMNS int columns of row count entries each:
+ *   start, end, maxEnd, gene name id, type id, function id, disease id,
+ *   applications id, gene id. Rows are sorted by (start, gene id), so the block is directly
+ *   searchable as an implicit interval tree.
+ * - String pool: string count, symbol count, filter symbol count, offsets
+ *   (count + 1 ints), UTF-8 bytes. The first filter symbol count strings are
+ *   the chromosome and type values, then come the function, disease and
+ *   applications values up to symbol count, followed by the gene names.
+ *   Readers translate the filter symbols to SymbolTable codes and decode the
+ *   other symbols once up front.
+ *
+ * open() maps each block column and the string pool with FileChannel.map,
+ * so opening costs the same regardless of dataset size and concurrent server
+ * processes share the OS page cache.
+ *
+ * @author DSA-EL Project
+ */
+public class IndexFile {
+
+    private static final int MAGIC = 0x47525349; // "GRSI"
+    private static final int VERSION = 5;
+    private static final int HEADER_BYTES = 24;
+    private static final int DIRECTORY_ENTRY_BYTES = 16;
+
+    /** Int columns stored per chromosome block */
+    static final int COLUMNS = 9;
+
+    private IndexFile() {
+    }
+
+    /**
+     * Write every gene of the index to path. The file is written next to path,
+     * synced and moved into place, so readers never see a partial index, and
+     * the directory is synced before this returns, so the new file survives a
+     * crash once the caller deletes what it replaces.
+     */
+    public static void write(GenomeIndex index, Path path) throws IOException {
+        // Pin one version so concurrent inserts cannot tear the file
+        index = index.snapshot();
+        List<String> chromosomes = new ArrayList<>(index.chromosomes());
+        Map<String, Integer> stringIds = new LinkedHashMap<>();
+        Map<String, Integer> textIds = new LinkedHashMap<>();
+        Map<String, Integer> nameIds = new LinkedHashMap<>();
+        List<int[][]> blocks = new ArrayList<>();
+        for (String chromosome : chromosomes) {
+            intern(stringIds, chromosome);
+        }
+
+        for (String chromosome : chromosomes) {
+            List<IntervalNode> genes = index.genes(chromosome);
+            int n = genes.size();
+            int[][] columns = new int[COLUMNS][n];
+            for (int row = 0; row < n; row++) {
+                IntervalNode gene = genes.get(row);
+                columns[0][row] = gene.start;
+                columns[1][row] = gene.end;
+                columns[3][row] = intern(nameIds, gene.geneName);
+                columns[4][row] = intern(stringIds, gene.type);
+                columns[5][row] = intern(textIds, gene.function);
+                columns[6][row] = intern(textIds, gene.diseaseAssociation);
+                columns[7][row] = intern(textIds, gene.applications);
+                columns[8][row] = gene.id;
+            }
+            ImplicitIntervalIndex.computeMaxEnd(columns[1], columns[2]);
+            blocks.add(columns);
+        }
+        // Free-text symbols follow the filter symbols in the pool, and gene names follow both
+        int filterSymbolCount = stringIds.size();
+        int symbolCount = filterSymbolCount + textIds.size();
+        for (int[][] columns : blocks) {
+            for (int row = 0; row < columns[3].length; row++) {
+                columns[3][row] += symbolCount;
+                columns[5][row] += filterSymbolCount;
+                columns[6][row] += filterSymbolCount;
+                columns[7][row] += filterSymbolCount;
+            }
+        }
+
+        long offset = HEADER_BYTES + (long) DIRECTORY_ENTRY_BYTES * chromosomes.size();
+        long[] blockOffsets = new long[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            blockOffsets[i] = offset;
+            offset += (long) COLUMNS * blocks.get(i)[0].length * Integer.BYTES;
+        }
+        long stringPoolOffset = offset;
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(chromosomes.size());
+            out.writeInt(index.nextId());
+            out.writeLong(stringPoolOffset);
+
+            for (int i = 0; i < chromosomes.size(); i++) {
+                out.writeInt(stringIds.get(chromosomes.get(i)));
+                out.writeInt(blocks.get(i)[0].length);
+                out.writeLong(blockOffsets[i]);
+            }
+
+            for (int[][] columns : blocks) {
+                for (int[] column : columns) {
+                    for (int value : column) {
+                        out.writeInt(value);
+                    }
+                }
+            }
+
+            List<byte[]> encoded = new ArrayList<>(symbolCount + nameIds.size());
+            for (String value : stringIds.keySet()) {
+                encoded.add(value.getBytes(StandardCharsets.UTF_8));
+            }
+            for (String value : textIds.keySet()) {
+                encoded.add(value.getBytes(StandardCharsets.UTF_8));
+            }
+            for (String value : nameIds.keySet()) {
+                encoded.add(value.getBytes(StandardCharsets.UTF_8));
+            }
+            out.writeInt(encoded.size());
+            out.writeInt(symbolCount);
+            out.writeInt(filterSymbolCount);
+            int stringOffset = 0;
+            out.writeInt(stringOffset);
+            for (byte[] bytes : encoded) {
+                stringOffset += bytes.length;
+                out.writeInt(stringOffset);
+            }
+            for (byte[] bytes : encoded) {
+                out.write(bytes);
+            }
+        }
+        // On disk before it replaces the old file, since a snapshot lets the log be deleted
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(path.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Flush a directory's entries, so a rename into it survives a crash.
+     * Windows cannot open directories and makes renames durable itself.
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        if (System.getProperty("os.name").startsWith("Windows")) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static int intern(Map<String, Integer> stringIds, String value) {
+        return stringIds.computeIfAbsent(value == null ? "" : value, v -> stringIds.size());
+    }
+
+    /**
+     * Map an index file and return an index whose chromosomes are served
+     * directly from the mapping.
+     */
+    public static GenomeIndex open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES);
+            if (header.getInt(0) != MAGIC) {
+                throw new IOException("Not a genome index file: " + path);
+            }
+            if (header.getInt(4) != VERSION) {
+                throw new IOException("Unsupported index file version " + header.getInt(4) + ": " + path);
+            }
+            int chromosomeCount = header.getInt(8);
+            int nextId = header.getInt(12);
+            long stringPoolOffset = header.getLong(16);
+
+            MappedIntervalIndex.StringPool strings = mapStringPool(channel, stringPoolOffset);
+
+            ByteBuffer directory = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES,
+                    (long) DIRECTORY_ENTRY_BYTES * chromosomeCount);
+            Map<String, MappedIntervalIndex> partitions = new HashMap<>();
+            for (int i = 0; i < chromosomeCount; i++) {
+                int entry = i * DIRECTORY_ENTRY_BYTES;
+                String chromosome = strings.get(directory.getInt(entry));
+                int rows = directory.getInt(entry + 4);
+                long blockOffset = directory.getLong(entry + 8);
+
+                long columnBytes = (long) rows * Integer.BYTES;
+                IntBuffer[] columns = new IntBuffer[COLUMNS];
+                for (int c = 0; c < COLUMNS; c++) {
+                    columns[c] = channel.map(FileChannel.MapMode.READ_ONLY, blockOffset + c * columnBytes,
+                            columnBytes).asIntBuffer();
+                }
+                partitions.put(chromosome, new MappedIntervalIndex(chromosome, rows, columns, strings));
+            }
+            // The mappings stay valid after the channel is closed
+            return GenomeIndex.ofFrozen(partitions, nextId);
+        }
+    }
+
+    private static MappedIntervalIndex.StringPool mapStringPool(FileChannel channel, long offset)
+            throws IOException {
+        ByteBuffer counts = channel.map(FileChannel.MapMode.READ_ONLY, offset, 3 * Integer.BYTES);
+        int count = counts.getInt(0);
+        int symbolCount = counts.getInt(Integer.BYTES);
+        int filterSymbolCount = counts.getInt(2 * Integer.BYTES);
+        long offsetsStart = offset + 3 * Integer.BYTES;
+        long offsetsBytes = (long) (count + 1) * Integer.BYTES;
+        ByteBuffer offsets = channel.map(FileChannel.MapMode.READ_ONLY, offsetsStart, offsetsBytes);
+        long bytesStart = offsetsStart + offsetsBytes;
+        ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, bytesStart, channel.size() - bytesStart);
+        return new MappedIntervalIndex.StringPool(offsets.asIntBuffer(), bytes, symbolCount, filterSymbolCount);
+    }
+}
@@ -0,0 +1,104 @@
+package genome;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.IntConsumer;
+
+/**
+ * IntervalJoin intersects a whole set of regions with the genes of an index,
+ * like bedtools intersect -wo: every (region, overlapping gene) pair is
+ * reported together with the overlap length.
+ *
+ * Regions are grouped by chromosome and sorted by start, then swept against
+ * each of the chromosome's start-sorted partitions with one IntervalSweep per
+ * partition. Pairs are handed to the visitor as soon as they are found, so a
+ * join never holds its output in memory. Chromosomes are visited in sorted
+ * order, regions in ascending start order and, within a region, genes in
+ * ascending start order per partition.
+ *
+ * Time Complexity: O(m log m + n + k) for m regions, n genes and k pairs
+ * (plus the active-list size per region)
+ *
+ * @author DSA-EL Project
+ */
+public class IntervalJoin {
+
+    /**
+     * Receives the pairs of a join. region is the index of the region in the
+     * input arrays; overlap is the number of shared bases.
+     */
+    public interface JoinVisitor {
+        void match(int region, IntervalNode gene, int overlap) throws IOException;
+    }
+
+    private IntervalJoin() {
+    }
+
+    /**
+     * Join the regions (chromosomes[i], starts[i], ends[i]) with one version of
+     * the index. Regions on chromosomes the index does not know produce no
+     * pairs.
+     */
+    public static void join(GenomeIndex index, String[] chromosomes, int[] starts, int[] ends,
+            JoinVisitor visitor) throws IOException {
+        GenomeIndex snapshot = index.snapshot();
+
+        Map<String, List<Integer>> byChromosome = new TreeMap<>();
+        for (int i = 0; i < starts.length; i++) {
+            byChromosome.computeIfAbsent(chromosomes[i], c -> new ArrayList<>()).add(i);
+        }
+
+        for (Map.Entry<String, List<Integer>> entry : byChromosome.entrySet()) {
+            List<ImplicitIntervalIndex> partitions = snapshot.sortedPartitions(entry.getKey());
+            if (partitions.isEmpty()) {
+                continue;
+            }
+            int[] order = entry.getValue().stream()
+                    .sorted((a, b) -> Integer.compare(starts[a], starts[b]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+
+            IntervalSweep[] sweeps = new IntervalSweep[partitions.size()];
+            for (int p = 0; p < sweeps.length; p++) {
+                sweeps[p] = new IntervalSweep(partitions.get(p), starts[order[0]]);
+            }
+
+            // Hits are buffered per region so visitor IOExceptions stay out of the IntConsumer
+            RowBuffer hits = new RowBuffer();
+            for (int region : order) {
+                int start = starts[region];
+                int end = ends[region];
+                for (int p = 0; p < sweeps.length; p++) {
+                    ImplicitIntervalIndex partition = partitions.get(p);
+                    hits.size = 0;
+                    sweeps[p].advance(start, end, hits);
+                    for (int h = 0; h < hits.size; h++) {
+                        int row = hits.rows[h];
+                        int overlap = Math.min(end, partition.end(row)) - Math.max(start, partition.start(row)) + 1;
+                        visitor.match(region, partition.node(row), overlap);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Growable row list, reused from one region to the next.
+     */
+    private static final class RowBuffer implements IntConsumer {
+        int[] rows = new int[16];
+        int size;
+
+        @Override
+        public void accept(int row) {
+            if (size == rows.length) {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+}
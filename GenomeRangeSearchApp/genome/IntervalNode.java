@@ -5,8 +5,14 @@ package genome;
  * 
  * Each node stores:
  * - An interval [start, end] representing a genomic region
+ * - A gene id, unique within a GenomeIndex
  * - The gene name and extended metadata
  * - maxEnd: the maximum endpoint in the subtree rooted at this node
+ * - minEnd and size: the smallest endpoint and the node count of the subtree,
+ *   so whole subtrees can be counted without visiting them
+ * - typeMask: the gene types present in the subtree (see GeneFilter), so
+ *   filtered searches can skip subtrees without a matching type
+ * - height: the AVL height of the subtree rooted at this node
  * - References to left and right children
  * 
  * @author DSA-EL Project
@@ -19,9 +25,24 @@ public class IntervalNode {
     /** End position of the genomic interval */
     public int end;
 
+    /** Gene id assigned by GenomeIndex in insertion order (0 = not assigned) */
+    public int id;
+
     /** Maximum end value in the subtree rooted at this node */
     public int maxEnd;
 
+    /** Minimum end value in the subtree rooted at this node */
+    public int minEnd;
+
+    /** Number of nodes in the subtree rooted at this node */
+    public int size;
+
+    /** GeneFilter.typeBit of every gene type in the subtree, set when the node joins a tree */
+    public long typeMask;
+
+    /** Height of the subtree rooted at this node (leaf = 1), used for AVL balancing */
+    public int height;
+
     /** Name of the gene (e.g., BRCA1, TP53) */
     public String geneName;
 
@@ -67,10 +88,36 @@ public class IntervalNode {
         this.diseaseAssociation = diseaseAssociation;
         this.applications = applications;
         this.maxEnd = end;
+        this.minEnd = end;
+        this.size = 1;
+        this.height = 1;
         this.left = null;
         this.right = null;
     }
 
+    /**
+     * Copy a node, including its children and subtree fields. Used by the
+     * tree's path copying so published nodes are never modified.
+     */
+    public IntervalNode(IntervalNode other) {
+        this.start = other.start;
+        this.end = other.end;
+        this.id = other.id;
+        this.maxEnd = other.maxEnd;
+        this.minEnd = other.minEnd;
+        this.size = other.size;
+        this.typeMask = other.typeMask;
+        this.height = other.height;
+        this.geneName = other.geneName;
+        this.chromosome = other.chromosome;
+        this.type = other.type;
+        this.function = other.function;
+        this.diseaseAssociation = other.diseaseAssociation;
+        this.applications = other.applications;
+        this.left = other.left;
+        this.right = other.right;
+    }
+
     @Override
     public String toString() {
         return geneName + " [" + start + ", " + end + "]";
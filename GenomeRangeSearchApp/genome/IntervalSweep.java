@@ -0,0 +1,82 @@
+package genome;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * IntervalSweep matches a stream of query regions against a start-sorted
+ * partition in a single merge-style pass instead of one tree descent per
+ * query.
+ *
+ * Queries are fed in ascending start order while a cursor walks the
+ * partition's rows, also in start order. Rows whose start has been reached by
+ * some query's end are kept in an active list until their end falls behind
+ * the current query's start; since later queries never start earlier, such
+ * rows can be dropped for good. Each query then only inspects the active
+ * rows.
+ *
+ * A sweep can begin at any query: the active list is seeded with the rows
+ * spanning that query's start (one overlap search), so a large batch can be
+ * cut into independent chunks and swept in parallel.
+ *
+ * Time Complexity: O(log n + q + m + k) for q sorted queries over n rows,
+ * where m is the number of rows passed by the cursor and k the matches
+ * (plus the size of the active list per query)
+ *
+ * @author DSA-EL Project
+ */
+public class IntervalSweep {
+
+    private final ImplicitIntervalIndex partition;
+    private int[] active = new int[16];
+    private int activeSize;
+    private int next;
+
+    /**
+     * Start a sweep whose first query begins at firstStart.
+     */
+    public IntervalSweep(ImplicitIntervalIndex partition, int firstStart) {
+        this.partition = partition;
+        // Seed with every row spanning the first query start, then continue after them
+        partition.overlapSearch(firstStart, firstStart, this::activate);
+        this.next = partition.upperBound(firstStart);
+    }
+
+    /**
+     * Report the rows overlapping [queryStart, queryEnd], in ascending start
+     * order. Queries must arrive in ascending start order.
+     */
+    public void advance(int queryStart, int queryEnd, IntConsumer visitor) {
+        // Drop rows that end before this query (and therefore every later query)
+        int kept = 0;
+        for (int a = 0; a < activeSize; a++) {
+            if (partition.end(active[a]) >= queryStart) {
+                active[kept++] = active[a];
+            }
+        }
+        activeSize = kept;
+
+        // Admit rows that start within this query
+        int n = partition.size();
+        while (next < n && partition.start(next) <= queryEnd) {
+            if (partition.end(next) >= queryStart && !partition.isDeleted(next)) {
+                activate(next);
+            }
+            next++;
+        }
+
+        // Rows admitted for an earlier, longer query may start after this one ends
+        for (int a = 0; a < activeSize; a++) {
+            if (partition.start(active[a]) <= queryEnd) {
+                visitor.accept(active[a]);
+            }
+        }
+    }
+
+    private void activate(int row) {
+        if (activeSize == active.length) {
+            active = Arrays.copyOf(active, activeSize * 2);
+        }
+        active[activeSize++] = row;
+    }
+}
@@ -1,28 +1,92 @@
 package genome;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * IntervalTree is a data structure optimized for overlap queries.
  * 
- * Time Complexity: O(log n + k) for search where k = results
+ * The tree is kept height-balanced (AVL) so that annotation data arriving
+ * sorted by position does not degenerate into a linked list. Every rotation
+ * recomputes height and maxEnd for the nodes it moves.
+ * 
+ * Updates are persistent (path copying): an insert or delete copies the nodes
+ * on the path from the root to the changed leaf, plus any node a rotation
+ * moves, and never modifies a node that is already reachable from the tree. A snapshot()
+ * therefore costs O(1) and stays valid while the original keeps changing,
+ * which lets readers search without locks. Writers must still be serialized.
+ * 
+ * Time Complexity: O(log n) for insert and delete, O(log n + k) for search where k = results
  * 
  * @author DSA-EL Project
  */
 public class IntervalTree {
 
+    /** Below this batch-to-tree size ratio, batches are inserted one by one */
+    private static final int MERGE_RATIO = 8;
+
     private IntervalNode root;
+    private int size;
 
     public IntervalTree() {
         this.root = null;
+        this.size = 0;
+    }
+
+    /**
+     * Build a perfectly balanced tree from a batch of intervals.
+     * 
+     * The batch is sorted once by start position and the tree is built
+     * bottom-up from the sorted array, computing height and maxEnd in the
+     * same pass. This avoids the O(n log n) rebalancing cost of inserting
+     * genes one at a time.
+     * 
+     * Time Complexity: O(n log n) for the sort, O(n) for the build
+     * (O(n) overall when the batch is already sorted)
+     */
+    public static IntervalTree bulkLoad(List<IntervalNode> nodes) {
+        IntervalNode[] sorted = nodes.toArray(new IntervalNode[0]);
+        Arrays.sort(sorted, Comparator.comparingInt(n -> n.start));
+
+        IntervalTree tree = new IntervalTree();
+        tree.root = buildBalanced(sorted, 0, sorted.length - 1);
+        tree.size = sorted.length;
+        return tree;
+    }
+
+    private static IntervalNode buildBalanced(IntervalNode[] sorted, int lo, int hi) {
+        if (lo > hi) {
+            return null;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        IntervalNode node = sorted[mid];
+        node.left = buildBalanced(sorted, lo, mid - 1);
+        node.right = buildBalanced(sorted, mid + 1, hi);
+        update(node);
+        return node;
+    }
+
+    /**
+     * O(1) copy of this tree that is unaffected by later updates to either tree.
+     */
+    public IntervalTree snapshot() {
+        IntervalTree copy = new IntervalTree();
+        copy.root = root;
+        copy.size = size;
+        return copy;
     }
 
     /**
      * Insert with basic info (backward compatibility)
      */
     public void insert(int start, int end, String geneName) {
-        root = insertRecursive(root, new IntervalNode(start, end, geneName));
+        insert(new IntervalNode(start, end, geneName));
     }
 
     /**
@@ -30,22 +94,232 @@ public class IntervalTree {
      */
     public void insert(int start, int end, String geneName, String chromosome,
             String type, String function, String diseaseAssociation, String applications) {
-        root = insertRecursive(root, new IntervalNode(start, end, geneName, chromosome,
+        insert(new IntervalNode(start, end, geneName, chromosome,
                 type, function, diseaseAssociation, applications));
     }
 
+    /**
+     * Insert an already-built node
+     */
+    public void insert(IntervalNode node) {
+        root = insertRecursive(root, node);
+        size++;
+    }
+
+    /**
+     * Merge a batch of intervals into the tree.
+     * 
+     * A batch that is small relative to the tree is inserted one node at a
+     * time. A larger batch is sorted, merged with the tree's in-order contents
+     * and the tree is rebuilt balanced, which costs O(n + m) instead of
+     * O(m log(n + m)) descents and rotations.
+     */
+    public void insertAll(List<IntervalNode> nodes) {
+        if (nodes.size() * MERGE_RATIO < size) {
+            for (IntervalNode node : nodes) {
+                insert(node);
+            }
+            return;
+        }
+
+        IntervalNode[] batch = nodes.toArray(new IntervalNode[0]);
+        Arrays.sort(batch, Comparator.comparingInt(n -> n.start));
+        List<IntervalNode> existing = inOrder();
+
+        IntervalNode[] merged = new IntervalNode[existing.size() + batch.length];
+        int i = 0, j = 0, k = 0;
+        while (i < existing.size() && j < batch.length) {
+            // Existing nodes win ties so equal starts keep insertion order; they
+            // are copied because the rebuild relinks them and snapshots may share them
+            merged[k++] = batch[j].start < existing.get(i).start ? batch[j++] : new IntervalNode(existing.get(i++));
+        }
+        while (i < existing.size()) {
+            merged[k++] = new IntervalNode(existing.get(i++));
+        }
+        while (j < batch.length) {
+            merged[k++] = batch[j++];
+        }
+
+        root = buildBalanced(merged, 0, merged.length - 1);
+        size = merged.length;
+    }
+
     private IntervalNode insertRecursive(IntervalNode node, IntervalNode newNode) {
         if (node == null) {
+            update(newNode);
             return newNode;
         }
 
+        // Path copy: nodes reachable from a published root are never modified
+        IntervalNode copy = new IntervalNode(node);
         if (newNode.start < node.start) {
-            node.left = insertRecursive(node.left, newNode);
+            copy.left = insertRecursive(node.left, newNode);
+        } else {
+            copy.right = insertRecursive(node.right, newNode);
+        }
+
+        return rebalance(copy);
+    }
+
+    /**
+     * The interval with this start and id, or null.
+     *
+     * Time Complexity: O(log n)
+     */
+    public IntervalNode find(int start, int id) {
+        IntervalNode node = root;
+        while (node != null) {
+            int order = start != node.start ? Integer.compare(start, node.start) : Integer.compare(id, node.id);
+            if (order == 0) {
+                return node;
+            }
+            node = order < 0 ? node.left : node.right;
+        }
+        return null;
+    }
+
+    /**
+     * Remove the interval with this start and id. Returns the removed node,
+     * or null (leaving the tree unchanged) if there is none.
+     *
+     * Nodes are ordered by (start, id), so the descent is one path; that path
+     * is copied, and a removed node with two children is replaced by a copy
+     * of its in-order successor. Every copied node is rebalanced on the way
+     * back up, which also recomputes maxEnd and the other aggregates.
+     *
+     * Time Complexity: O(log n)
+     */
+    public IntervalNode delete(int start, int id) {
+        IntervalNode[] removed = new IntervalNode[1];
+        IntervalNode newRoot = deleteRecursive(root, start, id, removed);
+        if (removed[0] != null) {
+            root = newRoot;
+            size--;
+        }
+        return removed[0];
+    }
+
+    private static IntervalNode deleteRecursive(IntervalNode node, int start, int id, IntervalNode[] removed) {
+        if (node == null) {
+            return null;
+        }
+
+        int order = start != node.start ? Integer.compare(start, node.start) : Integer.compare(id, node.id);
+        IntervalNode copy;
+        if (order < 0) {
+            IntervalNode left = deleteRecursive(node.left, start, id, removed);
+            if (removed[0] == null) {
+                return node;
+            }
+            copy = new IntervalNode(node);
+            copy.left = left;
+        } else if (order > 0) {
+            IntervalNode right = deleteRecursive(node.right, start, id, removed);
+            if (removed[0] == null) {
+                return node;
+            }
+            copy = new IntervalNode(node);
+            copy.right = right;
         } else {
-            node.right = insertRecursive(node.right, newNode);
+            removed[0] = node;
+            if (node.left == null) {
+                return node.right;
+            }
+            if (node.right == null) {
+                return node.left;
+            }
+            IntervalNode successor = node.right;
+            while (successor.left != null) {
+                successor = successor.left;
+            }
+            copy = new IntervalNode(successor);
+            copy.left = node.left;
+            copy.right = deleteMin(node.right);
+        }
+        return rebalance(copy);
+    }
+
+    private static IntervalNode deleteMin(IntervalNode node) {
+        if (node.left == null) {
+            return node.right;
+        }
+        IntervalNode copy = new IntervalNode(node);
+        copy.left = deleteMin(node.left);
+        return rebalance(copy);
+    }
+
+    private static int height(IntervalNode node) {
+        return node == null ? 0 : node.height;
+    }
+
+    /**
+     * Recompute height and the subtree aggregates of a node from its children.
+     */
+    private static void update(IntervalNode node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        int maxEnd = node.end;
+        int minEnd = node.end;
+        int size = 1;
+        long typeMask = GeneFilter.typeBit(node.type);
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+            minEnd = Math.min(minEnd, node.left.minEnd);
+            size += node.left.size;
+            typeMask |= node.left.typeMask;
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+            minEnd = Math.min(minEnd, node.right.minEnd);
+            size += node.right.size;
+            typeMask |= node.right.typeMask;
         }
+        node.maxEnd = maxEnd;
+        node.minEnd = minEnd;
+        node.size = size;
+        node.typeMask = typeMask;
+    }
+
+    /**
+     * Rotations only run on path copies; the pivot may still be shared, so it is copied too.
+     */
+    private static IntervalNode rotateRight(IntervalNode node) {
+        IntervalNode pivot = new IntervalNode(node.left);
+        node.left = pivot.right;
+        pivot.right = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    private static IntervalNode rotateLeft(IntervalNode node) {
+        IntervalNode pivot = new IntervalNode(node.right);
+        node.right = pivot.left;
+        pivot.left = node;
+        update(node);
+        update(pivot);
+        return pivot;
+    }
+
+    /**
+     * Restore the AVL invariant at this node after one of its subtrees changed.
+     */
+    private static IntervalNode rebalance(IntervalNode node) {
+        update(node);
+        int balance = height(node.left) - height(node.right);
 
-        node.maxEnd = Math.max(node.maxEnd, newNode.end);
+        // After a delete the heavy child is still shared, so a double rotation copies it first
+        if (balance > 1) {
+            if (height(node.left.left) < height(node.left.right)) {
+                node.left = rotateLeft(new IntervalNode(node.left));
+            }
+            return rotateRight(node);
+        }
+        if (balance < -1) {
+            if (height(node.right.right) < height(node.right.left)) {
+                node.right = rotateRight(new IntervalNode(node.right));
+            }
+            return rotateLeft(node);
+        }
         return node;
     }
 
@@ -55,23 +329,277 @@ public class IntervalTree {
 
     public List<IntervalNode> overlapSearch(int queryStart, int queryEnd) {
         List<IntervalNode> result = new ArrayList<>();
-        overlapSearchRecursive(root, queryStart, queryEnd, result);
+        overlapSearch(queryStart, queryEnd, result::add);
         return result;
     }
 
-    private void overlapSearchRecursive(IntervalNode node, int queryStart, int queryEnd, List<IntervalNode> result) {
-        if (node == null)
-            return;
+    /**
+     * Hand every interval overlapping [queryStart, queryEnd] to the visitor
+     * instead of collecting them, so callers can stream large results.
+     */
+    public void overlapSearch(int queryStart, int queryEnd, Consumer<IntervalNode> visitor) {
+        overlapSearch(queryStart, queryEnd, GeneFilter.ALL, visitor);
+    }
+
+    /**
+     * Hand every interval overlapping [queryStart, queryEnd] that passes the
+     * filter's type and disease criteria to the visitor. Subtrees whose
+     * typeMask has no type the filter accepts are skipped.
+     */
+    public void overlapSearch(int queryStart, int queryEnd, GeneFilter filter, Consumer<IntervalNode> visitor) {
+        overlapSearch(queryStart, queryEnd, filter, visitor, null);
+    }
+
+    /**
+     * The filtered overlapSearch, adding the nodes it visits to stats unless
+     * stats is null.
+     */
+    public void overlapSearch(int queryStart, int queryEnd, GeneFilter filter, Consumer<IntervalNode> visitor,
+            SearchStats stats) {
+        int visited = overlapSearchRecursive(root, queryStart, queryEnd, filter, visitor);
+        if (stats != null) {
+            stats.visited += visited;
+        }
+    }
 
-        if (isOverlapping(node.start, node.end, queryStart, queryEnd)) {
-            result.add(node);
+    /** Returns the number of nodes visited */
+    private int overlapSearchRecursive(IntervalNode node, int queryStart, int queryEnd, GeneFilter filter,
+            Consumer<IntervalNode> visitor) {
+        if (node == null || (node.typeMask & filter.typeMask()) == 0)
+            return 0;
+
+        int visited = 1;
+        if (isOverlapping(node.start, node.end, queryStart, queryEnd) && filter.matches(node)) {
+            visitor.accept(node);
         }
 
         if (node.left != null && node.left.maxEnd >= queryStart) {
-            overlapSearchRecursive(node.left, queryStart, queryEnd, result);
+            visited += overlapSearchRecursive(node.left, queryStart, queryEnd, filter, visitor);
+        }
+
+        // Everything to the right starts at or after node.start
+        if (node.start <= queryEnd) {
+            visited += overlapSearchRecursive(node.right, queryStart, queryEnd, filter, visitor);
+        }
+        return visited;
+    }
+
+    /**
+     * Number of intervals overlapping [queryStart, queryEnd].
+     * 
+     * A subtree whose starts are all known to be <= queryEnd (it hangs left of
+     * a node that starts within range) and whose minEnd is >= queryStart
+     * overlaps entirely, so its size is added without visiting it. Subtrees
+     * ending before queryStart (maxEnd) or starting after queryEnd are
+     * skipped.
+     * 
+     * A subtree that mixes intervals ending before queryStart with ones that
+     * reach it can be neither counted nor skipped and is walked, so the cost
+     * is O(log n + m) for m such subtrees: O(log n) when the genes left of the
+     * query either all reach it or none do, up to O(n) when short genes are
+     * interleaved with long ones spanning queryStart.
+     */
+    public int countOverlaps(int queryStart, int queryEnd) {
+        return countRecursive(root, queryStart, queryEnd, false);
+    }
+
+    private int countRecursive(IntervalNode node, int queryStart, int queryEnd, boolean startsInRange) {
+        if (node == null || node.maxEnd < queryStart)
+            return 0;
+
+        if (startsInRange && node.minEnd >= queryStart) {
+            return node.size;
+        }
+
+        // Everything left of a node that starts within range starts within range too
+        int count = countRecursive(node.left, queryStart, queryEnd, startsInRange || node.start <= queryEnd);
+        if (node.start <= queryEnd) {
+            if (node.end >= queryStart) {
+                count++;
+            }
+            count += countRecursive(node.right, queryStart, queryEnd, startsInRange);
+        }
+        return count;
+    }
+
+    /**
+     * Visit the intervals overlapping [queryStart, queryEnd] that come after
+     * (afterStart, afterId), in ascending (start, id) order, until the visitor
+     * returns false.
+     * 
+     * Equal starts are kept in insertion order, which is id order for genes
+     * numbered by GenomeIndex. A subtree whose keys all precede the cursor is
+     * never entered, so resuming a paged search costs O(log n) plus the page.
+     * 
+     * @return false if the visitor stopped the search
+     */
+    public boolean overlapSearchAfter(int queryStart, int queryEnd, int afterStart, int afterId,
+            Predicate<IntervalNode> visitor) {
+        return overlapSearchAfter(queryStart, queryEnd, afterStart, afterId, GeneFilter.ALL, visitor);
+    }
+
+    /**
+     * overlapSearchAfter restricted to the intervals passing the filter's type
+     * and disease criteria, skipping subtrees without an accepted type.
+     */
+    public boolean overlapSearchAfter(int queryStart, int queryEnd, int afterStart, int afterId,
+            GeneFilter filter, Predicate<IntervalNode> visitor) {
+        return overlapSearchAfter(queryStart, queryEnd, afterStart, afterId, filter, visitor, null);
+    }
+
+    /**
+     * The filtered overlapSearchAfter, adding the nodes it visits to stats
+     * unless stats is null.
+     */
+    public boolean overlapSearchAfter(int queryStart, int queryEnd, int afterStart, int afterId,
+            GeneFilter filter, Predicate<IntervalNode> visitor, SearchStats stats) {
+        return overlapSearchAfterRecursive(root, queryStart, queryEnd, afterStart, afterId, filter, visitor,
+                stats == null ? new SearchStats() : stats);
+    }
+
+    private boolean overlapSearchAfterRecursive(IntervalNode node, int queryStart, int queryEnd, int afterStart,
+            int afterId, GeneFilter filter, Predicate<IntervalNode> visitor, SearchStats trace) {
+        if (node == null || (node.typeMask & filter.typeMask()) == 0)
+            return true;
+
+        trace.visited++;
+        // The left subtree orders before this node, so it only matters if this node is past the cursor
+        if (node.start > afterStart || (node.start == afterStart && node.id > afterId)) {
+            if (node.left != null && node.left.maxEnd >= queryStart
+                    && !overlapSearchAfterRecursive(node.left, queryStart, queryEnd, afterStart, afterId, filter,
+                            visitor, trace)) {
+                return false;
+            }
+            if (isOverlapping(node.start, node.end, queryStart, queryEnd) && filter.matches(node)) {
+                if (!visitor.test(node)) {
+                    return false;
+                }
+            }
+        }
+
+        if (node.start <= queryEnd) {
+            return overlapSearchAfterRecursive(node.right, queryStart, queryEnd, afterStart, afterId, filter,
+                    visitor, trace);
+        }
+        return true;
+    }
+
+    /**
+     * The k intervals ending closest before position (end < position),
+     * nearest first.
+     * 
+     * Best-first search: subtrees are queued by the smallest distance any of
+     * their intervals could have, position - maxEnd (or 1 when maxEnd reaches
+     * past position). A subtree whose minEnd is >= position has no interval
+     * ending before it and is dropped, as is a right subtree whose node
+     * already starts at or after position. An interval is reported once
+     * nothing left in the queue can be closer.
+     * 
+     * Time Complexity: O((k + p) log n), where p is the number of subtrees
+     * expanded because they reach past position
+     */
+    public List<IntervalNode> nearestUpstream(int position, int k) {
+        List<IntervalNode> result = new ArrayList<>(Math.min(k, 64));
+        PriorityQueue<Candidate> queue = new PriorityQueue<>();
+        offerUpstream(queue, root, position);
+        while (!queue.isEmpty() && result.size() < k) {
+            Candidate candidate = queue.poll();
+            IntervalNode node = candidate.node;
+            if (candidate.exact) {
+                result.add(node);
+                continue;
+            }
+            if (node.end < position) {
+                queue.add(new Candidate(position - node.end, node, true));
+            }
+            offerUpstream(queue, node.left, position);
+            if (node.start < position) {
+                offerUpstream(queue, node.right, position);
+            }
+        }
+        return result;
+    }
+
+    private static void offerUpstream(PriorityQueue<Candidate> queue, IntervalNode subtree, int position) {
+        if (subtree != null && subtree.minEnd < position) {
+            int bound = subtree.maxEnd >= position ? 1 : position - subtree.maxEnd;
+            queue.add(new Candidate(bound, subtree, false));
+        }
+    }
+
+    /**
+     * The k intervals starting closest after position (start > position), in
+     * ascending start order.
+     * 
+     * Time Complexity: O(log n + k)
+     */
+    public List<IntervalNode> nearestDownstream(int position, int k) {
+        List<IntervalNode> result = new ArrayList<>(Math.min(k, 64));
+        if (k > 0) {
+            // [position, MAX] overlaps every interval starting after position
+            overlapSearchAfter(position, Integer.MAX_VALUE, position, Integer.MAX_VALUE, node -> {
+                result.add(node);
+                return result.size() < k;
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Queue entry of nearestUpstream: an interval at its exact distance, or a
+     * subtree at a lower bound of its distances.
+     */
+    private static final class Candidate implements Comparable<Candidate> {
+        final int distance;
+        final IntervalNode node;
+        final boolean exact;
+
+        Candidate(int distance, IntervalNode node, boolean exact) {
+            this.distance = distance;
+            this.node = node;
+            this.exact = exact;
         }
 
-        overlapSearchRecursive(node.right, queryStart, queryEnd, result);
+        @Override
+        public int compareTo(Candidate other) {
+            if (distance != other.distance) {
+                return Integer.compare(distance, other.distance);
+            }
+            // On a tie the interval goes first; the subtree cannot beat it
+            return Boolean.compare(other.exact, exact);
+        }
+    }
+
+    /**
+     * All intervals in ascending start order.
+     */
+    public List<IntervalNode> inOrder() {
+        List<IntervalNode> result = new ArrayList<>();
+        inOrderRecursive(root, result);
+        return result;
+    }
+
+    private void inOrderRecursive(IntervalNode node, List<IntervalNode> result) {
+        if (node == null)
+            return;
+
+        inOrderRecursive(node.left, result);
+        result.add(node);
+        inOrderRecursive(node.right, result);
+    }
+
+    /**
+     * Height of the tree (0 when empty).
+     */
+    public int height() {
+        return height(root);
+    }
+
+    /**
+     * Number of intervals in the tree.
+     */
+    public int size() {
+        return size;
     }
 
     public IntervalNode getRoot() {
@@ -0,0 +1,222 @@
+package genome;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * IntervalTreeBenchmark measures IntervalTree inserts and overlap searches
+ * against the linear scan and FlatIntervalIndex on SyntheticGenome data.
+ *
+ * Each benchmark runs like a JMH throughput benchmark: warmup iterations,
+ * then timed iterations of ITERATION_MILLIS each, reporting operations per
+ * second (mean and standard deviation over the timed iterations) and bytes
+ * allocated per operation by the benchmark thread. Results of every
+ * operation are summed into a field so the JIT cannot drop the work.
+ *
+ * Benchmarks, per gene count:
+ * - insert.sorted / insert.shuffled: one insert into a tree of that size,
+ *   with new genes arriving in position order or at random. The tree is
+ *   reset to its O(1) snapshot every RESET_INTERVAL inserts to keep its size.
+ * - tree.*, flat.*, scan.*: one overlap query on IntervalTree,
+ *   FlatIntervalIndex and a linear scan (GenomeRangeSearch.naiveSearch), for
+ *   point, narrow (1 kb) and wide (1 Mb) windows.
+ *
+ * Usage: java genome.IntervalTreeBenchmark [sizes] [filter] [csv]
+ * sizes is a comma-separated list of gene counts (default 10000,100000,1000000;
+ * 10000000 needs about -Xmx6g), filter keeps benchmarks whose name contains
+ * it, and csv names a file to write the results to for later comparison.
+ *
+ * @author DSA-EL Project
+ */
+public class IntervalTreeBenchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+    private static final long ITERATION_MILLIS = 1000;
+    /** Operations run between clock reads */
+    private static final int CHUNK = 16;
+    private static final int QUERIES = 1 << 14;
+    private static final int RESET_INTERVAL = 1 << 12;
+
+    /** Window width of each query shape */
+    private static final String[] SHAPES = { "point", "narrow", "wide" };
+    private static final int[] WIDTHS = { 1, 1_000, 1_000_000 };
+
+    /** One benchmarked operation; i counts calls from 0 */
+    private interface Operation {
+        long run(long i);
+    }
+
+    /** Result of one benchmark */
+    private static final class Result {
+        final String name;
+        final int genes;
+        final double score;
+        final double error;
+        final double bytesPerOp;
+
+        Result(String name, int genes, double score, double error, double bytesPerOp) {
+            this.name = name;
+            this.genes = genes;
+            this.score = score;
+            this.error = error;
+            this.bytesPerOp = bytesPerOp;
+        }
+    }
+
+    private static long sink;
+
+    public static void main(String[] args) throws IOException {
+        String sizes = args.length > 0 ? args[0] : "10000,100000,1000000";
+        String filter = args.length > 1 ? args[1] : "";
+        List<Result> results = new ArrayList<>();
+
+        System.out.printf("%-18s %10s %16s %12s %8s %12s%n", "Benchmark", "Genes", "Score", "Error", "Units",
+                "Alloc B/op");
+        for (String size : sizes.split(",")) {
+            int genes = Integer.parseInt(size.trim());
+            for (Result result : runAll(genes, filter)) {
+                System.out.printf("%-18s %10d %16.1f %12.1f %8s %12.1f%n", result.name, result.genes, result.score,
+                        result.error, "ops/s", result.bytesPerOp);
+                results.add(result);
+            }
+        }
+
+        if (args.length > 2) {
+            try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(Paths.get(args[2]), StandardCharsets.UTF_8))) {
+                csv.println("benchmark,genes,ops_per_second,stddev,bytes_per_op");
+                for (Result result : results) {
+                    csv.printf("%s,%d,%.1f,%.1f,%.1f%n", result.name, result.genes, result.score, result.error,
+                            result.bytesPerOp);
+                }
+            }
+        }
+        if (sink == 42) {
+            System.out.println();
+        }
+    }
+
+    private static List<Result> runAll(int genes, String filter) {
+        List<Result> results = new ArrayList<>();
+        int chromosomeLength = SyntheticGenome.chromosomeLength(genes);
+
+        IntervalTree base = IntervalTree.bulkLoad(SyntheticGenome.generate(genes, SyntheticGenome.Order.SORTED, 42));
+        for (SyntheticGenome.Order order : SyntheticGenome.Order.values()) {
+            String name = "insert." + order.name().toLowerCase(Locale.ROOT);
+            if (!name.contains(filter)) {
+                continue;
+            }
+            IntervalNode[] extra = SyntheticGenome.generate(RESET_INTERVAL, chromosomeLength, order, 7)
+                    .toArray(new IntervalNode[0]);
+            IntervalTree[] tree = { base.snapshot() };
+            results.add(measure(name, genes, i -> {
+                int k = (int) (i % RESET_INTERVAL);
+                if (k == 0) {
+                    tree[0] = base.snapshot();
+                }
+                tree[0].insert(extra[k]);
+                return tree[0].size();
+            }));
+        }
+
+        IntervalNode[] scan = base.inOrder().toArray(new IntervalNode[0]);
+        FlatIntervalIndex flat = FlatIntervalIndex.build(base.inOrder());
+        long[] hits = new long[1];
+        for (int shape = 0; shape < SHAPES.length; shape++) {
+            int[][] windows = SyntheticGenome.windows(QUERIES, WIDTHS[shape], chromosomeLength, shape);
+            int[] starts = windows[0];
+            int[] ends = windows[1];
+
+            String name = "tree." + SHAPES[shape];
+            if (name.contains(filter)) {
+                results.add(measure(name, genes, i -> {
+                    int q = (int) (i & (QUERIES - 1));
+                    base.overlapSearch(starts[q], ends[q], gene -> hits[0]++);
+                    return hits[0];
+                }));
+            }
+            name = "flat." + SHAPES[shape];
+            if (name.contains(filter)) {
+                results.add(measure(name, genes, i -> {
+                    int q = (int) (i & (QUERIES - 1));
+                    flat.overlapSearch(starts[q], ends[q], row -> hits[0]++);
+                    return hits[0];
+                }));
+            }
+            name = "scan." + SHAPES[shape];
+            if (name.contains(filter)) {
+                results.add(measure(name, genes, i -> {
+                    int q = (int) (i & (QUERIES - 1));
+                    int qs = starts[q];
+                    int qe = ends[q];
+                    long found = 0;
+                    for (IntervalNode gene : scan) {
+                        if (gene.start <= qe && qs <= gene.end) {
+                            found++;
+                        }
+                    }
+                    return found;
+                }));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Run warmup and measured iterations of an operation.
+     */
+    private static Result measure(String name, int genes, Operation operation) {
+        System.gc();
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] counter = { 0 };
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS; iteration++) {
+            iterate(operation, counter);
+        }
+
+        double[] scores = new double[MEASURED_ITERATIONS];
+        long operations = 0;
+        long allocated = threads.getCurrentThreadAllocatedBytes();
+        for (int iteration = 0; iteration < MEASURED_ITERATIONS; iteration++) {
+            long begin = System.nanoTime();
+            long done = iterate(operation, counter);
+            scores[iteration] = done * 1e9 / (System.nanoTime() - begin);
+            operations += done;
+        }
+        allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+
+        double mean = 0;
+        for (double score : scores) {
+            mean += score / MEASURED_ITERATIONS;
+        }
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean) / (MEASURED_ITERATIONS - 1);
+        }
+        return new Result(name, genes, mean, Math.sqrt(variance), (double) allocated / operations);
+    }
+
+    /**
+     * Run the operation for ITERATION_MILLIS; returns the number of calls.
+     */
+    private static long iterate(Operation operation, long[] counter) {
+        long deadline = System.nanoTime() + ITERATION_MILLIS * 1_000_000;
+        long done = 0;
+        long result = 0;
+        do {
+            for (int i = 0; i < CHUNK; i++) {
+                result += operation.run(counter[0]++);
+            }
+            done += CHUNK;
+        } while (System.nanoTime() < deadline);
+        sink += result;
+        return done;
+    }
+}
@@ -0,0 +1,210 @@
+package genome;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * JsonWriter encodes JSON straight into a reusable byte buffer and flushes it
+ * to an output stream whenever it fills up.
+ *
+ * Values are UTF-8 encoded character by character, so a response is never
+ * materialized as a String or byte[] first. Commas are inserted
+ * automatically between array elements and object members.
+ *
+ * Buffers are recycled per thread: a writer borrows its thread's buffer and
+ * hands it back on close(), so a request thread serializes every response
+ * through the same 16 KB.
+ *
+ * @author DSA-EL Project
+ */
+public class JsonWriter {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    /** Idle buffer of each thread, null while a writer on that thread holds it */
+    private static final ThreadLocal<byte[]> IDLE_BUFFER = new ThreadLocal<>();
+
+    private final OutputStream out;
+    private byte[] buffer;
+    private int position;
+
+    /** Nesting depth and, per level, whether a comma is due before the next value */
+    private boolean[] needsComma = new boolean[16];
+    private int depth;
+
+    public JsonWriter(OutputStream out) {
+        this.out = out;
+        byte[] idle = IDLE_BUFFER.get();
+        if (idle != null) {
+            IDLE_BUFFER.set(null);
+            this.buffer = idle;
+        } else {
+            this.buffer = new byte[BUFFER_SIZE];
+        }
+    }
+
+    public JsonWriter beginObject() throws IOException {
+        beforeValue();
+        writeByte('{');
+        push();
+        return this;
+    }
+
+    public JsonWriter endObject() throws IOException {
+        depth--;
+        writeByte('}');
+        return this;
+    }
+
+    public JsonWriter beginArray() throws IOException {
+        beforeValue();
+        writeByte('[');
+        push();
+        return this;
+    }
+
+    public JsonWriter endArray() throws IOException {
+        depth--;
+        writeByte(']');
+        return this;
+    }
+
+    /**
+     * Write an object member name; the next call writes its value.
+     */
+    public JsonWriter name(String name) throws IOException {
+        beforeValue();
+        writeString(name);
+        writeByte(':');
+        // The value that follows must not get a comma of its own
+        needsComma[depth] = false;
+        return this;
+    }
+
+    public JsonWriter value(String value) throws IOException {
+        beforeValue();
+        if (value == null) {
+            writeAscii("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    public JsonWriter value(long value) throws IOException {
+        beforeValue();
+        writeAscii(Long.toString(value));
+        return this;
+    }
+
+    public JsonWriter value(double value) throws IOException {
+        beforeValue();
+        writeAscii(Double.isFinite(value) ? Double.toString(value) : "null");
+        return this;
+    }
+
+    public JsonWriter value(boolean value) throws IOException {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    /**
+     * End a top-level value with a newline (for NDJSON) and reset comma state.
+     */
+    public JsonWriter newline() throws IOException {
+        writeByte('\n');
+        needsComma[0] = false;
+        return this;
+    }
+
+    /**
+     * Write buffered bytes to the stream.
+     */
+    public void flush() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        out.flush();
+    }
+
+    /**
+     * Flush and close the underlying stream, returning the buffer for reuse.
+     * The writer must not be used afterwards.
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+            out.close();
+        } finally {
+            IDLE_BUFFER.set(buffer);
+            buffer = null;
+        }
+    }
+
+    private void push() {
+        depth++;
+        if (depth == needsComma.length) {
+            needsComma = java.util.Arrays.copyOf(needsComma, depth * 2);
+        }
+        needsComma[depth] = false;
+    }
+
+    private void beforeValue() throws IOException {
+        if (needsComma[depth]) {
+            writeByte(',');
+        }
+        needsComma[depth] = true;
+    }
+
+    private void writeString(String value) throws IOException {
+        writeByte('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writeByte('\\');
+                writeByte(c);
+            } else if (c < 0x20) {
+                writeByte('\\');
+                writeByte('u');
+                writeByte('0');
+                writeByte('0');
+                writeByte(HEX[c >> 4]);
+                writeByte(HEX[c & 0xF]);
+            } else if (c < 0x80) {
+                writeByte(c);
+            } else if (c < 0x800) {
+                writeByte(0xC0 | (c >> 6));
+                writeByte(0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                    && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                writeByte(0xF0 | (codePoint >> 18));
+                writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                writeByte(0x80 | (codePoint & 0x3F));
+            } else {
+                writeByte(0xE0 | (c >> 12));
+                writeByte(0x80 | ((c >> 6) & 0x3F));
+                writeByte(0x80 | (c & 0x3F));
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            writeByte(value.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        buffer[position++] = (byte) b;
+    }
+}
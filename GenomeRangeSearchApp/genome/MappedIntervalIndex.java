@@ -0,0 +1,156 @@
+package genome;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MappedIntervalIndex serves one chromosome of an index file straight from
+ * memory-mapped buffers.
+ *
+ * Coordinates and string ids are read with absolute gets on IntBuffer views of
+ * the mapping, so nothing is copied onto the heap at open time and any number
+ * of threads (or server processes mapping the same file) can read concurrently.
+ * Only the rows a query returns are materialized as IntervalNodes.
+ *
+ * @author DSA-EL Project
+ */
+public class MappedIntervalIndex extends ImplicitIntervalIndex {
+
+    private final String chromosome;
+    private final int size;
+    private final IntBuffer starts;
+    private final IntBuffer ends;
+    private final IntBuffer maxEnd;
+    private final IntBuffer geneNames;
+    private final IntBuffer types;
+    private final IntBuffer functions;
+    private final IntBuffer diseaseAssociations;
+    private final IntBuffer applications;
+    private final IntBuffer ids;
+    private final StringPool strings;
+
+    /**
+     * Wrap a chromosome block: IndexFile.COLUMNS int columns of size rows
+     * each, mapped one column at a time so a block may exceed the 2 GB a
+     * single buffer can address.
+     */
+    MappedIntervalIndex(String chromosome, int size, IntBuffer[] columns, StringPool strings) {
+        this.chromosome = SymbolTable.SHARED.intern(chromosome);
+        this.size = size;
+        this.starts = columns[0];
+        this.ends = columns[1];
+        this.maxEnd = columns[2];
+        this.geneNames = columns[3];
+        this.types = columns[4];
+        this.functions = columns[5];
+        this.diseaseAssociations = columns[6];
+        this.applications = columns[7];
+        this.ids = columns[8];
+        this.strings = strings;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int start(int row) {
+        return starts.get(row);
+    }
+
+    @Override
+    public int end(int row) {
+        return ends.get(row);
+    }
+
+    @Override
+    public int id(int row) {
+        return ids.get(row);
+    }
+
+    @Override
+    public String geneName(int row) {
+        return strings.get(geneNames.get(row));
+    }
+
+    @Override
+    public int typeCode(int row) {
+        return strings.code(types.get(row));
+    }
+
+    @Override
+    public int diseaseCode(int row) {
+        return diseaseAssociations.get(row);
+    }
+
+    @Override
+    public TextDictionary texts() {
+        return strings.texts;
+    }
+
+    @Override
+    protected int maxEnd(int row) {
+        return maxEnd.get(row);
+    }
+
+    @Override
+    public IntervalNode node(int row) {
+        IntervalNode node = new IntervalNode(starts.get(row), ends.get(row), strings.get(geneNames.get(row)),
+                chromosome, strings.get(types.get(row)), strings.get(functions.get(row)),
+                strings.get(diseaseAssociations.get(row)), strings.get(applications.get(row)));
+        node.id = ids.get(row);
+        return node;
+    }
+
+    /**
+     * Read-only view of the index file's string pool: an offsets column
+     * followed by UTF-8 bytes. The leading symbol strings are decoded once:
+     * filter symbols (chromosome, type) into SymbolTable codes, the free-text
+     * ones into a TextDictionary private to the pool, indexed by string id.
+     * Metadata columns thus resolve to shared instances without adding
+     * function, disease or applications text to the process-wide table, and
+     * only gene names are decoded per row.
+     */
+    static class StringPool {
+
+        private final IntBuffer offsets;
+        private final ByteBuffer bytes;
+        private final String[] symbols;
+        private final int[] codes;
+        private final TextDictionary texts;
+
+        StringPool(IntBuffer offsets, ByteBuffer bytes, int symbolCount, int filterSymbolCount) {
+            this.offsets = offsets;
+            this.bytes = bytes;
+            this.symbols = new String[symbolCount];
+            this.codes = new int[filterSymbolCount];
+            for (int id = 0; id < symbolCount; id++) {
+                symbols[id] = decode(id);
+                if (id < filterSymbolCount) {
+                    codes[id] = SymbolTable.SHARED.code(symbols[id]);
+                    symbols[id] = SymbolTable.SHARED.symbol(codes[id]);
+                }
+            }
+            this.texts = new TextDictionary(symbols);
+        }
+
+        /** SymbolTable code of a filter symbol string id */
+        int code(int id) {
+            return codes[id];
+        }
+
+        String get(int id) {
+            return id < symbols.length ? symbols[id] : decode(id);
+        }
+
+        private String decode(int id) {
+            int from = offsets.get(id);
+            int length = offsets.get(id + 1) - from;
+            byte[] utf8 = new byte[length];
+            bytes.get(from, utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package genome;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntPredicate;
+
+/**
+ * MaskedIntervalIndex is a frozen partition minus the rows removed from it
+ * since it was frozen.
+ *
+ * Frozen rows live in sorted arrays (or a mapped file) that cannot drop a
+ * row without being rebuilt. Instead, removing a row wraps the partition in a
+ * view that shares all of its columns and caches (type masks, OverlapCounter,
+ * StabIndex) and records the row in a persistent bitmap of tombstones.
+ * Searches run on the underlying partition and skip tombstoned rows; counts
+ * and summaries subtract them. maxEnd may still cover a removed row, which
+ * only costs pruning, never correctness. Row numbers are those of the
+ * underlying partition, so size() still counts removed rows.
+ *
+ * freeze() compacts the partition, dropping the tombstones.
+ *
+ * Time Complexity: O(log n) to remove a row; searches as the underlying
+ * index, plus O(d) for counts, summaries and nearest-gene queries over d
+ * removed rows
+ *
+ * @author DSA-EL Project
+ */
+public class MaskedIntervalIndex extends ImplicitIntervalIndex {
+
+    private final ImplicitIntervalIndex base;
+    private final Tombstones deleted;
+
+    private MaskedIntervalIndex(ImplicitIntervalIndex base, Tombstones deleted) {
+        this.base = base;
+        this.deleted = deleted;
+    }
+
+    /**
+     * The partition without the given row.
+     */
+    static MaskedIntervalIndex without(ImplicitIntervalIndex partition, int row) {
+        if (partition instanceof MaskedIntervalIndex) {
+            MaskedIntervalIndex masked = (MaskedIntervalIndex) partition;
+            return new MaskedIntervalIndex(masked.base, masked.deleted.with(row));
+        }
+        return new MaskedIntervalIndex(partition, Tombstones.empty(partition.size()).with(row));
+    }
+
+    @Override
+    public boolean isDeleted(int row) {
+        return deleted.contains(row);
+    }
+
+    @Override
+    public int deletedCount() {
+        return deleted.size();
+    }
+
+    @Override
+    public int size() {
+        return base.size();
+    }
+
+    @Override
+    public int start(int row) {
+        return base.start(row);
+    }
+
+    @Override
+    public int end(int row) {
+        return base.end(row);
+    }
+
+    @Override
+    public int id(int row) {
+        return base.id(row);
+    }
+
+    @Override
+    public String geneName(int row) {
+        return base.geneName(row);
+    }
+
+    @Override
+    public int typeCode(int row) {
+        return base.typeCode(row);
+    }
+
+    @Override
+    public int diseaseCode(int row) {
+        return base.diseaseCode(row);
+    }
+
+    @Override
+    public TextDictionary texts() {
+        return base.texts();
+    }
+
+    @Override
+    protected int maxEnd(int row) {
+        return base.maxEnd(row);
+    }
+
+    @Override
+    public IntervalNode node(int row) {
+        return base.node(row);
+    }
+
+    @Override
+    public boolean overlapSearch(int queryStart, int queryEnd, int fromRow, GeneFilter filter,
+            IntPredicate visitor, SearchStats stats) {
+        return base.overlapSearch(queryStart, queryEnd, fromRow, filter,
+                row -> deleted.contains(row) || visitor.test(row), stats);
+    }
+
+    @Override
+    public void stab(int position, IntConsumer visitor) {
+        base.stab(position, row -> {
+            if (!deleted.contains(row)) {
+                visitor.accept(row);
+            }
+        });
+    }
+
+    @Override
+    public boolean buildStabIndex(int maxEntriesPerRow) {
+        return base.buildStabIndex(maxEntriesPerRow);
+    }
+
+    @Override
+    public int rowOf(int start, int id) {
+        int row = base.rowOf(start, id);
+        return row >= 0 && deleted.contains(row) ? -1 : row;
+    }
+
+    @Override
+    public long countOverlaps(int queryStart, int queryEnd) {
+        long[] removed = new long[1];
+        deleted.forEach(row -> {
+            if (base.start(row) <= queryEnd && base.end(row) >= queryStart) {
+                removed[0]++;
+            }
+        });
+        return base.countOverlaps(queryStart, queryEnd) - removed[0];
+    }
+
+    @Override
+    public void summarize(int queryStart, int queryEnd, OverlapSummary summary) {
+        base.summarize(queryStart, queryEnd, summary);
+        deleted.forEach(row -> {
+            if (base.start(row) <= queryEnd && base.end(row) >= queryStart) {
+                summary.add(base.type(row), -1,
+                        -(Math.min(queryEnd, base.end(row)) - Math.max(queryStart, base.start(row)) + 1L));
+            }
+        });
+    }
+
+    @Override
+    public List<IntervalNode> nearestUpstream(int position, int k) {
+        // Ask for enough extra genes to make up for removed ones, then drop those
+        return live(base.nearestUpstream(position, k + deleted.size()), k);
+    }
+
+    @Override
+    public List<IntervalNode> nearestDownstream(int position, int k) {
+        return live(base.nearestDownstream(position, k + deleted.size()), k);
+    }
+
+    private List<IntervalNode> live(List<IntervalNode> genes, int k) {
+        List<IntervalNode> result = new ArrayList<>(Math.min(k, genes.size()));
+        for (IntervalNode gene : genes) {
+            if (result.size() == k) {
+                break;
+            }
+            if (!deleted.contains(base.rowOf(gene.start, gene.id))) {
+                result.add(gene);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<IntervalNode> rows() {
+        int n = size();
+        List<IntervalNode> result = new ArrayList<>(n - deleted.size());
+        for (int row = 0; row < n; row++) {
+            if (!deleted.contains(row)) {
+                result.add(node(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Persistent set of row numbers: a bitmap split into 4096-row leaves
+     * under 64-way inner nodes. Adding a row copies one leaf and the inner
+     * nodes above it, O(log n), and leaves every earlier set untouched.
+     */
+    private static final class Tombstones {
+        private static final int LEAF_SHIFT = 12;
+        private static final int FANOUT_SHIFT = 6;
+
+        /** A long[64] leaf, an Object[64] inner node, or null when empty */
+        private final Object root;
+        /** log2 of the rows the root covers */
+        private final int shift;
+        private final int size;
+
+        private Tombstones(Object root, int shift, int size) {
+            this.root = root;
+            this.shift = shift;
+            this.size = size;
+        }
+
+        /** An empty set for rows 0 to capacity - 1 */
+        static Tombstones empty(int capacity) {
+            int shift = LEAF_SHIFT;
+            while ((1L << shift) < capacity) {
+                shift += FANOUT_SHIFT;
+            }
+            return new Tombstones(null, shift, 0);
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean contains(int row) {
+            Object node = root;
+            for (int s = shift; s > LEAF_SHIFT && node != null; s -= FANOUT_SHIFT) {
+                node = ((Object[]) node)[(row >>> (s - FANOUT_SHIFT)) & 63];
+            }
+            return node != null && (((long[]) node)[(row >>> 6) & 63] & (1L << row)) != 0;
+        }
+
+        Tombstones with(int row) {
+            return contains(row) ? this : new Tombstones(with(root, shift, row), shift, size + 1);
+        }
+
+        private static Object with(Object node, int shift, int row) {
+            if (shift == LEAF_SHIFT) {
+                long[] words = node == null ? new long[64] : ((long[]) node).clone();
+                words[(row >>> 6) & 63] |= 1L << row;
+                return words;
+            }
+            Object[] children = node == null ? new Object[64] : ((Object[]) node).clone();
+            int child = (row >>> (shift - FANOUT_SHIFT)) & 63;
+            children[child] = with(children[child], shift - FANOUT_SHIFT, row);
+            return children;
+        }
+
+        /** Visit every row in the set in ascending order */
+        void forEach(IntConsumer visitor) {
+            forEach(root, shift, 0, visitor);
+        }
+
+        private static void forEach(Object node, int shift, long first, IntConsumer visitor) {
+            if (node == null) {
+                return;
+            }
+            if (shift == LEAF_SHIFT) {
+                long[] words = (long[]) node;
+                for (int w = 0; w < words.length; w++) {
+                    for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                        visitor.accept((int) (first + (w << 6) + Long.numberOfTrailingZeros(bits)));
+                    }
+                }
+                return;
+            }
+            Object[] children = (Object[]) node;
+            for (int i = 0; i < children.length; i++) {
+                forEach(children[i], shift - FANOUT_SHIFT, first + ((long) i << (shift - FANOUT_SHIFT)), visitor);
+            }
+        }
+    }
+}
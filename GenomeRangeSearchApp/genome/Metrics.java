@@ -0,0 +1,337 @@
+package genome;
+
+import com.sun.net.httpserver.Filter;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics collects process-wide counters and histograms and renders them in
+ * the Prometheus text exposition format.
+ *
+ * Recording is lock-free and allocation-free: request latencies and per-search
+ * work go into Histograms (one atomic increment each) and LongAdders. Index
+ * shape (tree sizes and heights) is not tracked on the write path at all; it
+ * is read from the current version when /metrics is scraped.
+ *
+ * Search counters come from both engines. GenomeIndex records every overlap
+ * search of one partition (an IntervalTree or an ImplicitIntervalIndex): the
+ * nodes the walk visited (collected in a SearchStats), the live genes it
+ * reported and the partition size, so
+ * nodes_visited / hits shows how much work a hit costs and the pruned share
+ * (size - visited) shows how much of each partition maxEnd and type masks let
+ * the walk skip. A degenerate tree or a pathological query pattern shows up
+ * as visited climbing towards size.
+ *
+ * @author DSA-EL Project
+ */
+public final class Metrics {
+
+    /** Upper bounds of the exported latency buckets, in seconds */
+    private static final double[] LATENCY_BOUNDS = { 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025,
+            0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10 };
+    /** Upper bounds of the exported nodes-visited buckets */
+    private static final double[] VISITED_BOUNDS = { 1, 4, 16, 64, 256, 1024, 4096, 16384, 65536, 262144,
+            1048576 };
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private static final Map<String, Histogram> LATENCY = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> RESPONSES = new ConcurrentHashMap<>();
+
+    private static final LongAdder SEARCHES = new LongAdder();
+    private static final LongAdder NODES_VISITED = new LongAdder();
+    private static final LongAdder NODES_PRUNED = new LongAdder();
+    private static final LongAdder HITS = new LongAdder();
+    private static final Histogram VISITED_PER_SEARCH = new Histogram();
+
+    private Metrics() {
+    }
+
+    /**
+     * Log-linear histogram in the style of HdrHistogram: values below 8 get
+     * their own bucket, and every power-of-two range above is split into 8
+     * equal sub-buckets, so any value is known to within 12.5% across the
+     * whole long range in under 500 buckets.
+     */
+    public static final class Histogram {
+        private static final int SUB_BITS = 3;
+        private static final int SUB_BUCKETS = 1 << SUB_BITS;
+        private static final int BUCKETS = SUB_BUCKETS + (64 - SUB_BITS) * SUB_BUCKETS;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final LongAdder sum = new LongAdder();
+
+        public void record(long value) {
+            value = Math.max(0, value);
+            counts.incrementAndGet(bucket(value));
+            sum.add(value);
+        }
+
+        static int bucket(long value) {
+            if (value < SUB_BUCKETS) {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS
+                    + (int) ((value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1));
+        }
+
+        /** Smallest value that falls in the bucket */
+        static long lowerBound(int bucket) {
+            if (bucket < SUB_BUCKETS) {
+                return bucket;
+            }
+            int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+            long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+            return (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        }
+
+        /** Largest value that falls in the bucket */
+        static long upperBound(int bucket) {
+            return bucket + 1 < BUCKETS ? lowerBound(bucket + 1) - 1 : Long.MAX_VALUE;
+        }
+
+        /**
+         * A consistent-enough copy of the bucket counts for one scrape.
+         */
+        long[] snapshot() {
+            long[] copy = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                copy[i] = counts.get(i);
+            }
+            return copy;
+        }
+
+        /**
+         * Upper bound of the bucket holding the value at quantile q, 0 if
+         * nothing was recorded.
+         */
+        static long quantile(long[] counts, long total, double q) {
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Filter that records the latency and status code of every exchange on
+     * a context under the given endpoint label.
+     */
+    public static Filter timer(String endpoint) {
+        Histogram histogram = LATENCY.computeIfAbsent(endpoint, e -> new Histogram());
+        return new Filter() {
+            @Override
+            public void doFilter(HttpExchange exchange, Chain chain) throws IOException {
+                long begin = System.nanoTime();
+                try {
+                    chain.doFilter(exchange);
+                } finally {
+                    histogram.record(System.nanoTime() - begin);
+                    String key = endpoint + '\t' + exchange.getResponseCode();
+                    RESPONSES.computeIfAbsent(key, k -> new LongAdder()).increment();
+                }
+            }
+
+            @Override
+            public String description() {
+                return "Records request latency for " + endpoint;
+            }
+        };
+    }
+
+    /**
+     * Record one overlap search of a partition holding size genes.
+     */
+    static void recordSearch(SearchStats stats, int size) {
+        int visited = stats.visited;
+        int hits = stats.hits;
+        SEARCHES.increment();
+        NODES_VISITED.add(visited);
+        NODES_PRUNED.add(Math.max(0, size - visited));
+        HITS.add(hits);
+        VISITED_PER_SEARCH.record(visited);
+    }
+
+    /**
+     * Write every metric, including gauges read from the index's current
+     * version, the number of requests in flight and the response cache.
+     */
+    public static void write(Writer out, GenomeIndex index, int inFlight, ResponseCache cache)
+            throws IOException {
+        out.write("# HELP genome_http_request_duration_seconds Time from request dispatch to handler return.\n");
+        out.write("# TYPE genome_http_request_duration_seconds histogram\n");
+        Map<String, long[]> snapshots = new TreeMap<>();
+        for (Map.Entry<String, Histogram> entry : new TreeMap<>(LATENCY).entrySet()) {
+            long[] counts = entry.getValue().snapshot();
+            snapshots.put(entry.getKey(), counts);
+            writeHistogram(out, "genome_http_request_duration_seconds", "endpoint=\"" + entry.getKey() + "\"",
+                    counts, entry.getValue().sum.sum() / 1e9, LATENCY_BOUNDS, 1e9);
+        }
+
+        out.write("# HELP genome_http_request_duration_quantile_seconds Latency quantiles (within 12.5%).\n");
+        out.write("# TYPE genome_http_request_duration_quantile_seconds gauge\n");
+        for (Map.Entry<String, long[]> entry : snapshots.entrySet()) {
+            long total = 0;
+            for (long count : entry.getValue()) {
+                total += count;
+            }
+            for (double q : QUANTILES) {
+                sample(out, "genome_http_request_duration_quantile_seconds", "endpoint=\"" + entry.getKey()
+                        + "\",quantile=\"" + q + "\"", Histogram.quantile(entry.getValue(), total, q) / 1e9);
+            }
+        }
+
+        out.write("# HELP genome_http_responses_total Responses by endpoint and status code.\n");
+        out.write("# TYPE genome_http_responses_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(RESPONSES).entrySet()) {
+            String[] key = entry.getKey().split("\t");
+            sample(out, "genome_http_responses_total", "endpoint=\"" + key[0] + "\",code=\"" + key[1] + "\"",
+                    entry.getValue().sum());
+        }
+
+        out.write("# HELP genome_http_requests_in_flight Requests queued or running.\n");
+        out.write("# TYPE genome_http_requests_in_flight gauge\n");
+        sample(out, "genome_http_requests_in_flight", null, inFlight);
+
+        counter(out, "genome_searches_total", "Overlap searches of one partition.", SEARCHES.sum());
+        counter(out, "genome_search_nodes_visited_total", "Tree nodes examined by overlap searches.",
+                NODES_VISITED.sum());
+        counter(out, "genome_search_nodes_pruned_total", "Partition nodes overlap searches never examined.",
+                NODES_PRUNED.sum());
+        counter(out, "genome_search_hits_total", "Genes reported by overlap searches.", HITS.sum());
+        long visited = NODES_VISITED.sum();
+        long pruned = NODES_PRUNED.sum();
+        out.write("# HELP genome_search_pruning_ratio Share of partition nodes skipped by maxEnd and type pruning.\n");
+        out.write("# TYPE genome_search_pruning_ratio gauge\n");
+        sample(out, "genome_search_pruning_ratio", null,
+                visited + pruned == 0 ? 0 : (double) pruned / (visited + pruned));
+
+        out.write("# HELP genome_search_nodes_visited Nodes examined per partition search.\n");
+        out.write("# TYPE genome_search_nodes_visited histogram\n");
+        writeHistogram(out, "genome_search_nodes_visited", null, VISITED_PER_SEARCH.snapshot(),
+                VISITED_PER_SEARCH.sum.sum(), VISITED_BOUNDS, 1);
+
+        writeIndex(out, index);
+
+        counter(out, "genome_cache_hits_total", "Search responses served from the response cache.", cache.getHits());
+        counter(out, "genome_cache_misses_total", "Search responses rendered because no cached copy existed.",
+                cache.getMisses());
+        counter(out, "genome_cache_evictions_total", "Responses evicted to stay within the cache budget.",
+                cache.getEvictions());
+        out.write("# HELP genome_cache_bytes Approximate heap held by cached responses.\n");
+        out.write("# TYPE genome_cache_bytes gauge\n");
+        sample(out, "genome_cache_bytes", null, cache.getBytes());
+        out.write("# HELP genome_cache_entries Cached responses.\n");
+        out.write("# TYPE genome_cache_entries gauge\n");
+        sample(out, "genome_cache_entries", null, cache.size());
+    }
+
+    /**
+     * Gauges describing the index's current version.
+     */
+    private static void writeIndex(Writer out, GenomeIndex index) throws IOException {
+        GenomeIndex pinned = index.snapshot();
+        out.write("# HELP genome_index_version Writes applied to the index.\n");
+        out.write("# TYPE genome_index_version counter\n");
+        sample(out, "genome_index_version", null, pinned.version());
+
+        StringBuilder frozen = new StringBuilder();
+        StringBuilder size = new StringBuilder();
+        StringBuilder height = new StringBuilder();
+        double worstRatio = 0;
+        for (String chromosome : pinned.chromosomes()) {
+            String label = "chromosome=\"" + escape(chromosome) + "\"";
+            ImplicitIntervalIndex flat = pinned.getFrozen(chromosome);
+            if (flat != null) {
+                frozen.append("genome_frozen_genes{").append(label).append("} ")
+                        .append(flat.size() - flat.deletedCount()).append('\n');
+            }
+            IntervalTree tree = pinned.getTree(chromosome);
+            if (tree != null && !tree.isEmpty()) {
+                size.append("genome_tree_size{").append(label).append("} ").append(tree.size()).append('\n');
+                height.append("genome_tree_height{").append(label).append("} ").append(tree.height()).append('\n');
+                worstRatio = Math.max(worstRatio, tree.height() / (Math.log(tree.size() + 1.0) / Math.log(2)));
+            }
+        }
+        out.write("# HELP genome_frozen_genes Genes in a chromosome's read-optimized partition.\n");
+        out.write("# TYPE genome_frozen_genes gauge\n");
+        out.write(frozen.toString());
+        out.write("# HELP genome_tree_size Genes in a chromosome's interval tree (added since the last freeze).\n");
+        out.write("# TYPE genome_tree_size gauge\n");
+        out.write(size.toString());
+        out.write("# HELP genome_tree_height Height of a chromosome's interval tree.\n");
+        out.write("# TYPE genome_tree_height gauge\n");
+        out.write(height.toString());
+        out.write("# HELP genome_tree_height_ratio_max Worst tree height over log2(size + 1); AVL stays below 1.45.\n");
+        out.write("# TYPE genome_tree_height_ratio_max gauge\n");
+        sample(out, "genome_tree_height_ratio_max", null, worstRatio);
+    }
+
+    /**
+     * Cumulative buckets at the given bounds. Bounds are in exported units;
+     * scale converts them to recorded units. A bucket counts the recorded
+     * values whose histogram bucket lies wholly below the bound.
+     */
+    private static void writeHistogram(Writer out, String name, String labels, long[] counts, double sum,
+            double[] bounds, double scale) throws IOException {
+        String prefix = labels == null ? "" : labels + ",";
+        long cumulative = 0;
+        int bucket = 0;
+        for (double bound : bounds) {
+            long limit = (long) (bound * scale);
+            while (bucket < counts.length && Histogram.upperBound(bucket) <= limit) {
+                cumulative += counts[bucket++];
+            }
+            sample(out, name + "_bucket", prefix + "le=\"" + format(bound) + "\"", cumulative);
+        }
+        long total = cumulative;
+        while (bucket < counts.length) {
+            total += counts[bucket++];
+        }
+        sample(out, name + "_bucket", prefix + "le=\"+Inf\"", total);
+        sample(out, name + "_sum", labels, sum);
+        sample(out, name + "_count", labels, total);
+    }
+
+    private static void counter(Writer out, String name, String help, long value) throws IOException {
+        out.write("# HELP " + name + " " + help + "\n");
+        out.write("# TYPE " + name + " counter\n");
+        sample(out, name, null, value);
+    }
+
+    private static void sample(Writer out, String name, String labels, double value) throws IOException {
+        out.write(name);
+        if (labels != null) {
+            out.write('{');
+            out.write(labels);
+            out.write('}');
+        }
+        out.write(' ');
+        out.write(format(value));
+        out.write('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return String.format(Locale.ROOT, "%.9g", value).replaceAll("\\.?0+(?=$|e)", "");
+    }
+
+    /** Escape a label value */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,464 @@
+package genome;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * NameIndex maps lower-cased gene names to the genes carrying them, for exact
+ * case-insensitive lookup and prefix autocomplete.
+ *
+ * Entries live in sorted runs of parallel columns: the lower-cased names
+ * packed back to back as UTF-8 (UTF-8 byte order is code point order, so
+ * prefixes are contiguous ranges), plus the chromosome code, start and id
+ * that locate each gene, i.e. 12 bytes and the name per entry. A lookup is
+ * a binary search per run.
+ *
+ * The index is immutable, like the GenomeIndex version holding it. Inserted
+ * genes form a new sorted run, and runs are merged log-structured style:
+ * each run is kept more than FANOUT times larger than the next newer one,
+ * so there are O(log n) runs and an entry is copied O(log n) times, instead
+ * of the whole index being copied per insert. Removed genes are not taken
+ * out; callers resolve every entry against the same index version and skip
+ * genes that are gone, and once stale entries reach a quarter of the index
+ * the owner rebuilds it.
+ *
+ * @author DSA-EL Project
+ */
+public final class NameIndex {
+
+    /** Size ratio kept between consecutive runs */
+    private static final int FANOUT = 4;
+
+    /** Stale entries never worth a rebuild */
+    private static final int MIN_REBUILD = 1024;
+
+    /** Locates the live gene behind an entry, or returns null if it is gone */
+    public interface Resolver {
+        IntervalNode resolve(String chromosome, int start, int id);
+    }
+
+    /** Sorted runs, largest (oldest) first */
+    private final Run[] runs;
+    private final int stale;
+
+    private NameIndex(Run[] runs, int stale) {
+        this.runs = runs;
+        this.stale = stale;
+    }
+
+    /**
+     * Index every row of the frozen partitions, keyed by chromosome, plus
+     * the given genes. Rows are read column by column, not materialized.
+     */
+    public static NameIndex build(Map<String, ImplicitIntervalIndex> frozen, Iterable<IntervalNode> genes) {
+        int rows = 0;
+        for (ImplicitIntervalIndex partition : frozen.values()) {
+            rows += partition.size() - partition.deletedCount();
+        }
+        Run.Builder builder = new Run.Builder(rows + 16, rows * 12 + 256);
+        for (Map.Entry<String, ImplicitIntervalIndex> entry : frozen.entrySet()) {
+            int chromosome = SymbolTable.SHARED.code(entry.getKey());
+            ImplicitIntervalIndex partition = entry.getValue();
+            for (int row = 0, n = partition.size(); row < n; row++) {
+                if (!partition.isDeleted(row)) {
+                    builder.add(partition.geneName(row), chromosome, partition.start(row), partition.id(row));
+                }
+            }
+        }
+        for (IntervalNode gene : genes) {
+            builder.add(gene.geneName, gene.chromosome, gene.start, gene.id);
+        }
+        return new NameIndex(new Run[] { builder.build() }, 0);
+    }
+
+    /**
+     * This index plus the given genes.
+     */
+    public NameIndex withAdded(List<IntervalNode> genes) {
+        if (genes.isEmpty()) {
+            return this;
+        }
+        Run.Builder builder = new Run.Builder();
+        for (IntervalNode gene : genes) {
+            builder.add(gene.geneName, gene.chromosome, gene.start, gene.id);
+        }
+        Run[] merged = Arrays.copyOf(runs, runs.length + 1);
+        merged[runs.length] = builder.build();
+        int count = merged.length;
+        while (count > 1 && merged[count - 2].size() <= merged[count - 1].size() * FANOUT) {
+            merged[count - 2] = Run.merge(merged[count - 2], merged[count - 1]);
+            count--;
+        }
+        return new NameIndex(Arrays.copyOf(merged, count), stale);
+    }
+
+    /**
+     * This index after count of its genes were removed.
+     */
+    public NameIndex withRemoved(int count) {
+        return new NameIndex(runs, stale + count);
+    }
+
+    /**
+     * Whether enough entries are stale that the index should be rebuilt.
+     */
+    public boolean needsRebuild() {
+        return stale > MIN_REBUILD && stale > size() / 4;
+    }
+
+    /** Entries, including stale ones */
+    public int size() {
+        int size = 0;
+        for (Run run : runs) {
+            size += run.size();
+        }
+        return size;
+    }
+
+    /**
+     * Every live gene whose name equals name, ignoring case, in index order.
+     */
+    public List<IntervalNode> lookup(String name, Resolver resolver) {
+        byte[] key = key(name);
+        List<IntervalNode> result = new ArrayList<>();
+        for (Run run : runs) {
+            for (int i = run.lowerBound(key); i < run.size() && run.compare(i, key) == 0; i++) {
+                IntervalNode gene = run.resolve(i, resolver);
+                if (gene != null) {
+                    result.add(gene);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * One live gene for each of the first limit distinct names starting with
+     * prefix, ignoring case, in name order. Genes sharing a name are skipped
+     * with one binary search per run, so the cost depends on limit, not on
+     * how common a name is.
+     */
+    public List<IntervalNode> suggest(String prefix, int limit, Resolver resolver) {
+        byte[] key = key(prefix);
+        List<IntervalNode> result = new ArrayList<>(Math.min(limit, 64));
+        int[] next = new int[runs.length];
+        for (int r = 0; r < runs.length; r++) {
+            next[r] = runs[r].lowerBound(key);
+        }
+        while (result.size() < limit) {
+            // Smallest name still matching the prefix in any run
+            int first = -1;
+            for (int r = 0; r < runs.length; r++) {
+                if (next[r] < runs[r].size() && runs[r].startsWith(next[r], key)
+                        && (first < 0 || runs[r].compare(next[r], runs[first], next[first]) < 0)) {
+                    first = r;
+                }
+            }
+            if (first < 0) {
+                break;
+            }
+            byte[] name = runs[first].key(next[first]);
+            IntervalNode gene = null;
+            for (int r = 0; r < runs.length; r++) {
+                int end = runs[r].upperBound(name);
+                for (int i = next[r]; gene == null && i < end; i++) {
+                    gene = runs[r].resolve(i, resolver);
+                }
+                next[r] = end;
+            }
+            if (gene != null) {
+                result.add(gene);
+            }
+        }
+        return result;
+    }
+
+    /** Lower-cased UTF-8 bytes of a name; ASCII names skip the intermediate String */
+    private static byte[] key(String name) {
+        if (name == null) {
+            return new byte[0];
+        }
+        byte[] key = new byte[name.length()];
+        for (int i = 0; i < key.length; i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return name.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+            }
+            key[i] = (byte) (c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c);
+        }
+        return key;
+    }
+
+    /**
+     * Entries sorted by (key, chromosome code, start, id), in columns.
+     */
+    private static final class Run {
+        private final byte[] keys;
+        private final int[] offsets;
+        private final int[] chromosomes;
+        private final int[] starts;
+        private final int[] ids;
+
+        Run(byte[] keys, int[] offsets, int[] chromosomes, int[] starts, int[] ids) {
+            this.keys = keys;
+            this.offsets = offsets;
+            this.chromosomes = chromosomes;
+            this.starts = starts;
+            this.ids = ids;
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        byte[] key(int i) {
+            return Arrays.copyOfRange(keys, offsets[i], offsets[i + 1]);
+        }
+
+        IntervalNode resolve(int i, Resolver resolver) {
+            return resolver.resolve(SymbolTable.SHARED.symbol(chromosomes[i]), starts[i], ids[i]);
+        }
+
+        /** Entry i's key against key */
+        int compare(int i, byte[] key) {
+            return Arrays.compareUnsigned(keys, offsets[i], offsets[i + 1], key, 0, key.length);
+        }
+
+        /** Entry i against entry j of other, by key and then location */
+        int compare(int i, Run other, int j) {
+            int order = Arrays.compareUnsigned(keys, offsets[i], offsets[i + 1], other.keys, other.offsets[j],
+                    other.offsets[j + 1]);
+            if (order == 0) {
+                order = Integer.compare(chromosomes[i], other.chromosomes[j]);
+            }
+            if (order == 0) {
+                order = Integer.compare(starts[i], other.starts[j]);
+            }
+            return order != 0 ? order : Integer.compare(ids[i], other.ids[j]);
+        }
+
+        boolean startsWith(int i, byte[] prefix) {
+            int from = offsets[i];
+            return offsets[i + 1] - from >= prefix.length
+                    && Arrays.equals(keys, from, from + prefix.length, prefix, 0, prefix.length);
+        }
+
+        /** First entry at or after from that sorts after entry j of other */
+        int insertionPoint(int from, Run other, int j) {
+            int lo = from;
+            int hi = size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(mid, other, j) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** First entry whose key is >= key */
+        int lowerBound(byte[] key) {
+            int lo = 0;
+            int hi = size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(mid, key) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** First entry whose key is > key */
+        int upperBound(byte[] key) {
+            int lo = 0;
+            int hi = size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(mid, key) <= 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /**
+         * Merge two runs in one pass. A run much smaller than the other is
+         * placed by binary search, and the stretches of the larger run between
+         * its entries are block-copied, so adding a few entries to a large run
+         * costs little more than copying its arrays.
+         */
+        static Run merge(Run a, Run b) {
+            if (b.size() == 0) {
+                return a;
+            }
+            if (a.size() == 0) {
+                return b;
+            }
+            if (a.size() < b.size()) {
+                Run swap = a;
+                a = b;
+                b = swap;
+            }
+            Builder builder = new Builder(a.size() + b.size(), a.keys.length + b.keys.length);
+            if (b.size() < a.size() / 32) {
+                int i = 0;
+                for (int j = 0; j < b.size(); j++) {
+                    int at = a.insertionPoint(i, b, j);
+                    builder.copy(a, i, at);
+                    builder.copy(b, j);
+                    i = at;
+                }
+                builder.copy(a, i, a.size());
+                return builder.finish();
+            }
+            int i = 0;
+            int j = 0;
+            while (i < a.size() || j < b.size()) {
+                if (j == b.size() || (i < a.size() && a.compare(i, b, j) <= 0)) {
+                    builder.copy(a, i++);
+                } else {
+                    builder.copy(b, j++);
+                }
+            }
+            return builder.finish();
+        }
+
+        /**
+         * Appends entries to growing columns; build() sorts them.
+         */
+        static final class Builder {
+            private byte[] keys;
+            private int[] offsets;
+            private int[] chromosomes;
+            private int[] starts;
+            private int[] ids;
+            private int size;
+
+            Builder() {
+                this(16, 256);
+            }
+
+            Builder(int entries, int bytes) {
+                keys = new byte[bytes];
+                offsets = new int[entries + 1];
+                chromosomes = new int[entries];
+                starts = new int[entries];
+                ids = new int[entries];
+            }
+
+            void add(String name, String chromosome, int start, int id) {
+                add(name, SymbolTable.SHARED.code(chromosome), start, id);
+            }
+
+            void add(String name, int chromosome, int start, int id) {
+                byte[] key = NameIndex.key(name);
+                append(key, 0, key.length, chromosome, start, id);
+            }
+
+            /** Append entries [from, to) of a run */
+            void copy(Run run, int from, int to) {
+                int count = to - from;
+                if (count == 0) {
+                    return;
+                }
+                ensureCapacity(count, run.offsets[to] - run.offsets[from]);
+                int shift = offsets[size] - run.offsets[from];
+                System.arraycopy(run.keys, run.offsets[from], keys, offsets[size], run.offsets[to] - run.offsets[from]);
+                for (int i = 1; i <= count; i++) {
+                    offsets[size + i] = run.offsets[from + i] + shift;
+                }
+                System.arraycopy(run.chromosomes, from, chromosomes, size, count);
+                System.arraycopy(run.starts, from, starts, size, count);
+                System.arraycopy(run.ids, from, ids, size, count);
+                size += count;
+            }
+
+            void copy(Run run, int i) {
+                append(run.keys, run.offsets[i], run.offsets[i + 1] - run.offsets[i], run.chromosomes[i],
+                        run.starts[i], run.ids[i]);
+            }
+
+            private void append(byte[] key, int from, int length, int chromosome, int start, int id) {
+                ensureCapacity(1, length);
+                int end = offsets[size];
+                System.arraycopy(key, from, keys, end, length);
+                offsets[size + 1] = end + length;
+                chromosomes[size] = chromosome;
+                starts[size] = start;
+                ids[size] = id;
+                size++;
+            }
+
+            private void ensureCapacity(int entries, int bytes) {
+                if (size + entries > ids.length) {
+                    int capacity = Math.max(Math.max(16, size + entries), size * 2);
+                    offsets = Arrays.copyOf(offsets, capacity + 1);
+                    chromosomes = Arrays.copyOf(chromosomes, capacity);
+                    starts = Arrays.copyOf(starts, capacity);
+                    ids = Arrays.copyOf(ids, capacity);
+                }
+                int end = offsets[size];
+                if (end + bytes > keys.length) {
+                    long grown = Math.max((long) keys.length * 2, (long) end + bytes);
+                    if (grown > Integer.MAX_VALUE - 8) {
+                        throw new IllegalArgumentException("Gene names exceed 2 GB in one name index");
+                    }
+                    keys = Arrays.copyOf(keys, (int) grown);
+                }
+            }
+
+            /** The entries as appended, which must already be sorted */
+            Run finish() {
+                return new Run(Arrays.copyOf(keys, offsets[size]), Arrays.copyOf(offsets, size + 1),
+                        Arrays.copyOf(chromosomes, size), Arrays.copyOf(starts, size), Arrays.copyOf(ids, size));
+            }
+
+            /** The entries in sorted order */
+            Run build() {
+                Run unsorted = finish();
+                int[] order = new int[size];
+                for (int i = 0; i < size; i++) {
+                    order[i] = i;
+                }
+                sort(unsorted, order, new int[size], 0, size);
+                Builder sorted = new Builder(size, unsorted.keys.length);
+                for (int i : order) {
+                    sorted.copy(unsorted, i);
+                }
+                return sorted.finish();
+            }
+
+            /** Merge sort of entry numbers, without boxing them */
+            private static void sort(Run run, int[] order, int[] scratch, int from, int to) {
+                if (to - from < 2) {
+                    return;
+                }
+                int mid = (from + to) >>> 1;
+                sort(run, order, scratch, from, mid);
+                sort(run, order, scratch, mid, to);
+                if (run.compare(order[mid - 1], run, order[mid]) <= 0) {
+                    return;
+                }
+                System.arraycopy(order, from, scratch, from, to - from);
+                for (int i = from, a = from, b = mid; i < to; i++) {
+                    if (b == to || (a < mid && run.compare(scratch[a], run, scratch[b]) <= 0)) {
+                        order[i] = scratch[a++];
+                    } else {
+                        order[i] = scratch[b++];
+                    }
+                }
+            }
+        }
+    }
+}
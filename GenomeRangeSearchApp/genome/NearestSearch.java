@@ -0,0 +1,160 @@
+package genome;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * NearestSearch finds the genes closest to a position, for when a window
+ * overlaps nothing and the caller wants the neighbourhood instead.
+ *
+ * Distances follow bedtools closest -D ref: 0 for a gene covering the
+ * position, negative for genes ending before it (upstream, lower coordinates)
+ * and positive for genes starting after it (downstream). Strand is not
+ * recorded, so upstream always means towards lower coordinates.
+ *
+ * Each partition contributes at most k candidates per side: downstream genes
+ * are the next k by start, upstream genes come from a best-first search over
+ * maxEnd (see IntervalTree.nearestUpstream). The candidates are merged by
+ * absolute distance.
+ *
+ * Time Complexity: O(k log n) per chromosome in the typical case
+ *
+ * @author DSA-EL Project
+ */
+public class NearestSearch {
+
+    /**
+     * Which side of the position to search.
+     */
+    public enum Direction {
+        /** Both sides, including genes covering the position */
+        ANY,
+        /** Genes ending before the position */
+        UPSTREAM,
+        /** Genes starting after the position */
+        DOWNSTREAM;
+
+        /**
+         * Parse a case-insensitive direction name.
+         *
+         * @throws IllegalArgumentException if the name is unknown
+         */
+        public static Direction parse(String name) {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    /**
+     * A gene and its signed distance from the query position.
+     */
+    public static final class Neighbor {
+        private final IntervalNode gene;
+        private final int distance;
+
+        Neighbor(IntervalNode gene, int distance) {
+            this.gene = gene;
+            this.distance = distance;
+        }
+
+        public IntervalNode getGene() {
+            return gene;
+        }
+
+        /**
+         * 0 if the gene covers the position, negative upstream, positive
+         * downstream.
+         */
+        public int getDistance() {
+            return distance;
+        }
+    }
+
+    private static final Comparator<Neighbor> BY_DISTANCE = Comparator
+            .comparingInt((Neighbor n) -> Math.abs(n.distance))
+            .thenComparing(n -> n.gene.chromosome)
+            .thenComparingInt(n -> n.gene.start)
+            .thenComparingInt(n -> n.gene.id);
+
+    private NearestSearch() {
+    }
+
+    /**
+     * The k genes closest to position on the chromosome (every chromosome if
+     * null or empty) in the given direction, nearest first.
+     */
+    public static List<Neighbor> nearest(GenomeIndex index, String chromosome, int position, int k,
+            Direction direction) {
+        return nearest(index, chromosome == null || chromosome.isEmpty() ? null : Collections.singleton(chromosome),
+                position, k, direction);
+    }
+
+    /**
+     * The k genes closest to position on any of the given chromosomes (every
+     * chromosome if null) in the given direction, nearest first.
+     */
+    public static List<Neighbor> nearest(GenomeIndex index, Set<String> chromosomes, int position, int k,
+            Direction direction) {
+        if (k <= 0) {
+            return new ArrayList<>();
+        }
+        GenomeIndex snapshot = index.snapshot();
+        Set<String> names = chromosomes == null ? snapshot.chromosomes() : chromosomes;
+
+        List<Neighbor> candidates = new ArrayList<>();
+        for (String name : names) {
+            ImplicitIntervalIndex frozen = snapshot.getFrozen(name);
+            IntervalTree tree = snapshot.getTree(name);
+
+            if (direction == Direction.ANY) {
+                if (frozen != null) {
+                    List<IntervalNode> covering = new ArrayList<>();
+                    frozen.overlapSearch(position, position, 0, row -> {
+                        covering.add(frozen.node(row));
+                        return covering.size() < k;
+                    });
+                    addAll(candidates, covering, position);
+                }
+                if (tree != null) {
+                    List<IntervalNode> covering = new ArrayList<>();
+                    tree.overlapSearchAfter(position, position, Integer.MIN_VALUE, Integer.MIN_VALUE, node -> {
+                        covering.add(node);
+                        return covering.size() < k;
+                    });
+                    addAll(candidates, covering, position);
+                }
+            }
+            if (direction != Direction.DOWNSTREAM) {
+                if (frozen != null) {
+                    addAll(candidates, frozen.nearestUpstream(position, k), position);
+                }
+                if (tree != null) {
+                    addAll(candidates, tree.nearestUpstream(position, k), position);
+                }
+            }
+            if (direction != Direction.UPSTREAM) {
+                if (frozen != null) {
+                    addAll(candidates, frozen.nearestDownstream(position, k), position);
+                }
+                if (tree != null) {
+                    addAll(candidates, tree.nearestDownstream(position, k), position);
+                }
+            }
+        }
+
+        candidates.sort(BY_DISTANCE);
+        return candidates.size() > k ? new ArrayList<>(candidates.subList(0, k)) : candidates;
+    }
+
+    private static void addAll(List<Neighbor> candidates, List<IntervalNode> genes, int position) {
+        for (IntervalNode gene : genes) {
+            int distance = gene.end < position ? gene.end - position
+                    : gene.start > position ? gene.start - position
+                    : 0;
+            candidates.add(new Neighbor(gene, distance));
+        }
+    }
+}
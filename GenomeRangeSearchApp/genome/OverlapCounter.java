@@ -0,0 +1,167 @@
+package genome;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * OverlapCounter answers count and overlap-length queries over a frozen
+ * partition with binary searches instead of visiting the hits.
+ *
+ * For every gene type it keeps the starts and the ends in sorted order, each
+ * with prefix sums. Since end >= start, a gene ending before queryStart also
+ * starts before it, so
+ *
+ *   overlapping = #(start <= queryEnd) - #(end < queryStart)
+ *
+ * and the summed overlap length min(end, queryEnd) - max(start, queryStart) + 1
+ * splits the same way into ranges of the sorted starts and ends.
+ *
+ * Time Complexity: O(n log n) to build, O(t log n) per query for t gene types
+ *
+ * @author DSA-EL Project
+ */
+class OverlapCounter {
+
+    private final String[] types;
+    private final int[][] starts;
+    private final long[][] startSums;
+    private final int[][] ends;
+    private final long[][] endSums;
+
+    private OverlapCounter(String[] types, int[][] starts, int[][] ends) {
+        this.types = types;
+        this.starts = starts;
+        this.ends = ends;
+        this.startSums = new long[types.length][];
+        this.endSums = new long[types.length][];
+        for (int t = 0; t < types.length; t++) {
+            startSums[t] = prefixSums(starts[t]);
+            endSums[t] = prefixSums(ends[t]);
+        }
+    }
+
+    /**
+     * Build the per-type sorted columns of a partition.
+     */
+    static OverlapCounter build(ImplicitIntervalIndex index) {
+        int n = index.size();
+        int[] typeOf = new int[n];
+        int maxCode = 0;
+        for (int row = 0; row < n; row++) {
+            typeOf[row] = index.typeCode(row);
+            maxCode = Math.max(maxCode, typeOf[row]);
+        }
+
+        // Renumber the type codes present densely, in order of first appearance
+        int[] dense = new int[maxCode + 1];
+        Arrays.fill(dense, -1);
+        List<String> names = new ArrayList<>();
+        int[] counts = new int[8];
+        for (int row = 0; row < n; row++) {
+            int code = typeOf[row];
+            if (dense[code] < 0) {
+                dense[code] = names.size();
+                names.add(SymbolTable.SHARED.symbol(code));
+                if (dense[code] == counts.length) {
+                    counts = Arrays.copyOf(counts, counts.length * 2);
+                }
+            }
+            typeOf[row] = dense[code];
+            counts[typeOf[row]]++;
+        }
+
+        int[][] starts = new int[names.size()][];
+        int[][] ends = new int[names.size()][];
+        for (int t = 0; t < names.size(); t++) {
+            starts[t] = new int[counts[t]];
+            ends[t] = new int[counts[t]];
+        }
+        int[] fill = new int[names.size()];
+        for (int row = 0; row < n; row++) {
+            int t = typeOf[row];
+            // Rows are in start order, so each type's starts come out sorted
+            starts[t][fill[t]] = index.start(row);
+            ends[t][fill[t]++] = index.end(row);
+        }
+        for (int[] column : ends) {
+            Arrays.sort(column);
+        }
+        return new OverlapCounter(names.toArray(new String[0]), starts, ends);
+    }
+
+    private static long[] prefixSums(int[] values) {
+        long[] sums = new long[values.length + 1];
+        for (int i = 0; i < values.length; i++) {
+            sums[i + 1] = sums[i] + values[i];
+        }
+        return sums;
+    }
+
+    /**
+     * Number of genes overlapping [queryStart, queryEnd].
+     */
+    long count(int queryStart, int queryEnd) {
+        long count = 0;
+        for (int t = 0; t < types.length; t++) {
+            count += upperBound(starts[t], queryEnd) - lowerBound(ends[t], queryStart);
+        }
+        return count;
+    }
+
+    /**
+     * Add per-type counts and overlap bases for [queryStart, queryEnd].
+     */
+    void summarize(int queryStart, int queryEnd, OverlapSummary summary) {
+        for (int t = 0; t < types.length; t++) {
+            int[] s = starts[t];
+            int[] e = ends[t];
+            int startsUpToEnd = upperBound(s, queryEnd);
+            int startsBeforeStart = lowerBound(s, queryStart);
+            int endsBeforeStart = lowerBound(e, queryStart);
+            int endsBeforeEnd = lowerBound(e, queryEnd);
+            long count = startsUpToEnd - endsBeforeStart;
+            if (count == 0) {
+                continue;
+            }
+
+            // sum of min(end, queryEnd): ends inside [queryStart, queryEnd) plus queryEnd for the rest
+            long clippedEnds = endSums[t][endsBeforeEnd] - endSums[t][endsBeforeStart]
+                    + (long) queryEnd * (startsUpToEnd - endsBeforeEnd);
+            // sum of max(start, queryStart): starts inside [queryStart, queryEnd] plus queryStart for the rest
+            long clippedStarts = startSums[t][startsUpToEnd] - startSums[t][startsBeforeStart]
+                    + (long) queryStart * (startsBeforeStart - endsBeforeStart);
+            summary.add(types[t], count, clippedEnds - clippedStarts + count);
+        }
+    }
+
+    /** Number of values <= key */
+    private static int upperBound(int[] values, int key) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] <= key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /** Number of values < key */
+    private static int lowerBound(int[] values, int key) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,67 @@
+package genome;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * OverlapSummary aggregates the genes overlapping a window: how many there
+ * are and how many bases of the window they cover, in total and per gene
+ * type.
+ *
+ * Bases are summed per gene (the overlap length /search reports), so a base
+ * covered by two genes counts twice.
+ *
+ * @author DSA-EL Project
+ */
+public class OverlapSummary {
+
+    /**
+     * Count and overlap bases of one gene type.
+     */
+    public static final class Totals {
+        long count;
+        long bases;
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getBases() {
+            return bases;
+        }
+    }
+
+    private final Map<String, Totals> types = new TreeMap<>();
+    private long count;
+    private long bases;
+
+    /**
+     * Add count genes of a type overlapping the window by bases in total.
+     */
+    public void add(String type, long count, long bases) {
+        if (count == 0) {
+            return;
+        }
+        Totals totals = types.computeIfAbsent(type == null ? "" : type, t -> new Totals());
+        totals.count += count;
+        totals.bases += bases;
+        this.count += count;
+        this.bases += bases;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getBases() {
+        return bases;
+    }
+
+    /**
+     * Per-type totals, sorted by type name. Types without overlapping genes
+     * are left out.
+     */
+    public Map<String, Totals> getTypes() {
+        return types;
+    }
+}
@@ -0,0 +1,206 @@
+package genome;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ResponseCache keeps encoded search responses for hot query windows, so a
+ * repeated query costs one map lookup and one buffer write instead of an
+ * overlap search plus HTML or JSON rendering.
+ *
+ * Entries are keyed by everything that shapes a response (format,
+ * chromosome, window, filters, page) and evicted least recently used once
+ * their bodies and bookkeeping exceed the byte budget. Every cached body was
+ * rendered from one pinned index version, and the cache only holds entries
+ * of the newest version it has seen: the first lookup or store at a newer
+ * version drops everything, so a write to the index (add, bulk add, remove,
+ * update) invalidates exactly the responses it could have changed without
+ * the writers knowing about the cache.
+ *
+ * Lookups take the cache's lock; the critical section is a hash lookup and a
+ * relink of the LRU list, much shorter than the search it saves.
+ *
+ * @author DSA-EL Project
+ */
+public class ResponseCache {
+
+    /** Approximate heap cost of an entry beyond its body and key */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /** Share of the budget a single response may take */
+    private static final int MAX_ENTRY_SHARE = 8;
+
+    /**
+     * An encoded response body with the headers needed to replay it.
+     */
+    public static final class Response {
+        private final String contentType;
+        private final String nextCursor;
+        private final byte[] body;
+
+        public Response(String contentType, String nextCursor, byte[] body) {
+            this.contentType = contentType;
+            this.nextCursor = nextCursor;
+            this.body = body;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        /** Value of the X-Next-Cursor header, or null */
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        private long weight(String key) {
+            return body.length + 2L * key.length() + ENTRY_OVERHEAD;
+        }
+    }
+
+    private final long maxBytes;
+    private final Map<String, Response> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private long version = -1;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * A cache holding at most maxBytes of responses; 0 disables caching.
+     */
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * Largest body worth capturing for the cache.
+     */
+    public int maxEntryBytes() {
+        return (int) Math.min(Integer.MAX_VALUE, maxBytes / MAX_ENTRY_SHARE);
+    }
+
+    /**
+     * The response cached for key at this index version, or null.
+     */
+    public synchronized Response get(String key, long indexVersion) {
+        advance(indexVersion);
+        Response response = indexVersion == version ? entries.get(key) : null;
+        if (response == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return response;
+    }
+
+    /**
+     * Cache a response rendered from the given index version. Responses of
+     * an older version than the cache holds, or over the entry limit, are
+     * ignored.
+     */
+    public synchronized void put(String key, long indexVersion, Response response) {
+        advance(indexVersion);
+        if (indexVersion != version || response.body.length > maxEntryBytes()) {
+            return;
+        }
+        Response previous = entries.put(key, response);
+        if (previous != null) {
+            bytes -= previous.weight(key);
+        }
+        bytes += response.weight(key);
+
+        Iterator<Map.Entry<String, Response>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Response> entry = eldest.next();
+            bytes -= entry.getValue().weight(entry.getKey());
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /** Drop every entry once the index has moved past the cached version */
+    private void advance(long indexVersion) {
+        if (indexVersion > version) {
+            entries.clear();
+            bytes = 0;
+            version = indexVersion;
+        }
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Stream that passes everything through and keeps a copy of the first
+     * limit bytes, so a streamed response can be cached when it turns out
+     * to be small enough.
+     */
+    public static final class Capture extends FilterOutputStream {
+        private final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        private final int limit;
+        private boolean overflowed;
+
+        public Capture(OutputStream out, int limit) {
+            super(out);
+            this.limit = limit;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            if (room(1)) {
+                copy.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            if (room(len)) {
+                copy.write(b, off, len);
+            }
+        }
+
+        private boolean room(int len) {
+            if (!overflowed && copy.size() + len > limit) {
+                overflowed = true;
+                copy.reset();
+            }
+            return !overflowed;
+        }
+
+        /** Everything written, or null if it exceeded the limit */
+        public byte[] toByteArray() {
+            return overflowed ? null : copy.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package genome;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * SearchPage is one page of a paginated overlap search: at most limit genes in
+ * (chromosome, start, id) order, plus the cursor for the next page (null on
+ * the last page).
+ *
+ * @author DSA-EL Project
+ */
+public class SearchPage {
+
+    private final List<IntervalNode> genes;
+    private final Cursor next;
+
+    public SearchPage(List<IntervalNode> genes, Cursor next) {
+        this.genes = genes;
+        this.next = next;
+    }
+
+    public List<IntervalNode> getGenes() {
+        return genes;
+    }
+
+    /**
+     * Cursor for the following page, or null if this is the last one.
+     */
+    public Cursor getNext() {
+        return next;
+    }
+
+    /**
+     * Position of the last gene returned: the next page starts after
+     * (chromosome, start, id). Clients see it as an opaque URL-safe token.
+     */
+    public static final class Cursor {
+
+        final String chromosome;
+        final int start;
+        final int id;
+
+        public Cursor(String chromosome, int start, int id) {
+            this.chromosome = chromosome;
+            this.start = start;
+            this.id = id;
+        }
+
+        /**
+         * Encode as an opaque token for a query string.
+         */
+        public String encode() {
+            String value = start + ":" + id + ":" + chromosome;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * Decode a token produced by encode().
+         *
+         * @throws IllegalArgumentException if the token is malformed
+         */
+        public static Cursor parse(String token) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                String[] parts = value.split(":", 3);
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Malformed cursor");
+                }
+                return new Cursor(parts[2], Integer.parseInt(parts[0]), Integer.parseInt(parts[1]));
+            } catch (IllegalArgumentException e) {
+                // Covers bad Base64 and NumberFormatException
+                throw new IllegalArgumentException("Malformed cursor", e);
+            }
+        }
+    }
+}
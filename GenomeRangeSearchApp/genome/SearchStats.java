@@ -0,0 +1,29 @@
+package genome;
+
+/**
+ * SearchStats collects the work of one overlap search of a partition.
+ *
+ * The index structures only add the nodes or rows they visit; the caller
+ * counts the hits it actually hands on, so rows a MaskedIntervalIndex hides
+ * are never counted, and decides whether to report the search to Metrics.
+ * IntervalTree and ImplicitIntervalIndex thus stay free of process-wide
+ * state, and searches that pass no SearchStats (benchmarks, joins, nearest
+ * gene queries) do no bookkeeping at all.
+ *
+ * @author DSA-EL Project
+ */
+public final class SearchStats {
+
+    int visited;
+    int hits;
+
+    /** Nodes or rows the search examined */
+    public int getVisited() {
+        return visited;
+    }
+
+    /** Genes the caller reported */
+    public int getHits() {
+        return hits;
+    }
+}
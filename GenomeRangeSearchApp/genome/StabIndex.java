@@ -0,0 +1,170 @@
+package genome;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * StabIndex answers point (stabbing) queries over a frozen partition from
+ * precomputed hit lists.
+ *
+ * The starts and ends of all intervals cut the coordinate axis into
+ * elementary segments; every position inside one segment is covered by the
+ * same set of intervals. The segments' lower bounds are kept in a sorted
+ * int[], and each segment's covering rows are stored contiguously in one
+ * shared int[] at a precomputed offset. A point query is a binary search over
+ * the bounds followed by a slice of the hit array, with no tree walk at all.
+ *
+ * The hit array holds one entry per (segment, covering interval) pair, which
+ * grows with coverage depth, so build() gives up when it would exceed a
+ * budget and callers keep using the regular overlap search.
+ *
+ * Time Complexity: O(n log n + h) to build for h hit entries, O(log n + k)
+ * per query with a contiguous copy of the k hits
+ *
+ * @author DSA-EL Project
+ */
+public class StabIndex {
+
+    /** Segment i covers [bounds[i], bounds[i + 1] - 1]; the last one is always empty */
+    private final int[] bounds;
+
+    /** Hits of segment i are rows[offsets[i]] up to rows[offsets[i + 1]] (exclusive) */
+    private final int[] offsets;
+    private final int[] rows;
+
+    private StabIndex(int[] bounds, int[] offsets, int[] rows) {
+        this.bounds = bounds;
+        this.offsets = offsets;
+        this.rows = rows;
+    }
+
+    /**
+     * Build the segment index of a partition, or return null if it would need
+     * more than maxEntries hit entries.
+     */
+    public static StabIndex build(ImplicitIntervalIndex partition, long maxEntries) {
+        int n = partition.size();
+
+        // Coverage changes at each start and just past each end
+        int[] starts = new int[n];
+        int[] afterEnds = new int[n];
+        int afterCount = 0;
+        for (int row = 0; row < n; row++) {
+            starts[row] = partition.start(row);
+            if (partition.end(row) != Integer.MAX_VALUE) {
+                afterEnds[afterCount++] = partition.end(row) + 1;
+            }
+        }
+        afterEnds = Arrays.copyOf(afterEnds, afterCount);
+        Arrays.sort(afterEnds);
+        int[] bounds = mergeDistinct(starts, afterEnds);
+
+        // Size the hit array first: depth at a bound = starts <= bound - ends before it
+        int segments = bounds.length;
+        int[] offsets = new int[segments + 1];
+        long total = 0;
+        int startIndex = 0;
+        int endIndex = 0;
+        for (int i = 0; i < segments; i++) {
+            while (startIndex < n && starts[startIndex] <= bounds[i]) {
+                startIndex++;
+            }
+            while (endIndex < afterCount && afterEnds[endIndex] <= bounds[i]) {
+                endIndex++;
+            }
+            total += startIndex - endIndex;
+            if (total > maxEntries || total > Integer.MAX_VALUE - 8) {
+                return null;
+            }
+            offsets[i + 1] = (int) total;
+        }
+
+        // Sweep the segments, keeping the covering rows in row (start) order
+        int[] rows = new int[(int) total];
+        int[] active = new int[16];
+        int activeSize = 0;
+        int next = 0;
+        for (int i = 0; i < segments; i++) {
+            int bound = bounds[i];
+            int kept = 0;
+            for (int a = 0; a < activeSize; a++) {
+                if (partition.end(active[a]) >= bound) {
+                    active[kept++] = active[a];
+                }
+            }
+            activeSize = kept;
+            // Every start is a bound, so rows entering here start exactly at it
+            while (next < n && starts[next] <= bound) {
+                if (activeSize == active.length) {
+                    active = Arrays.copyOf(active, activeSize * 2);
+                }
+                active[activeSize++] = next++;
+            }
+            System.arraycopy(active, 0, rows, offsets[i], activeSize);
+        }
+        return new StabIndex(bounds, offsets, rows);
+    }
+
+    private static int[] mergeDistinct(int[] a, int[] b) {
+        int[] merged = new int[a.length + b.length];
+        int i = 0, j = 0, k = 0;
+        while (i < a.length || j < b.length) {
+            int value = j == b.length || (i < a.length && a[i] <= b[j]) ? a[i++] : b[j++];
+            if (k == 0 || merged[k - 1] != value) {
+                merged[k++] = value;
+            }
+        }
+        return Arrays.copyOf(merged, k);
+    }
+
+    /**
+     * Rows covering position, in ascending start order, as a fresh array.
+     */
+    public int[] stab(int position) {
+        int segment = segment(position);
+        return segment < 0 ? new int[0] : Arrays.copyOfRange(rows, offsets[segment], offsets[segment + 1]);
+    }
+
+    /**
+     * Report the rows covering position in ascending start order.
+     */
+    public void stab(int position, IntConsumer visitor) {
+        int segment = segment(position);
+        if (segment < 0) {
+            return;
+        }
+        for (int i = offsets[segment], to = offsets[segment + 1]; i < to; i++) {
+            visitor.accept(rows[i]);
+        }
+    }
+
+    /**
+     * Number of intervals covering position.
+     */
+    public int count(int position) {
+        int segment = segment(position);
+        return segment < 0 ? 0 : offsets[segment + 1] - offsets[segment];
+    }
+
+    /** Index of the last segment starting at or before position, or -1 */
+    private int segment(int position) {
+        int lo = 0;
+        int hi = bounds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (bounds[mid] <= position) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+
+    /**
+     * Number of stored hit entries.
+     */
+    public int entries() {
+        return rows.length;
+    }
+}
@@ -0,0 +1,283 @@
+package genome;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * StaticAssets serves the dashboard's files (index.html, styles.css and any
+ * other web asset next to them) without touching the disk per request.
+ *
+ * load() reads every file with a known web extension in the directory once.
+ * Files up to IN_MEMORY_LIMIT are kept in memory together with a gzip copy
+ * compressed at the highest level, used when the client accepts gzip and
+ * it is meaningfully smaller. Each asset gets a strong ETag from its CRC32
+ * and length (with a -gzip suffix for the compressed copy), so a matching
+ * If-None-Match is answered 304 with no body. HTML is sent with no-cache,
+ * i.e. always revalidated, since its URL never changes; other assets may be
+ * cached for maxAge seconds.
+ *
+ * Larger files are only indexed by path and streamed from a FileChannel
+ * with transferTo at request time, with an ETag from their size and
+ * modification time. Anything else, including source files and paths that
+ * try to leave the directory, is 404.
+ *
+ * @author DSA-EL Project
+ */
+public class StaticAssets {
+
+    /** Largest file kept in memory */
+    private static final int IN_MEMORY_LIMIT = 1 << 20;
+
+    /** Compressed copies must save at least this share of the bytes to be kept */
+    private static final double MIN_SAVING = 0.1;
+
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("html", "text/html; charset=UTF-8");
+        CONTENT_TYPES.put("css", "text/css; charset=UTF-8");
+        CONTENT_TYPES.put("js", "application/javascript; charset=UTF-8");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("svg", "image/svg+xml");
+        CONTENT_TYPES.put("txt", "text/plain; charset=UTF-8");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("ico", "image/x-icon");
+        CONTENT_TYPES.put("woff2", "font/woff2");
+    }
+
+    /**
+     * One servable file.
+     */
+    private static final class Asset {
+        final String contentType;
+        final String cacheControl;
+        /** File contents, or null for a file streamed from disk */
+        final byte[] identity;
+        final byte[] gzip;
+        final String etag;
+        final Path file;
+
+        Asset(String contentType, String cacheControl, byte[] identity, byte[] gzip, String etag, Path file) {
+            this.contentType = contentType;
+            this.cacheControl = cacheControl;
+            this.identity = identity;
+            this.gzip = gzip;
+            this.etag = etag;
+            this.file = file;
+        }
+    }
+
+    private final Map<String, Asset> assets = new HashMap<>();
+
+    private StaticAssets() {
+    }
+
+    /**
+     * Read the web assets in a directory (not its subdirectories). Non-HTML
+     * assets are sent with Cache-Control max-age=maxAge seconds.
+     */
+    public static StaticAssets load(Path directory, long maxAge) throws IOException {
+        StaticAssets result = new StaticAssets();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String contentType = CONTENT_TYPES.get(extension(name));
+                if (contentType == null || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                String cacheControl = contentType.startsWith("text/html") ? "no-cache"
+                        : "public, max-age=" + maxAge;
+                result.assets.put("/" + name, Files.size(file) > IN_MEMORY_LIMIT
+                        ? new Asset(contentType, cacheControl, null, null, null, file)
+                        : inMemory(file, contentType, cacheControl));
+            }
+        }
+        return result;
+    }
+
+    private static Asset inMemory(Path file, String contentType, String cacheControl) throws IOException {
+        byte[] bytes = Files.readAllBytes(file);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        String etag = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(bytes.length);
+
+        byte[] gzip = null;
+        if (compressible(contentType)) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 2);
+            try (GZIPOutputStream out = new GZIPOutputStream(compressed) {
+                {
+                    def.setLevel(Deflater.BEST_COMPRESSION);
+                }
+            }) {
+                out.write(bytes);
+            }
+            if (compressed.size() <= bytes.length * (1 - MIN_SAVING)) {
+                gzip = compressed.toByteArray();
+            }
+        }
+        return new Asset(contentType, cacheControl, bytes, gzip, etag, file);
+    }
+
+    private static boolean compressible(String contentType) {
+        return contentType.startsWith("text/") || contentType.startsWith("application/")
+                || contentType.startsWith("image/svg");
+    }
+
+    private static String extension(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Whether a path ("/" meaning "/index.html") names a loaded asset.
+     */
+    public boolean contains(String path) {
+        return assets.containsKey(path.equals("/") ? "/index.html" : path);
+    }
+
+    /**
+     * Answer a GET or HEAD for a loaded asset: 304 when If-None-Match
+     * matches, otherwise 200 with the gzip copy if accepted.
+     */
+    public void send(HttpExchange exchange, String path) throws IOException {
+        Asset asset = assets.get(path.equals("/") ? "/index.html" : path);
+        if (asset.identity == null) {
+            sendFile(exchange, asset);
+            return;
+        }
+
+        Headers request = exchange.getRequestHeaders();
+        boolean gzip = asset.gzip != null && acceptsGzip(request.getFirst("Accept-Encoding"));
+        String etag = "\"" + asset.etag + (gzip ? "-gzip\"" : "\"");
+        Headers response = exchange.getResponseHeaders();
+        response.set("ETag", etag);
+        response.set("Cache-Control", asset.cacheControl);
+        if (asset.gzip != null) {
+            response.set("Vary", "Accept-Encoding");
+        }
+        if (matches(request.getFirst("If-None-Match"), asset.etag)) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] body = gzip ? asset.gzip : asset.identity;
+        response.set("Content-Type", asset.contentType);
+        if (gzip) {
+            response.set("Content-Encoding", "gzip");
+        }
+        send(exchange, body.length, os -> os.write(body));
+    }
+
+    private void sendFile(HttpExchange exchange, Asset asset) throws IOException {
+        try (FileChannel channel = FileChannel.open(asset.file, StandardOpenOption.READ)) {
+            BasicFileAttributes attributes = Files.readAttributes(asset.file, BasicFileAttributes.class);
+            String tag = Long.toHexString(attributes.lastModifiedTime().toMillis()) + "-"
+                    + Long.toHexString(attributes.size());
+            Headers response = exchange.getResponseHeaders();
+            response.set("ETag", "\"" + tag + "\"");
+            response.set("Cache-Control", asset.cacheControl);
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), tag)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+
+            long size = channel.size();
+            response.set("Content-Type", asset.contentType);
+            send(exchange, size, os -> {
+                WritableByteChannel target = Channels.newChannel(os);
+                for (long position = 0; position < size;) {
+                    position += channel.transferTo(position, size - position, target);
+                }
+            });
+        }
+    }
+
+    /** Writes a response body */
+    private interface Body {
+        void writeTo(OutputStream os) throws IOException;
+    }
+
+    /** Send 200 with the body, or only the headers for HEAD */
+    private static void send(HttpExchange exchange, long length, Body body) throws IOException {
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Content-Length", Long.toString(length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, length);
+        OutputStream os = exchange.getResponseBody();
+        body.writeTo(os);
+        os.close();
+    }
+
+    /**
+     * Whether an If-None-Match header names this asset in any of its
+     * encodings (weak comparison, as RFC 9110 requires for this header).
+     */
+    static boolean matches(String ifNoneMatch, String tag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals("\"" + tag + "\"")
+                    || candidate.equals("\"" + tag + "-gzip\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether an Accept-Encoding header allows gzip, i.e. lists gzip or *
+     * without q=0.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            if (!name.equals("gzip") && !name.equals("*")) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,96 @@
+package genome;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SymbolTable dictionary-encodes the low-cardinality gene metadata that
+ * searches filter on (chromosome, type) as dense int codes.
+ *
+ * Codes are assigned on first use and never change or get reused, so a code
+ * stored in a frozen column stays valid for the life of the process. Every
+ * value of a field maps to one canonical String, which lets millions of genes
+ * share a handful of instances and lets filters compare codes instead of
+ * strings. Code 0 stands for null.
+ *
+ * The table never shrinks, so free-text fields (function, disease,
+ * applications) are kept out of it; frozen tables encode those against a
+ * TextDictionary of their own instead.
+ *
+ * Lookups of known values are lock-free; adding a value takes a lock.
+ *
+ * @author DSA-EL Project
+ */
+public final class SymbolTable {
+
+    /** The table shared by every index in the process */
+    public static final SymbolTable SHARED = new SymbolTable();
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+
+    /** Code to symbol; replaced (never mutated below size) when it grows */
+    private volatile String[] symbols = new String[64];
+    private volatile int size = 1;
+
+    /**
+     * Code of value, assigning the next free code if it is new.
+     */
+    public int code(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    private synchronized int add(String value) {
+        Integer existing = codes.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        int code = size;
+        String[] table = symbols;
+        if (code == table.length) {
+            table = Arrays.copyOf(table, code * 2);
+        }
+        table[code] = value;
+        symbols = table;
+        size = code + 1;
+        // Publish the code only after the symbol is readable
+        codes.put(value, code);
+        return code;
+    }
+
+    /**
+     * Code of value, or -1 if it has never been seen. Does not assign codes,
+     * so filters on unknown values cannot grow the table.
+     */
+    public int find(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    /**
+     * The canonical String of a code.
+     */
+    public String symbol(int code) {
+        return symbols[code];
+    }
+
+    /**
+     * The canonical instance equal to value.
+     */
+    public String intern(String value) {
+        return symbol(code(value));
+    }
+
+    /**
+     * Number of codes in use, including the null code.
+     */
+    public int size() {
+        return size;
+    }
+}
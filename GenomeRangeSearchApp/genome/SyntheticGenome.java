@@ -0,0 +1,106 @@
+package genome;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * SyntheticGenome generates reproducible gene sets for benchmarks.
+ *
+ * Gene types follow roughly the GENCODE mix, and each type draws its length
+ * from a log-normal distribution around a typical median (protein-coding
+ * genes ~24 kb with a long tail up to the 2.3 Mb of DMD, miRNAs ~85 bp), so
+ * queries see the skewed overlap depths of real annotations rather than
+ * uniform intervals. Starts are uniform over a chromosome sized at ~50 kb per
+ * gene (human density), capped at 2 Gb, so very large sets become denser.
+ *
+ * @author DSA-EL Project
+ */
+public final class SyntheticGenome {
+
+    /** Order in which the generated genes are returned */
+    public enum Order {
+        SORTED, SHUFFLED
+    }
+
+    private static final String[] TYPES = { "Protein Coding", "lncRNA", "Pseudogene", "Regulatory", "miRNA",
+            "snoRNA" };
+    /** Share of each type, in TYPES order */
+    private static final double[] TYPE_SHARE = { 0.33, 0.30, 0.24, 0.07, 0.04, 0.02 };
+    /** Median length of each type in bp */
+    private static final double[] MEDIAN_LENGTH = { 24_000, 8_000, 1_200, 1_000, 85, 100 };
+    /** Log-normal sigma of each type's length */
+    private static final double[] LENGTH_SIGMA = { 1.2, 1.3, 1.0, 0.8, 0.2, 0.3 };
+
+    private static final int MIN_LENGTH = 20;
+    private static final int MAX_LENGTH = 2_300_000;
+    private static final long BASES_PER_GENE = 50_000;
+    private static final int MAX_CHROMOSOME_LENGTH = 2_000_000_000;
+
+    private SyntheticGenome() {
+    }
+
+    /**
+     * Length of the chromosome that generate() spreads this many genes over.
+     */
+    public static int chromosomeLength(int genes) {
+        return (int) Math.min(MAX_CHROMOSOME_LENGTH, Math.max(1_000_000, genes * BASES_PER_GENE));
+    }
+
+    /**
+     * Generate genes on one chromosome ("chr1"). The same seed always gives
+     * the same genes; SHUFFLED only changes the order.
+     */
+    public static List<IntervalNode> generate(int genes, Order order, long seed) {
+        return generate(genes, chromosomeLength(genes), order, seed);
+    }
+
+    /**
+     * Generate genes over a chromosome of the given length, e.g. extra genes
+     * for an existing set.
+     */
+    public static List<IntervalNode> generate(int genes, int chromosomeLength, Order order, long seed) {
+        Random random = new Random(seed);
+        List<IntervalNode> result = new ArrayList<>(genes);
+        for (int i = 0; i < genes; i++) {
+            int type = type(random.nextDouble());
+            double length = MEDIAN_LENGTH[type] * Math.exp(LENGTH_SIGMA[type] * random.nextGaussian());
+            int clamped = (int) Math.max(MIN_LENGTH, Math.min(MAX_LENGTH, length));
+            int start = random.nextInt(chromosomeLength - clamped);
+            result.add(new IntervalNode(start, start + clamped - 1, "SYN" + i, "chr1", TYPES[type], "", "", ""));
+        }
+        if (order == Order.SORTED) {
+            result.sort(Comparator.comparingInt(gene -> gene.start));
+        } else {
+            Collections.shuffle(result, random);
+        }
+        return result;
+    }
+
+    private static int type(double draw) {
+        for (int type = 0; type < TYPES.length - 1; type++) {
+            draw -= TYPE_SHARE[type];
+            if (draw < 0) {
+                return type;
+            }
+        }
+        return TYPES.length - 1;
+    }
+
+    /**
+     * Query windows of the given width (1 for point queries) with uniform
+     * starts, as {starts, ends}.
+     */
+    public static int[][] windows(int count, int width, int chromosomeLength, long seed) {
+        Random random = new Random(seed);
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = random.nextInt(Math.max(1, chromosomeLength - width));
+            ends[i] = starts[i] + width - 1;
+        }
+        return new int[][] { starts, ends };
+    }
+}
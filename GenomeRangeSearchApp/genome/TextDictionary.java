@@ -0,0 +1,64 @@
+package genome;
+
+import java.util.BitSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TextDictionary holds the free-text metadata values (function, disease,
+ * applications) of one frozen table, addressed by code.
+ *
+ * Unlike the SymbolTable it belongs to a single table and goes away with it,
+ * so free text never accumulates for the life of the process. Disease
+ * filters match a substring, so they are resolved here: the codes whose
+ * value contains a fragment are computed once per dictionary and fragment
+ * and cached, after which matching a row is a bit test.
+ *
+ * @author DSA-EL Project
+ */
+public final class TextDictionary {
+
+    /** Fragments cached per dictionary; a full cache is cleared rather than evicted */
+    private static final int MAX_CACHED_MATCHES = 64;
+
+    private final String[] values;
+    private final Map<String, BitSet> containing = new ConcurrentHashMap<>();
+
+    /**
+     * A dictionary mapping code i to values[i]; null entries match nothing.
+     */
+    TextDictionary(String[] values) {
+        this.values = values;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public String value(int code) {
+        return values[code];
+    }
+
+    /**
+     * Codes whose value contains fragment, which is lower case, ignoring
+     * case. The result is shared and must not be modified.
+     */
+    public BitSet containing(String fragment) {
+        BitSet cached = containing.get(fragment);
+        if (cached != null) {
+            return cached;
+        }
+        BitSet codes = new BitSet(values.length);
+        for (int code = 0; code < values.length; code++) {
+            if (values[code] != null && values[code].toLowerCase(Locale.ROOT).contains(fragment)) {
+                codes.set(code);
+            }
+        }
+        if (containing.size() >= MAX_CACHED_MATCHES) {
+            containing.clear();
+        }
+        containing.put(fragment, codes);
+        return codes;
+    }
+}
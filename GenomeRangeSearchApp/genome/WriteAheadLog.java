@@ -0,0 +1,424 @@
+package genome;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * WriteAheadLog makes genes inserted at runtime survive a restart.
+ *
+ * GenomeIndex appends every inserted gene, id included, while it holds its
+ * write lock, so the log order is the order in which versions were
+ * published. The caller then waits in sync() until the record is on disk,
+ * and only then publishes the version holding it.
+ * Syncs are group-committed: the first waiting thread forces the file for
+ * everything written so far and the threads that queued behind it find their
+ * records already durable, so concurrent inserts share one fsync.
+ *
+ * The log lives in a directory of numbered segments (wal-00000001.log, ...).
+ * A snapshot rotates to a fresh segment, writes the pinned version as an
+ * IndexFile and then deletes the older segments, so recovery reads the latest
+ * snapshot plus the records written since: time bounded by log size, not
+ * dataset size. Replaying an insert whose id the snapshot already holds is a
+ * no-op, which makes a crash between writing the snapshot and deleting the
+ * segments harmless.
+ *
+ * Removals and updates are logged too. An update is one record (the removed
+ * gene's key plus the replacement gene under its new id), so a crash never
+ * leaves half of it applied. Replay skips updates whose new id the snapshot
+ * already holds, and a delete of a gene that is not there does nothing, so
+ * both stay idempotent like inserts.
+ *
+ * Record layout: payload length, CRC32 of the payload, payload. An insert
+ * payload is the operation, gene id, start, end, then the six metadata
+ * strings as length-prefixed UTF-8 (length -1 for null). A delete holds the
+ * removed gene's id, start and chromosome; an update holds the same key
+ * followed by the replacement in insert form. Replay stops at the first torn
+ * or corrupt record.
+ *
+ * @author DSA-EL Project
+ */
+public class WriteAheadLog implements AutoCloseable {
+
+    /** Operation code of an inserted gene */
+    static final byte INSERT = 1;
+    /** Operation code of a removed gene */
+    static final byte DELETE = 2;
+    /** Operation code of a gene replaced under a new id */
+    static final byte UPDATE = 3;
+
+    private static final String PREFIX = "wal-";
+    private static final String SUFFIX = ".log";
+
+    private final Path directory;
+    private final Object syncLock = new Object();
+
+    private FileChannel channel;
+    private int segment;
+    /** Records written to the channel (guarded by this) */
+    private long written;
+    /** Records known to be on disk (guarded by syncLock) */
+    private long durable;
+
+    private WriteAheadLog(Path directory, int segment) throws IOException {
+        this.directory = directory;
+        this.segment = segment;
+        this.channel = openSegment(segment);
+    }
+
+    /**
+     * Start a new segment after the existing ones in directory, creating the
+     * directory if needed.
+     */
+    public static WriteAheadLog open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> segments = segments(directory);
+        int last = segments.isEmpty() ? 0 : segmentNumber(segments.get(segments.size() - 1));
+        return new WriteAheadLog(directory, last + 1);
+    }
+
+    private FileChannel openSegment(int number) throws IOException {
+        FileChannel segment = FileChannel.open(segmentPath(directory, number), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        // A forced record is only durable if the segment's directory entry is too
+        IndexFile.syncDirectory(directory);
+        return segment;
+    }
+
+    private static Path segmentPath(Path directory, int number) {
+        return directory.resolve(String.format("%s%08d%s", PREFIX, number, SUFFIX));
+    }
+
+    private static int segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * The log segments in directory, oldest first.
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    /**
+     * Write insert records for genes that already carry their ids. Returns
+     * the sequence number to pass to sync().
+     */
+    public synchronized long append(List<IntervalNode> genes) throws IOException {
+        RecordWriter records = new RecordWriter(genes.size() * 96);
+        for (IntervalNode gene : genes) {
+            records.begin(INSERT);
+            writeGene(records.payload, gene);
+            records.end();
+        }
+        return write(records);
+    }
+
+    /**
+     * Write a delete record for a removed gene. Returns the sequence number
+     * to pass to sync().
+     */
+    public synchronized long appendDelete(IntervalNode removed) throws IOException {
+        RecordWriter records = new RecordWriter(64);
+        records.begin(DELETE);
+        writeKey(records.payload, removed);
+        records.end();
+        return write(records);
+    }
+
+    /**
+     * Write an update record: removed was replaced by replacement, which
+     * already carries its new id. Returns the sequence number to pass to
+     * sync().
+     */
+    public synchronized long appendUpdate(IntervalNode removed, IntervalNode replacement) throws IOException {
+        RecordWriter records = new RecordWriter(160);
+        records.begin(UPDATE);
+        writeKey(records.payload, removed);
+        writeGene(records.payload, replacement);
+        records.end();
+        return write(records);
+    }
+
+    private long write(RecordWriter records) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(records.bytes.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        return ++written;
+    }
+
+    /** Where a gene sits in the index: id, start, chromosome */
+    private static void writeKey(DataOutputStream out, IntervalNode gene) throws IOException {
+        out.writeInt(gene.id);
+        out.writeInt(gene.start);
+        writeString(out, gene.chromosome);
+    }
+
+    private static void writeGene(DataOutputStream out, IntervalNode gene) throws IOException {
+        out.writeInt(gene.id);
+        out.writeInt(gene.start);
+        out.writeInt(gene.end);
+        writeString(out, gene.geneName);
+        writeString(out, gene.chromosome);
+        writeString(out, gene.type);
+        writeString(out, gene.function);
+        writeString(out, gene.diseaseAssociation);
+        writeString(out, gene.applications);
+    }
+
+    /**
+     * Frames payloads as [length][CRC32][payload] into one buffer, so a batch
+     * reaches the channel in a single write.
+     */
+    private static final class RecordWriter {
+        final ByteArrayOutputStream bytes;
+        final DataOutputStream out;
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        final DataOutputStream payload = new DataOutputStream(buffer);
+        final CRC32 crc = new CRC32();
+
+        RecordWriter(int capacity) {
+            bytes = new ByteArrayOutputStream(capacity);
+            out = new DataOutputStream(bytes);
+        }
+
+        void begin(byte operation) throws IOException {
+            buffer.reset();
+            payload.writeByte(operation);
+        }
+
+        void end() throws IOException {
+            crc.reset();
+            crc.update(buffer.toByteArray());
+            out.writeInt(buffer.size());
+            out.writeInt((int) crc.getValue());
+            buffer.writeTo(out);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(utf8.length);
+        out.write(utf8);
+    }
+
+    /**
+     * Block until the append with this sequence number is on disk.
+     */
+    public void sync(long sequence) throws IOException {
+        synchronized (syncLock) {
+            if (durable >= sequence) {
+                // An earlier sync covered this append
+                return;
+            }
+            long target;
+            FileChannel current;
+            synchronized (this) {
+                target = written;
+                current = channel;
+            }
+            current.force(false);
+            durable = target;
+        }
+    }
+
+    /**
+     * Switch to a new segment and return the older ones, which a snapshot of
+     * the current index state makes obsolete. Must be called while no
+     * appends can happen (GenomeIndex holds its write lock).
+     */
+    List<Path> rotate() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                channel.force(false);
+                channel.close();
+                durable = written;
+                segment++;
+                channel = openSegment(segment);
+            }
+        }
+        List<Path> obsolete = new ArrayList<>();
+        for (Path path : segments(directory)) {
+            if (segmentNumber(path) < segment) {
+                obsolete.add(path);
+            }
+        }
+        return obsolete;
+    }
+
+    /**
+     * Apply every logged change the index does not already hold, reading the
+     * segments in directory oldest first. Returns the number of records
+     * applied.
+     */
+    public static long replay(Path directory, GenomeIndex index) throws IOException {
+        long applied = 0;
+        // Each insertAll copies the trees it merges into, so batches grow to keep that linear
+        int batchSize = 1 << 16;
+        for (Path segment : segments(directory)) {
+            List<IntervalNode> batch = new ArrayList<>();
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(segment), 1 << 16)) {
+                DataInputStream data = new DataInputStream(in);
+                Record record;
+                while ((record = readRecord(data)) != null) {
+                    if (record.operation != INSERT) {
+                        // Changes apply in log order, after the inserts read before them
+                        applied += flush(index, batch);
+                        if (record.operation == DELETE) {
+                            // Removing a gene the snapshot no longer holds is a no-op
+                            if (index.remove(record.chromosome, record.start, record.id) != null) {
+                                applied++;
+                            }
+                        } else if (record.gene.id >= index.nextId()
+                                && index.replace(record.chromosome, record.start, record.id, record.gene) != null) {
+                            applied++;
+                        }
+                        continue;
+                    }
+                    // Genes below the index's id counter are already in the snapshot
+                    if (record.gene.id >= index.nextId()) {
+                        batch.add(record.gene);
+                    }
+                    if (batch.size() == batchSize) {
+                        applied += flush(index, batch);
+                        batchSize = Math.min(batchSize * 2, 1 << 20);
+                    }
+                }
+            }
+            applied += flush(index, batch);
+        }
+        return applied;
+    }
+
+    private static int flush(GenomeIndex index, List<IntervalNode> batch) {
+        int size = batch.size();
+        if (size > 0) {
+            index.insertAll(batch);
+            batch.clear();
+        }
+        return size;
+    }
+
+    /**
+     * One decoded log record. Deletes and updates name the gene they remove
+     * by (chromosome, start, id); inserts and updates carry the new gene.
+     */
+    private static final class Record {
+        byte operation;
+        String chromosome;
+        int start;
+        int id;
+        IntervalNode gene;
+    }
+
+    /**
+     * The next record, or null at the end of the log or at a torn or corrupt
+     * record (the tail of a write interrupted by a crash).
+     */
+    private static Record readRecord(DataInputStream in) throws IOException {
+        byte[] payload;
+        int checksum;
+        try {
+            int length = in.readInt();
+            checksum = in.readInt();
+            if (length < 0 || length > 1 << 24) {
+                return null;
+            }
+            payload = new byte[length];
+            in.readFully(payload);
+        } catch (EOFException e) {
+            return null;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        Record record = new Record();
+        record.operation = buffer.get();
+        if (record.operation == DELETE || record.operation == UPDATE) {
+            record.id = buffer.getInt();
+            record.start = buffer.getInt();
+            record.chromosome = readString(buffer);
+        } else if (record.operation != INSERT) {
+            return null;
+        }
+        if (record.operation != DELETE) {
+            record.gene = readGene(buffer);
+        }
+        return record;
+    }
+
+    private static IntervalNode readGene(ByteBuffer record) {
+        int id = record.getInt();
+        int start = record.getInt();
+        int end = record.getInt();
+        IntervalNode gene = new IntervalNode(start, end, readString(record), readString(record),
+                readString(record), readString(record), readString(record), readString(record));
+        gene.id = id;
+        return gene;
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(record.array(), record.position(), length, StandardCharsets.UTF_8);
+        record.position(record.position() + length);
+        return value;
+    }
+
+    /**
+     * Delete segments made obsolete by a snapshot.
+     */
+    static void delete(List<Path> segments) throws IOException {
+        for (Path segment : segments) {
+            Files.deleteIfExists(segment);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (syncLock) {
+            synchronized (this) {
+                channel.force(false);
+                channel.close();
+                durable = written;
+            }
+        }
+    }
+}
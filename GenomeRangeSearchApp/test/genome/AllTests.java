@@ -0,0 +1,21 @@
+package genome;
+
+/**
+ * AllTests runs every test program and exits non-zero if any check failed.
+ *
+ * Usage (from GenomeRangeSearchApp):
+ *   javac -d out genome/*.java test/genome/*.java
+ *   java -cp out genome.AllTests
+ *
+ * @author DSA-EL Project
+ */
+public class AllTests {
+
+    public static void main(String[] args) throws Exception {
+        IntervalIndexTest.run(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        IndexFileTest.run();
+        WriteAheadLogTest.run();
+        NullMetadataTest.run();
+        Check.report();
+    }
+}
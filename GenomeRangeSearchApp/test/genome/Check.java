@@ -0,0 +1,50 @@
+package genome;
+
+import java.util.Objects;
+
+/**
+ * Check is the assertion helper of the test programs. The project has no
+ * build tool, so tests are plain main methods: each check that fails prints
+ * a line and is counted, and AllTests exits non-zero if any did.
+ *
+ * @author DSA-EL Project
+ */
+final class Check {
+
+    /** Failures printed in full; later ones are only counted */
+    private static final int MAX_PRINTED = 20;
+
+    private static int checks;
+    private static int failures;
+
+    private Check() {
+    }
+
+    static void isTrue(boolean condition, String what) {
+        checks++;
+        if (!condition) {
+            failures++;
+            if (failures <= MAX_PRINTED) {
+                System.out.println("FAIL " + what);
+            }
+        }
+    }
+
+    static void equal(Object expected, Object actual, String what) {
+        isTrue(Objects.equals(expected, actual), what + ": expected " + expected + " but was " + actual);
+    }
+
+    static int failures() {
+        return failures;
+    }
+
+    /**
+     * Print the totals and exit with status 1 if any check failed.
+     */
+    static void report() {
+        System.out.println(checks + " checks, " + failures + " failed");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
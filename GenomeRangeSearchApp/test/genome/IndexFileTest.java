@@ -0,0 +1,105 @@
+package genome;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * IndexFileTest writes random genes, some with null metadata, to an
+ * IndexFile, maps it back and compares every gene field by field. It then
+ * runs type and disease filtered searches on the tree, the frozen and the
+ * mapped copy of the same genes.
+ *
+ * @author DSA-EL Project
+ */
+public class IndexFileTest {
+
+    private static final String[] TYPES = { "Protein Coding", "miRNA", "lncRNA", null };
+    private static final String[] DISEASES = { "Breast Cancer", "lung cancer", "Diabetes", "", null, "CANCER risk" };
+
+    public static void main(String[] args) throws IOException {
+        run();
+        Check.report();
+    }
+
+    static void run() throws IOException {
+        Random random = new Random(3);
+        List<IntervalNode> genes = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int start = random.nextInt(1_000_000);
+            genes.add(new IntervalNode(start, start + random.nextInt(5000), "G" + i, "chr" + random.nextInt(3),
+                    TYPES[i % TYPES.length], i % 5 == 0 ? null : "function " + i, DISEASES[i % DISEASES.length],
+                    i % 7 == 0 ? null : "diagnostics"));
+        }
+        GenomeIndex tree = GenomeIndex.bulkLoad(IntervalIndexTest.copies(genes));
+        GenomeIndex frozen = GenomeIndex.bulkLoad(IntervalIndexTest.copies(genes));
+        frozen.freeze();
+
+        Path file = Files.createTempFile("genome-test", ".idx");
+        try {
+            IndexFile.write(frozen, file);
+            GenomeIndex mapped = IndexFile.open(file);
+            checkSameGenes(tree, mapped);
+            checkFilters(genes, tree, frozen, mapped);
+
+            // A tree index is written the same way as a frozen one
+            IndexFile.write(tree, file);
+            checkSameGenes(tree, IndexFile.open(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    static void checkSameGenes(GenomeIndex expected, GenomeIndex actual) {
+        Check.equal(expected.chromosomes(), actual.chromosomes(), "chromosomes after reload");
+        Check.equal(expected.nextId(), actual.nextId(), "next id after reload");
+        for (String chromosome : expected.chromosomes()) {
+            List<IntervalNode> written = expected.genes(chromosome);
+            List<IntervalNode> read = actual.genes(chromosome);
+            Check.equal(written.size(), read.size(), chromosome + " genes after reload");
+            for (int i = 0; i < Math.min(written.size(), read.size()); i++) {
+                IntervalNode gene = written.get(i);
+                IntervalNode back = read.get(i);
+                // Null metadata is stored as ""
+                Check.isTrue(gene.id == back.id && gene.start == back.start && gene.end == back.end
+                        && gene.geneName.equals(back.geneName) && chromosome.equals(back.chromosome)
+                        && orEmpty(gene.type).equals(back.type) && orEmpty(gene.function).equals(back.function)
+                        && orEmpty(gene.diseaseAssociation).equals(back.diseaseAssociation)
+                        && orEmpty(gene.applications).equals(back.applications),
+                        "reloaded " + back + " equals " + gene);
+            }
+        }
+    }
+
+    private static void checkFilters(List<IntervalNode> genes, GenomeIndex... indexes) {
+        for (String disease : new String[] { null, "cancer", "DIAB", "zzz", "risk" }) {
+            for (String type : new String[] { null, "mirna", "protein coding,lncrna" }) {
+                GeneFilter filter = GeneFilter.parse("chr1", type, disease);
+                long expected = 0;
+                for (IntervalNode gene : genes) {
+                    if (gene.chromosome.equals("chr1") && gene.start <= 500_000 && gene.end >= 100_000
+                            && (type == null || gene.type != null
+                                    && Arrays.asList(type.split(",")).contains(gene.type.toLowerCase(Locale.ROOT)))
+                            && (disease == null || orEmpty(gene.diseaseAssociation).toLowerCase(Locale.ROOT)
+                                    .contains(disease.toLowerCase(Locale.ROOT)))) {
+                        expected++;
+                    }
+                }
+                for (GenomeIndex index : indexes) {
+                    long[] found = new long[1];
+                    index.overlapSearch(filter, 100_000, 500_000, gene -> found[0]++);
+                    Check.equal(expected, found[0], "filtered search type=" + type + " disease=" + disease);
+                }
+            }
+        }
+    }
+
+    static String orEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
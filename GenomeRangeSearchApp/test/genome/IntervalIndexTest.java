@@ -0,0 +1,269 @@
+package genome;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * IntervalIndexTest compares IntervalTree, FlatIntervalIndex and StabIndex
+ * with a brute-force scan over the same random genes.
+ *
+ * Genes mix short and very long intervals and repeat starts, so subtree
+ * pruning by maxEnd, counting by minEnd and (start, id) ordering are all
+ * exercised. Every query is answered by scanning the whole list and the
+ * index must return exactly those genes, in (start, id) order where the
+ * index promises an order. A frozen GenomeIndex is also checked after
+ * removes and updates, which hide rows behind a MaskedIntervalIndex.
+ *
+ * Usage: java genome.IntervalIndexTest [seed]
+ *
+ * @author DSA-EL Project
+ */
+public class IntervalIndexTest {
+
+    private static final Comparator<IntervalNode> START_ORDER = Comparator.comparingInt((IntervalNode g) -> g.start)
+            .thenComparingInt(g -> g.id);
+
+    public static void main(String[] args) {
+        run(args.length > 0 ? Long.parseLong(args[0]) : 1);
+        Check.report();
+    }
+
+    static void run(long seed) {
+        Random random = new Random(seed);
+        for (int round = 0; round < 20; round++) {
+            List<IntervalNode> genes = randomGenes(random, 1 + random.nextInt(2000));
+            checkTree(random, genes);
+            checkFlat(random, genes);
+            checkStab(random, genes);
+        }
+        checkFrozenWrites(random);
+    }
+
+    /** Genes with ids 1..n in list order; about one in ten spans a large range */
+    static List<IntervalNode> randomGenes(Random random, int n) {
+        List<IntervalNode> genes = new ArrayList<>(n);
+        int span = 1 + random.nextInt(100_000);
+        for (int i = 0; i < n; i++) {
+            int start = random.nextInt(span);
+            int length = random.nextInt(10) == 0 ? random.nextInt(span) : random.nextInt(200);
+            IntervalNode gene = new IntervalNode(start, start + length, "G" + i, "chr1", "Protein Coding", "", "",
+                    "");
+            gene.id = i + 1;
+            genes.add(gene);
+        }
+        return genes;
+    }
+
+    /** Fresh nodes, since a tree links the nodes it holds */
+    static List<IntervalNode> copies(List<IntervalNode> genes) {
+        List<IntervalNode> copies = new ArrayList<>(genes.size());
+        for (IntervalNode gene : genes) {
+            IntervalNode copy = new IntervalNode(gene.start, gene.end, gene.geneName, gene.chromosome, gene.type,
+                    gene.function, gene.diseaseAssociation, gene.applications);
+            copy.id = gene.id;
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /** The genes overlapping [queryStart, queryEnd] in (start, id) order */
+    static List<Integer> overlapping(List<IntervalNode> genes, int queryStart, int queryEnd) {
+        List<IntervalNode> hits = new ArrayList<>();
+        for (IntervalNode gene : genes) {
+            if (gene.start <= queryEnd && gene.end >= queryStart) {
+                hits.add(gene);
+            }
+        }
+        hits.sort(START_ORDER);
+        return ids(hits);
+    }
+
+    static List<Integer> ids(List<IntervalNode> genes) {
+        List<Integer> ids = new ArrayList<>(genes.size());
+        for (IntervalNode gene : genes) {
+            ids.add(gene.id);
+        }
+        return ids;
+    }
+
+    private static int[] randomQuery(Random random, List<IntervalNode> genes) {
+        int maxStart = 0;
+        for (IntervalNode gene : genes) {
+            maxStart = Math.max(maxStart, gene.end);
+        }
+        int queryStart = random.nextInt(maxStart + 10);
+        int queryEnd = random.nextInt(4) == 0 ? queryStart : queryStart + random.nextInt(5000);
+        return new int[] { queryStart, queryEnd };
+    }
+
+    private static void checkTree(Random random, List<IntervalNode> genes) {
+        // One tree bulk-loaded, one built by single inserts, then both lose a random third
+        IntervalTree bulk = IntervalTree.bulkLoad(copies(genes));
+        IntervalTree incremental = new IntervalTree();
+        for (IntervalNode gene : copies(genes)) {
+            incremental.insert(gene);
+        }
+        List<IntervalNode> live = new ArrayList<>(genes);
+        for (int i = 0; i < genes.size() / 3; i++) {
+            IntervalNode gene = live.remove(random.nextInt(live.size()));
+            Check.isTrue(bulk.delete(gene.start, gene.id) != null, "bulk-loaded tree deletes gene " + gene.id);
+            Check.isTrue(incremental.delete(gene.start, gene.id) != null, "tree deletes gene " + gene.id);
+        }
+        Check.isTrue(bulk.delete(-1, 0) == null, "deleting a missing gene returns null");
+
+        for (IntervalTree tree : new IntervalTree[] { bulk, incremental }) {
+            Check.equal(live.size(), tree.size(), "tree size");
+            Check.isTrue(tree.height() <= 1.45 * (Math.log(tree.size() + 2) / Math.log(2)) + 1,
+                    "tree height " + tree.height() + " is AVL-bounded for " + tree.size() + " genes");
+            List<IntervalNode> inOrder = new ArrayList<>(live);
+            inOrder.sort(START_ORDER);
+            Check.equal(ids(inOrder), ids(tree.inOrder()), "tree in-order traversal");
+
+            for (int q = 0; q < 50; q++) {
+                int[] query = randomQuery(random, live);
+                List<Integer> expected = overlapping(live, query[0], query[1]);
+                List<IntervalNode> found = tree.overlapSearch(query[0], query[1]);
+                found.sort(START_ORDER);
+                Check.equal(expected, ids(found), "tree overlapSearch " + Arrays.toString(query));
+                Check.equal(expected.size(), tree.countOverlaps(query[0], query[1]),
+                        "tree countOverlaps " + Arrays.toString(query));
+
+                // Page through the hits three at a time
+                List<Integer> paged = new ArrayList<>();
+                int[] after = { Integer.MIN_VALUE, Integer.MIN_VALUE };
+                boolean more = true;
+                while (more) {
+                    List<IntervalNode> page = new ArrayList<>();
+                    more = !tree.overlapSearchAfter(query[0], query[1], after[0], after[1], node -> {
+                        page.add(node);
+                        return page.size() < 3;
+                    });
+                    paged.addAll(ids(page));
+                    if (!page.isEmpty()) {
+                        after[0] = page.get(page.size() - 1).start;
+                        after[1] = page.get(page.size() - 1).id;
+                    }
+                }
+                Check.equal(expected, paged, "tree overlapSearchAfter pages " + Arrays.toString(query));
+            }
+        }
+    }
+
+    private static void checkFlat(Random random, List<IntervalNode> genes) {
+        FlatIntervalIndex flat = FlatIntervalIndex.build(copies(genes));
+        Check.equal(genes.size(), flat.size(), "flat size");
+        for (int q = 0; q < 50; q++) {
+            int[] query = randomQuery(random, genes);
+            List<Integer> expected = overlapping(genes, query[0], query[1]);
+            List<Integer> found = new ArrayList<>();
+            flat.overlapSearch(query[0], query[1], row -> found.add(flat.id(row)));
+            Check.equal(expected, found, "flat overlapSearch " + Arrays.toString(query));
+            Check.equal((long) expected.size(), flat.countOverlaps(query[0], query[1]),
+                    "flat countOverlaps " + Arrays.toString(query));
+
+            // Resuming from a row skips exactly the rows before it
+            int fromRow = random.nextInt(flat.size() + 1);
+            List<Integer> resumed = new ArrayList<>();
+            flat.overlapSearch(query[0], query[1], fromRow, row -> {
+                Check.isTrue(row >= fromRow, "flat search from row " + fromRow + " reports row " + row);
+                resumed.add(flat.id(row));
+                return true;
+            });
+            List<Integer> tail = new ArrayList<>();
+            for (int row = fromRow; row < flat.size(); row++) {
+                if (flat.start(row) <= query[1] && flat.end(row) >= query[0]) {
+                    tail.add(flat.id(row));
+                }
+            }
+            Check.equal(tail, resumed, "flat overlapSearch from row " + fromRow);
+        }
+    }
+
+    private static void checkStab(Random random, List<IntervalNode> genes) {
+        FlatIntervalIndex flat = FlatIntervalIndex.build(copies(genes));
+        StabIndex stab = StabIndex.build(flat, Long.MAX_VALUE);
+        Check.isTrue(stab != null, "stab index builds without a budget");
+        for (int q = 0; q < 100; q++) {
+            int position = randomQuery(random, genes)[0];
+            List<Integer> expected = overlapping(genes, position, position);
+            List<Integer> found = new ArrayList<>();
+            for (int row : stab.stab(position)) {
+                found.add(flat.id(row));
+            }
+            Check.equal(expected, found, "stab " + position);
+            Check.equal(expected.size(), stab.count(position), "stab count " + position);
+        }
+        Check.isTrue(StabIndex.build(flat, 0) == null || genes.isEmpty(), "stab index respects its budget");
+    }
+
+    private static void checkFrozenWrites(Random random) {
+        String[] types = { "Protein Coding", "miRNA", "lncRNA" };
+        List<IntervalNode> genes = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            int start = random.nextInt(1_000_000);
+            genes.add(new IntervalNode(start, start + random.nextInt(5000), "G" + i, "chr" + (i % 2), types[i % 3],
+                    "", "", ""));
+        }
+        GenomeIndex index = GenomeIndex.bulkLoad(genes);
+        index.freeze();
+        index.buildStabIndexes(64);
+
+        List<IntervalNode> live = new ArrayList<>();
+        for (String chromosome : index.chromosomes()) {
+            live.addAll(index.genes(chromosome));
+        }
+        for (int i = 0; i < 1000; i++) {
+            IntervalNode gene = live.remove(random.nextInt(live.size()));
+            if (i % 2 == 0) {
+                Check.isTrue(index.remove(gene.chromosome, gene.start, gene.id) != null,
+                        "frozen index removes gene " + gene.id);
+            } else {
+                IntervalNode moved = index.update(gene.chromosome, gene.start, gene.id, gene.start + 7, gene.end + 7);
+                Check.isTrue(moved != null && moved.start == gene.start + 7, "frozen index updates gene " + gene.id);
+                live.add(moved);
+            }
+        }
+        Check.isTrue(index.remove("chr0", -1, 0) == null, "removing a missing gene returns null");
+
+        for (int q = 0; q < 100; q++) {
+            String chromosome = "chr" + (q % 2);
+            int queryStart = random.nextInt(1_000_000);
+            int queryEnd = queryStart + random.nextInt(20_000);
+            List<IntervalNode> onChromosome = new ArrayList<>();
+            List<IntervalNode> mirna = new ArrayList<>();
+            for (IntervalNode gene : live) {
+                if (gene.chromosome.equals(chromosome)) {
+                    onChromosome.add(gene);
+                    if (gene.type.equals("miRNA")) {
+                        mirna.add(gene);
+                    }
+                }
+            }
+            List<Integer> expected = overlapping(onChromosome, queryStart, queryEnd);
+            String query = chromosome + ":" + queryStart + "-" + queryEnd;
+
+            List<IntervalNode> found = index.overlapSearch(chromosome, queryStart, queryEnd);
+            found.sort(START_ORDER);
+            Check.equal(expected, ids(found), "frozen overlapSearch " + query);
+            Check.equal((long) expected.size(), index.countOverlaps(chromosome, queryStart, queryEnd),
+                    "frozen countOverlaps " + query);
+
+            List<IntervalNode> filtered = new ArrayList<>();
+            index.overlapSearch(GeneFilter.parse(chromosome, "mirna", null), queryStart, queryEnd, filtered::add);
+            filtered.sort(START_ORDER);
+            Check.equal(overlapping(mirna, queryStart, queryEnd), ids(filtered), "frozen type filter " + query);
+
+            List<Integer> paged = new ArrayList<>();
+            SearchPage.Cursor cursor = null;
+            do {
+                SearchPage page = index.searchPage(chromosome, queryStart, queryEnd, cursor, 37);
+                paged.addAll(ids(page.getGenes()));
+                cursor = page.getNext();
+            } while (cursor != null);
+            Check.equal(expected, paged, "frozen searchPage " + query);
+        }
+    }
+}
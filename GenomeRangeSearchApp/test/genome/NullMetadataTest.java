@@ -0,0 +1,171 @@
+package genome;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.lang.reflect.Field;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * NullMetadataTest covers the requests that used to fail on genes without a
+ * type, function, disease or name: /addGene with only the required fields,
+ * bulk JSON with "type": null, joins against an unnamed gene, and the HTML
+ * result page rendering them. It also checks that the loader skips records
+ * with impossible coordinates instead of indexing them.
+ *
+ * The handlers run in a real HttpServer on a free port, sharing one index.
+ *
+ * @author DSA-EL Project
+ */
+public class NullMetadataTest {
+
+    public static void main(String[] args) throws Exception {
+        run();
+        Check.report();
+    }
+
+    static void run() throws Exception {
+        checkIndex();
+        checkLoader();
+        checkServer();
+    }
+
+    private static void checkIndex() {
+        IntervalNode parsed = BulkIngest.parseJson(
+                "{\"name\":\"G1\",\"chromosome\":\"chr1\",\"start\":1,\"end\":2,\"type\":null,\"disease\":null}");
+        Check.equal("", parsed.type, "null JSON type parses as \"\"");
+        Check.equal("", parsed.diseaseAssociation, "null JSON disease parses as \"\"");
+
+        GenomeIndex index = new GenomeIndex();
+        IntervalNode gene = index.insert(10, 20, "G1", "chr1", null, null, null, null);
+        Check.isTrue("".equals(gene.type) && "".equals(gene.function) && "".equals(gene.diseaseAssociation)
+                && "".equals(gene.applications), "insert stores null metadata as \"\"");
+        index.freeze();
+        OverlapSummary summary = index.summarize("chr1", 0, 100);
+        Check.equal(1L, summary.getCount(), "summary counts a gene without a type");
+        long[] found = new long[1];
+        index.overlapSearch(GeneFilter.parse("chr1", "mirna", "cancer"), 0, 100, g -> found[0]++);
+        Check.equal(0L, found[0], "filters skip a gene without metadata");
+    }
+
+    private static void checkLoader() throws IOException {
+        GenomeIndex index = new GenomeIndex();
+        GeneLoader loader = new GeneLoader(index, null);
+        String bed = "chr1\t100\t200\tGOOD\n"
+                + "chr1\t300\t250\tBACKWARDS\n"
+                + "chr1\t-5\t10\tNEGATIVE\n"
+                + "chr1\t400\t500\n";
+        loader.load(new BufferedReader(new StringReader(bed)), GeneLoader.Format.BED);
+        Check.equal(2L, loader.getLoaded(), "loader indexes the valid records");
+        Check.equal(2L, loader.getSkipped(), "loader skips records with invalid coordinates");
+        List<IntervalNode> genes = index.overlapSearch("chr1", 0, 1000);
+        Check.equal(2, genes.size(), "only valid records are searchable");
+        for (IntervalNode gene : genes) {
+            Check.isTrue(gene.geneName != null && !gene.geneName.isEmpty(), "unnamed record gets a name: " + gene);
+        }
+    }
+
+    private static void checkServer() throws Exception {
+        GenomeIndex index = new GenomeIndex();
+        setField("genomeIndex", index);
+        setField("responseCache", new ResponseCache(1 << 20));
+
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/search", new GenomeSearchServer.SearchHandler());
+        server.createContext("/api/search", new GenomeSearchServer.ApiSearchHandler());
+        server.createContext("/addGene", new GenomeSearchServer.AddGeneHandler());
+        server.createContext("/addGene/bulk", new GenomeSearchServer.BulkAddGeneHandler());
+        server.createContext("/join", new GenomeSearchServer.JoinHandler());
+        server.start();
+        String base = "http://127.0.0.1:" + server.getAddress().getPort();
+        try {
+            Response added = post(base + "/addGene", "application/x-www-form-urlencoded",
+                    "geneName=PLAIN&chromosome=chr1&startPos=100&endPos=200");
+            Check.equal(200, added.status, "/addGene with only the required fields: " + added.body);
+            Response unnamed = post(base + "/addGene", "application/x-www-form-urlencoded",
+                    "chromosome=chr1&startPos=100&endPos=200");
+            Check.equal(400, unnamed.status, "/addGene without a name is rejected");
+            Response backwards = post(base + "/addGene", "application/x-www-form-urlencoded",
+                    "geneName=BACK&chromosome=chr1&startPos=300&endPos=200");
+            Check.equal(400, backwards.status, "/addGene with start > end is rejected");
+
+            Response bulk = post(base + "/addGene/bulk", "application/x-ndjson",
+                    "{\"name\":\"UNTYPED\",\"chromosome\":\"chr1\",\"start\":150,\"end\":250,\"type\":null}\n");
+            Check.equal(200, bulk.status, "bulk insert with a null type: " + bulk.body);
+
+            index.insert(120, 180, null, "chr1", null, null, null, null);
+
+            Response page = get(base + "/search?chromosome=chr1&queryStart=0&queryEnd=1000");
+            Check.equal(200, page.status, "/search over genes without metadata");
+            Check.isTrue(page.body.contains("PLAIN") && page.body.contains("UNTYPED"), "/search lists both genes");
+            Check.isTrue(!page.body.contains(">null<"), "/search renders no null field");
+
+            Response json = get(base + "/api/search?chromosome=chr1&queryStart=0&queryEnd=1000");
+            Check.equal(200, json.status, "/api/search over genes without metadata");
+
+            Response join = post(base + "/join", "text/plain", "chr1\t0\t1000\tR1\n");
+            Check.equal(200, join.status, "/join against an unnamed gene");
+            Check.isTrue(!join.body.contains("null"), "/join writes missing values as empty cells");
+            Check.equal(3, join.body.split("\n").length, "/join reports every overlapping gene");
+
+            index.insert(300, 400, "<b>'x'</b>", "chr1", "<i>", "", "\"sick\"", "");
+            Response escaped = get(base + "/search?chromosome=chr1&queryStart=300&queryEnd=400");
+            Check.isTrue(escaped.body.contains("&lt;b&gt;&#39;x&#39;&lt;/b&gt;") && !escaped.body.contains("<b>'x'"),
+                    "/search escapes gene fields");
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static void setField(String name, Object value) throws ReflectiveOperationException {
+        Field field = GenomeSearchServer.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(null, value);
+    }
+
+    private static final class Response {
+        final int status;
+        final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    private static Response get(String url) throws IOException {
+        return read((HttpURLConnection) new URL(url).openConnection());
+    }
+
+    private static Response post(String url, String contentType, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", contentType);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        return read(connection);
+    }
+
+    private static Response read(HttpURLConnection connection) throws IOException {
+        int status = connection.getResponseCode();
+        InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        if (in != null) {
+            try (InputStream stream = in) {
+                stream.transferTo(body);
+            }
+        }
+        connection.disconnect();
+        return new Response(status, body.toString(StandardCharsets.UTF_8.name()));
+    }
+}
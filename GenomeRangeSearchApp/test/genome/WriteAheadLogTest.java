@@ -0,0 +1,247 @@
+package genome;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * WriteAheadLogTest recovers an index the way the server does at startup:
+ * map the last snapshot, then replay the log written since. Inserts, updates
+ * and removes before and after the snapshot must all survive, and a log
+ * that fails to sync must stop the index from taking further writes.
+ *
+ * @author DSA-EL Project
+ */
+public class WriteAheadLogTest {
+
+    public static void main(String[] args) throws Exception {
+        run();
+        Check.report();
+    }
+
+    static void run() throws Exception {
+        checkRecovery();
+        checkSyncFailure();
+    }
+
+    private static void checkRecovery() throws Exception {
+        Path directory = Files.createTempDirectory("genome-wal");
+        Path snapshot = directory.resolve("snapshot.idx");
+        try {
+            Random random = new Random(5);
+            GenomeIndex index = new GenomeIndex();
+            WriteAheadLog wal = WriteAheadLog.open(directory);
+            index.attachLog(wal);
+            List<IntervalNode> live = new ArrayList<>();
+            write(index, random, live, 2000);
+
+            // Log only, no snapshot yet
+            wal.close();
+            GenomeIndex replayed = new GenomeIndex();
+            WriteAheadLog.replay(directory, replayed);
+            IndexFileTest.checkSameGenes(index, replayed);
+
+            wal = WriteAheadLog.open(directory);
+            index.attachLog(wal);
+            index.writeSnapshot(snapshot);
+            write(index, random, live, 2000);
+            wal.close();
+
+            GenomeIndex recovered = IndexFile.open(snapshot);
+            long applied = WriteAheadLog.replay(directory, recovered);
+            Check.isTrue(applied > 0, "replay applies the writes after the snapshot");
+            IndexFileTest.checkSameGenes(index, recovered);
+            Check.equal((long) live.size(), recovered.countOverlaps(null, 0, Integer.MAX_VALUE),
+                    "recovered gene count");
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    /** Insert, update or remove a random gene, count times */
+    private static void write(GenomeIndex index, Random random, List<IntervalNode> live, int count) {
+        for (int i = 0; i < count; i++) {
+            int op = live.isEmpty() ? 0 : random.nextInt(4);
+            if (op <= 1) {
+                int start = random.nextInt(1_000_000);
+                live.add(index.insert(start, start + random.nextInt(5000), "G" + i, "chr" + random.nextInt(3),
+                        i % 3 == 0 ? null : "miRNA", null, i % 2 == 0 ? "Breast Cancer" : null, ""));
+            } else if (op == 2) {
+                IntervalNode gene = live.remove(random.nextInt(live.size()));
+                Check.isTrue(index.remove(gene.chromosome, gene.start, gene.id) != null,
+                        "logged remove of gene " + gene.id);
+            } else {
+                IntervalNode gene = live.remove(random.nextInt(live.size()));
+                IntervalNode moved = index.update(gene.chromosome, gene.start, gene.id, gene.start + 3, gene.end + 3);
+                Check.isTrue(moved != null, "logged update of gene " + gene.id);
+                live.add(moved);
+            }
+        }
+    }
+
+    private static void checkSyncFailure() throws Exception {
+        Path directory = Files.createTempDirectory("genome-wal");
+        try {
+            GenomeIndex index = new GenomeIndex();
+            WriteAheadLog wal = WriteAheadLog.open(directory);
+            index.attachLog(wal);
+            IntervalNode kept = index.insert(1, 5, "A", "chr1", "miRNA", "", "", "");
+
+            Field field = WriteAheadLog.class.getDeclaredField("channel");
+            field.setAccessible(true);
+            FailingChannel channel = new FailingChannel((FileChannel) field.get(wal));
+            field.set(wal, channel);
+
+            channel.failForce = true;
+            Check.isTrue(throwsUnchecked(() -> index.insert(10, 20, "B", "chr1", "miRNA", "", "", "")),
+                    "an insert whose sync fails throws");
+            Check.equal(Collections.singletonList(kept), index.overlapSearch("chr1", 0, 100),
+                    "an unsynced insert is never published");
+
+            // The disk recovers, but the index stays read-only
+            channel.failForce = false;
+            Check.isTrue(throwsUnchecked(() -> index.insert(30, 40, "C", "chr1", "miRNA", "", "", "")),
+                    "inserts after a log failure are rejected");
+            Check.isTrue(throwsUnchecked(() -> index.remove("chr1", kept.start, kept.id)),
+                    "removes after a log failure are rejected");
+            Check.equal(1L, index.countOverlaps("chr1", 0, 100), "searches still answer after a log failure");
+            channel.close();
+        } finally {
+            deleteAll(directory);
+        }
+    }
+
+    private static boolean throwsUnchecked(Runnable write) {
+        try {
+            write.run();
+            return false;
+        } catch (UncheckedIOException e) {
+            return true;
+        }
+    }
+
+    private static void deleteAll(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.delete(path);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * A FileChannel whose force() fails while failForce is set, standing in
+     * for a disk that stops accepting writes.
+     */
+    static final class FailingChannel extends FileChannel {
+        private final FileChannel channel;
+        volatile boolean failForce;
+
+        FailingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            if (failForce) {
+                throw new IOException("simulated disk failure");
+            }
+            channel.force(metaData);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return channel.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            return channel.write(srcs, offset, length);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return channel.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return channel.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return channel.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return channel.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return channel.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return channel.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return channel.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}